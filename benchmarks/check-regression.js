@@ -0,0 +1,77 @@
+#!/usr/bin/env node
+// Compares two JMH JSON result files and exits non-zero if any benchmark regressed.
+//
+// Usage: node check-regression.js <baseline.json> <current.json> [--threshold=10] [--alloc-threshold=10]
+//
+// Scores are compared per benchmark + mode + params. Throughput must not drop, and time modes
+// must not rise, by more than the threshold percentage. When both runs used -prof gc, the
+// normalized allocation rate (bytes/op) is checked as well.
+
+const fs = require('fs');
+
+const args = process.argv.slice(2);
+const files = args.filter(arg => !arg.startsWith('--'));
+const option = (name, fallback) => {
+    const arg = args.find(a => a.startsWith(`--${name}=`));
+    return arg ? parseFloat(arg.split('=')[1]) : fallback;
+};
+
+if (files.length !== 2) {
+    console.error('Usage: node check-regression.js <baseline.json> <current.json> [--threshold=10] [--alloc-threshold=10]');
+    process.exit(2);
+}
+
+const threshold = option('threshold', 10);
+const allocThreshold = option('alloc-threshold', 10);
+// Allocation differences below this many bytes per op are treated as noise
+const ALLOC_SLACK_BYTES = 16;
+
+function load(file) {
+    const results = new Map();
+    for (const run of JSON.parse(fs.readFileSync(file, 'utf8'))) {
+        const params = run.params ? JSON.stringify(run.params) : '';
+        results.set(`${run.benchmark} [${run.mode}] ${params}`, run);
+    }
+    return results;
+}
+
+function percentChange(before, after) {
+    return before === 0 ? 0 : ((after - before) / before) * 100;
+}
+
+const baseline = load(files[0]);
+const current = load(files[1]);
+let regressions = 0;
+
+for (const [key, run] of current) {
+    const base = baseline.get(key);
+    if (!base) {
+        console.log(`NEW        ${key}: ${run.primaryMetric.score.toFixed(3)} ${run.primaryMetric.scoreUnit}`);
+        continue;
+    }
+
+    const higherIsBetter = run.mode === 'thrpt';
+    const change = percentChange(base.primaryMetric.score, run.primaryMetric.score);
+    const worse = higherIsBetter ? -change : change;
+    const status = worse > threshold ? 'REGRESSION' : 'ok        ';
+    if (worse > threshold) regressions++;
+    console.log(`${status} ${key}: ${base.primaryMetric.score.toFixed(3)} -> ${run.primaryMetric.score.toFixed(3)} `
+        + `${run.primaryMetric.scoreUnit} (${change >= 0 ? '+' : ''}${change.toFixed(1)}%)`);
+
+    const baseAlloc = base.secondaryMetrics && base.secondaryMetrics['gc.alloc.rate.norm'];
+    const runAlloc = run.secondaryMetrics && run.secondaryMetrics['gc.alloc.rate.norm'];
+    if (baseAlloc && runAlloc) {
+        const allocChange = percentChange(baseAlloc.score, runAlloc.score);
+        const allocRegressed = runAlloc.score - baseAlloc.score > ALLOC_SLACK_BYTES && allocChange > allocThreshold;
+        if (allocRegressed) regressions++;
+        console.log(`${allocRegressed ? 'REGRESSION' : 'ok        '}   alloc: ${baseAlloc.score.toFixed(1)} -> `
+            + `${runAlloc.score.toFixed(1)} B/op`);
+    }
+}
+
+for (const key of baseline.keys()) {
+    if (!current.has(key)) console.log(`MISSING    ${key}`);
+}
+
+console.log(regressions === 0 ? '\nNo regressions.' : `\n${regressions} regression(s) over threshold.`);
+process.exit(regressions === 0 ? 0 : 1);
@@ -0,0 +1,88 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.BatchEngine;
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.CohortColumns;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Columnar BatchEngine against one CalorieEngine.calculate call per profile
+ * Scores are per profile. "scalar" and "vector" run the same CohortColumns batch through
+ * BatchEngine.scalar() and BatchEngine.best(); the fork enables jdk.incubator.vector so "vector"
+ * gets the SIMD engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class BatchEngineBenchmark {
+
+    @Param({"realistic", "uniform"})
+    public String distribution;
+
+    private ProfileInputs inputs;
+    private final CohortColumns columns = new CohortColumns(ProfileInputs.SIZE);
+    private final CalculationResult result = new CalculationResult();
+    private final int[] gender = new int[ProfileInputs.SIZE];
+    private final int[] goal = new int[ProfileInputs.SIZE];
+    private BatchEngine vector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inputs = ProfileInputs.generate(distribution, 42);
+        for (int i = 0; i < ProfileInputs.SIZE; i++) {
+            gender[i] = Gender.parse(inputs.gender[i]).ordinal();
+            goal[i] = Goal.parse(inputs.goal[i]).ordinal();
+            columns.set(i, inputs.height[i], inputs.weight[i], inputs.age[i], gender[i],
+                        inputs.activityLevel[i], goal[i]);
+        }
+        vector = BatchEngine.best();
+        if (vector == BatchEngine.scalar()) {
+            throw new IllegalStateException("jdk.incubator.vector is not available in this JVM");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ProfileInputs.SIZE)
+    public void perProfile(Blackhole blackhole) {
+        for (int i = 0; i < ProfileInputs.SIZE; i++) {
+            CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i], gender[i],
+                inputs.activityLevel[i], inputs.days[i], inputs.hours[i], goal[i], result);
+            blackhole.consume(result.getFatGrams());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ProfileInputs.SIZE)
+    public int[] scalar() {
+        BatchEngine.scalar().compute(columns, 0, ProfileInputs.SIZE);
+        return columns.fatGrams;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ProfileInputs.SIZE)
+    public int[] vector() {
+        vector.compute(columns, 0, ProfileInputs.SIZE);
+        return columns.fatGrams;
+    }
+}
@@ -0,0 +1,56 @@
+package com.maintenance.calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end WebServer.CalculatorHandler: read the form body, validate, compute, render and write
+ * Uses an in-memory exchange, so socket and HttpServer costs are excluded.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CalculatorHandlerBenchmark {
+
+    @Param({"realistic", "uniform", "invalid"})
+    public String distribution;
+
+    /** Result cache entries; 0 runs without the cache */
+    @Param({"0", "4096"})
+    public int resultCache;
+
+    private ProfileInputs inputs;
+    private int next;
+    private WebServer.CalculatorHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inputs = ProfileInputs.generate(distribution, 42);
+        handler = new WebServer.CalculatorHandler(resultCache > 0 ? new ResultCache(resultCache) : null);
+    }
+
+    @Benchmark
+    public long handle() throws IOException {
+        int i = next;
+        next = (i + 1) & (ProfileInputs.SIZE - 1);
+        FakeExchange exchange = new FakeExchange("POST", "/calculate", inputs.formBodies[i]);
+        handler.handle(exchange);
+        return exchange.bytesWritten();
+    }
+}
@@ -0,0 +1,70 @@
+package com.maintenance.calculator;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-memory HttpExchange so handlers can be benchmarked without sockets
+ * The response body is counted and discarded.
+ */
+final class FakeExchange extends HttpExchange {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 5000);
+
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final String method;
+    private final URI uri;
+    private InputStream requestBody;
+    private OutputStream responseBody = new CountingOutputStream();
+    private int responseCode = -1;
+
+    FakeExchange(String method, String path, String body) {
+        this.method = method;
+        this.uri = URI.create(path);
+        this.requestBody = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long bytesWritten() {
+        return ((CountingOutputStream) responseBody).count;
+    }
+
+    @Override public Headers getRequestHeaders() { return requestHeaders; }
+    @Override public Headers getResponseHeaders() { return responseHeaders; }
+    @Override public URI getRequestURI() { return uri; }
+    @Override public String getRequestMethod() { return method; }
+    @Override public HttpContext getHttpContext() { return null; }
+    @Override public void close() { }
+    @Override public InputStream getRequestBody() { return requestBody; }
+    @Override public OutputStream getResponseBody() { return responseBody; }
+    @Override public void sendResponseHeaders(int rCode, long responseLength) { responseCode = rCode; }
+    @Override public InetSocketAddress getRemoteAddress() { return ADDRESS; }
+    @Override public int getResponseCode() { return responseCode; }
+    @Override public InetSocketAddress getLocalAddress() { return ADDRESS; }
+    @Override public String getProtocol() { return "HTTP/1.1"; }
+    @Override public Object getAttribute(String name) { return null; }
+    @Override public void setAttribute(String name, Object value) { }
+    @Override public HttpPrincipal getPrincipal() { return null; }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) requestBody = i;
+        if (o != null) responseBody = o;
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override public void write(int b) { count++; }
+        @Override public void write(byte[] b, int off, int len) { count += len; }
+    }
+}
@@ -0,0 +1,432 @@
+package com.maintenance.calculator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load generator for WebServer and the Tomcat deployment
+ *
+ * Sends a mix of /calculate POSTs, with forms from ProfileInputs (--distribution, --seed), and
+ * GETs of the static assets (--static-share of the requests) for --warmup seconds unmeasured and
+ * then --duration seconds measured, and reports throughput and latency percentiles per request
+ * kind as text, plus JSON with --json=file.
+ *
+ * Two modes:
+ * - closed (default): --concurrency users each send a request, wait for the response, and send
+ *   the next. Throughput adapts to the server, so a slow response also delays the requests
+ *   behind it and the percentiles understate stalls.
+ * - open: requests are due at a fixed --rate per second whatever the server does, over at most
+ *   --connections requests in flight. Latency is measured from when a request was due, not when
+ *   it could be sent, which corrects for coordinated omission; the service time from the actual
+ *   send is reported alongside.
+ *
+ * Requests go out with HttpClient.sendAsync, so in-flight requests hold no thread. The client's
+ * executor is an InstrumentedExecutor in --client-executor mode: virtual threads by default on a
+ * Java 21+ runtime, otherwise a pool of --client-threads platform threads.
+ *
+ * --url targets a running server. --start=jdk|nio|tomcat instead starts one in a child JVM on
+ * --port, with --server-args passed to it and --server-jvm-args to its JVM, and stops it after
+ * the run, so one command compares executors, caches or front ends. The child's classpath is
+ * --server-classpath, or this JVM's; Tomcat needs the webapp's dependencies on it. Run from the
+ * project root so the server finds the static files.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar com.maintenance.calculator.LoadGenerator
+ *        [--start=jdk|nio|tomcat | --url=http://localhost:5000] [--mode=closed|open]
+ *        [--concurrency=32] [--rate=1000] [--connections=64] [--duration=30] [--warmup=10]
+ *        [--static-share=0.2] [--distribution=realistic] [--json=report.json]
+ */
+public final class LoadGenerator {
+
+    private static final String[] STATIC_PATHS = {"/", "/style.css", "/script.js"};
+
+    /** Reported latency percentiles */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+    private enum Kind { CALCULATE, STATIC }
+
+    // Outcome counts and latencies of one request kind
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+        final LongAdder success = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        void record(int status, long latencyNanos, long serviceNanos) {
+            latency.record(latencyNanos);
+            service.record(serviceNanos);
+            maxLatency.accumulate(latencyNanos);
+            if (status < 0) failures.increment();
+            else if (status >= 500) serverErrors.increment();
+            else if (status >= 400) clientErrors.increment();
+            else success.increment();
+        }
+
+        long count() {
+            return success.sum() + clientErrors.sum() + serverErrors.sum() + failures.sum();
+        }
+    }
+
+    private final HttpClient client;
+    private final HttpRequest[] calculateRequests;
+    private final HttpRequest[] staticRequests;
+    private final double staticShare;
+    private final Stats[] stats = {new Stats(), new Stats()};
+    private final LongAdder inFlight = new LongAdder();
+
+    // Measurement window, as System.nanoTime() values
+    private volatile long measureStart, measureEnd;
+
+    private LoadGenerator(HttpClient client, URI base, ProfileInputs inputs, double staticShare, Duration timeout) {
+        this.client = client;
+        this.staticShare = staticShare;
+        calculateRequests = new HttpRequest[ProfileInputs.SIZE];
+        for (int i = 0; i < calculateRequests.length; i++) {
+            calculateRequests[i] = HttpRequest.newBuilder(base.resolve("/calculate"))
+                .timeout(timeout)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(inputs.formBytes[i]))
+                .build();
+        }
+        staticRequests = new HttpRequest[STATIC_PATHS.length];
+        for (int i = 0; i < staticRequests.length; i++) {
+            staticRequests[i] = HttpRequest.newBuilder(base.resolve(STATIC_PATHS[i])).timeout(timeout).GET().build();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ServerOptions options = ServerOptions.parse(args);
+        String mode = options.get("mode", "closed");
+        if (!"closed".equals(mode) && !"open".equals(mode)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode + " (expected closed or open)");
+        }
+        double staticShare = getDouble(options, "static-share", 0.2);
+        int duration = options.getInt("duration", 30);
+        int warmup = options.getInt("warmup", 10);
+        ProfileInputs inputs = ProfileInputs.generate(options.get("distribution", "realistic"), options.getInt("seed", 42));
+
+        Process server = null;
+        String start = options.get("start", null);
+        URI base = URI.create(options.get("url", "http://localhost:" + options.getInt("port", 5000)));
+        if (start != null) {
+            base = URI.create("http://localhost:" + options.getInt("port", 5000));
+            server = startServer(options, start);
+        }
+        InstrumentedExecutor executor = InstrumentedExecutor.create(
+            InstrumentedExecutor.Mode.fromString(options.get("client-executor", "virtual")),
+            options.getInt("client-threads", 2)
+        );
+        HttpClient client = HttpClient.newBuilder()
+            .version("2".equals(options.get("http", "1.1")) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(executor)
+            .build();
+        Duration timeout = Duration.ofMillis(options.getInt("timeout-ms", 10_000));
+        LoadGenerator generator = new LoadGenerator(client, base, inputs, staticShare, timeout);
+        try {
+            if (server != null) {
+                generator.awaitServer(server, base);
+            }
+            String target = mode.equals("open")
+                ? "rate " + options.getInt("rate", 1000) + "/s, " + options.getInt("connections", 64) + " connections"
+                : options.getInt("concurrency", 32) + " users";
+            System.out.println("Load: " + mode + " loop, " + target + ", " + warmup + "s warmup + " + duration
+                + "s against " + base + (start != null ? " (" + start + " server)" : ""));
+            long begin = System.nanoTime();
+            generator.measureStart = begin + TimeUnit.SECONDS.toNanos(warmup);
+            generator.measureEnd = generator.measureStart + TimeUnit.SECONDS.toNanos(duration);
+            if (mode.equals("open")) {
+                generator.runOpen(begin, options.getInt("rate", 1000), options.getInt("connections", 64));
+            } else {
+                generator.runClosed(options.getInt("concurrency", 32), options.getInt("think-ms", 0));
+            }
+            generator.awaitInFlight(timeout.plusSeconds(1));
+
+            String json = generator.json(options, mode, base, start, duration);
+            generator.print(System.out, mode, duration);
+            String jsonFile = options.get("json", null);
+            if (jsonFile != null) {
+                Files.writeString(Paths.get(jsonFile), json, StandardCharsets.UTF_8);
+                System.out.println("Report written to " + jsonFile);
+            }
+        } finally {
+            executor.shutdown();
+            if (server != null) {
+                server.destroy();
+                if (!server.waitFor(10, TimeUnit.SECONDS)) server.destroyForcibly();
+            }
+        }
+    }
+
+    private static double getDouble(ServerOptions options, String name, double defaultValue) {
+        String value = options.get(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a number: " + value);
+        }
+    }
+
+    // Server under test
+
+    private static Process startServer(ServerOptions options, String frontend) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        addWords(command, options.get("server-jvm-args", ""));
+        command.add("-cp");
+        command.add(options.get("server-classpath", System.getProperty("java.class.path")));
+        switch (frontend) {
+            case "jdk":
+            case "nio":
+                command.add("com.maintenance.calculator.WebServer");
+                command.add("--frontend=" + frontend);
+                break;
+            case "tomcat":
+                command.add("com.maintenance.calculator.TomcatLauncher");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown server: " + frontend + " (expected jdk, nio or tomcat)");
+        }
+        command.add("--port=" + options.getInt("port", 5000));
+        addWords(command, options.get("server-args", ""));
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        String log = options.get("server-log", null);
+        builder.redirectOutput(log != null ? ProcessBuilder.Redirect.to(new File(log)) : ProcessBuilder.Redirect.DISCARD);
+        return builder.start();
+    }
+
+    private static void addWords(List<String> command, String words) {
+        for (String word : words.trim().split("\\s+")) {
+            if (!word.isEmpty()) command.add(word);
+        }
+    }
+
+    /**
+     * Polls the server until it answers, or fails if it exits or takes over 30 seconds
+     */
+    private void awaitServer(Process server, URI base) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        HttpRequest probe = HttpRequest.newBuilder(base.resolve("/")).timeout(Duration.ofSeconds(1)).GET().build();
+        while (true) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("Server exited with status " + server.exitValue() + " (see --server-log)");
+            }
+            try {
+                client.send(probe, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new UncheckedIOException("Server did not start on " + base, e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    // Load
+
+    private HttpRequest pick(Kind kind) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return kind == Kind.STATIC
+            ? staticRequests[random.nextInt(staticRequests.length)]
+            : calculateRequests[random.nextInt(calculateRequests.length)];
+    }
+
+    private Kind pickKind() {
+        return ThreadLocalRandom.current().nextDouble() < staticShare ? Kind.STATIC : Kind.CALCULATE;
+    }
+
+    /**
+     * Sends one request; latency is taken from dueNanos, service time from the actual send
+     */
+    private void send(Kind kind, long dueNanos, Runnable then) {
+        long sent = System.nanoTime();
+        inFlight.increment();
+        client.sendAsync(pick(kind), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long now = System.nanoTime();
+            if (dueNanos >= measureStart && dueNanos < measureEnd) {
+                stats[kind.ordinal()].record(failure != null ? -1 : response.statusCode(), now - dueNanos, now - sent);
+            }
+            inFlight.decrement();
+            then.run();
+        });
+    }
+
+    private void runClosed(int concurrency, int thinkMillis) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            new Object() {
+                void next() {
+                    if (System.nanoTime() >= measureEnd) {
+                        done.countDown();
+                        return;
+                    }
+                    if (thinkMillis > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+                    }
+                    send(pickKind(), System.nanoTime(), this::next);
+                }
+            }.next();
+        }
+        done.await();
+    }
+
+    private void runOpen(long begin, int rate, int connections) {
+        Semaphore permits = new Semaphore(connections);
+        double interval = 1e9 / rate;
+        for (long i = 0; ; i++) {
+            long due = begin + (long) (i * interval);
+            if (due >= measureEnd) return;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // When every connection is busy the request waits here, and that wait counts as latency
+            permits.acquireUninterruptibly();
+            send(pickKind(), due, permits::release);
+        }
+    }
+
+    private void awaitInFlight(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.sum() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    // Report
+
+    private Stats total() {
+        Stats total = new Stats();
+        for (Stats s : stats) {
+            total.success.add(s.success.sum());
+            total.clientErrors.add(s.clientErrors.sum());
+            total.serverErrors.add(s.serverErrors.sum());
+            total.failures.add(s.failures.sum());
+            total.maxLatency.accumulate(s.maxLatency.get());
+        }
+        return total;
+    }
+
+    private long[] counts(LatencyHistogram... histograms) {
+        long[] sum = new long[LatencyHistogram.BUCKETS];
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        for (LatencyHistogram histogram : histograms) {
+            histogram.snapshot(counts);
+            for (int b = 0; b < counts.length; b++) sum[b] += counts[b];
+        }
+        return sum;
+    }
+
+    private void print(PrintStream out, String mode, int duration) {
+        Stats total = total();
+        out.printf(Locale.ROOT, "%d requests in %ds: %.1f/s, %d non-2xx (%d 4xx, %d 5xx), %d failed%n",
+            total.count(), duration, total.count() / (double) duration,
+            total.clientErrors.sum() + total.serverErrors.sum(), total.clientErrors.sum(),
+            total.serverErrors.sum(), total.failures.sum());
+        out.printf("%-20s %9s", "", "count");
+        for (String name : PERCENTILE_NAMES) out.printf(" %9s", name);
+        out.printf(" %9s   (ms)%n", "max");
+        row(out, "all", total.count(), counts(stats[0].latency, stats[1].latency), total.maxLatency.get());
+        for (Kind kind : Kind.values()) {
+            Stats s = stats[kind.ordinal()];
+            row(out, kind.name().toLowerCase(Locale.ROOT), s.count(), counts(s.latency), s.maxLatency.get());
+        }
+        if (mode.equals("open")) {
+            // Service time ignores the wait for a free connection, i.e. what a closed loop would report
+            row(out, "all (service time)", total.count(), counts(stats[0].service, stats[1].service), -1);
+        }
+    }
+
+    /**
+     * Histogram quantile, capped at the exact maximum when known (buckets overstate by up to 12.5%)
+     */
+    private static long quantile(long[] counts, double p, long maxNanos) {
+        long value = LatencyHistogram.quantile(counts, p);
+        return maxNanos >= 0 ? Math.min(value, maxNanos) : value;
+    }
+
+    private static void row(PrintStream out, String label, long count, long[] counts, long maxNanos) {
+        out.printf(Locale.ROOT, "%-20s %9d", label, count);
+        for (double p : PERCENTILES) {
+            out.printf(Locale.ROOT, " %9.2f", quantile(counts, p, maxNanos) / 1e6);
+        }
+        out.println(maxNanos < 0 ? String.format(" %9s", "-") : String.format(Locale.ROOT, " %9.2f", maxNanos / 1e6));
+    }
+
+    private String json(ServerOptions options, String mode, URI base, String start, int duration) {
+        Stats total = total();
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"mode\":\"").append(mode).append('"')
+            .append(",\"url\":\"").append(base).append('"')
+            .append(",\"server\":").append(start != null ? "\"" + start + "\"" : "null")
+            .append(",\"serverArgs\":\"").append(options.get("server-args", "").replace("\\", "\\\\").replace("\"", "\\\"")).append('"')
+            .append(",\"concurrency\":").append(mode.equals("closed") ? options.getInt("concurrency", 32) : 0)
+            .append(",\"rate\":").append(mode.equals("open") ? options.getInt("rate", 1000) : 0)
+            .append(",\"connections\":").append(mode.equals("open") ? options.getInt("connections", 64) : 0)
+            .append(",\"durationSeconds\":").append(duration)
+            .append(",\"distribution\":\"").append(options.get("distribution", "realistic")).append('"')
+            .append(",\"staticShare\":").append(staticShare)
+            .append(",\"throughput\":").append(String.format(Locale.ROOT, "%.1f", total.count() / (double) duration));
+        json.append(",\"requests\":{");
+        jsonStats(json, "all", total, counts(stats[0].latency, stats[1].latency), counts(stats[0].service, stats[1].service));
+        for (Kind kind : Kind.values()) {
+            Stats s = stats[kind.ordinal()];
+            json.append(',');
+            jsonStats(json, kind.name().toLowerCase(Locale.ROOT), s, counts(s.latency), counts(s.service));
+        }
+        return json.append("}}\n").toString();
+    }
+
+    private static void jsonStats(StringBuilder json, String name, Stats s, long[] latency, long[] service) {
+        json.append('"').append(name).append("\":{\"count\":").append(s.count())
+            .append(",\"success\":").append(s.success.sum())
+            .append(",\"clientErrors\":").append(s.clientErrors.sum())
+            .append(",\"serverErrors\":").append(s.serverErrors.sum())
+            .append(",\"failures\":").append(s.failures.sum())
+            .append(",\"latencyMs\":");
+        jsonPercentiles(json, latency, s.maxLatency.get());
+        json.append(",\"serviceMs\":");
+        jsonPercentiles(json, service, -1);
+        json.append('}');
+    }
+
+    private static void jsonPercentiles(StringBuilder json, long[] counts, long maxNanos) {
+        json.append('{');
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            json.append('"').append(PERCENTILE_NAMES[i]).append("\":")
+                .append(String.format(Locale.ROOT, "%.3f", quantile(counts, PERCENTILES[i], maxNanos) / 1e6)).append(',');
+        }
+        if (maxNanos >= 0) {
+            json.append("\"max\":").append(String.format(Locale.ROOT, "%.3f", maxNanos / 1e6));
+        } else {
+            json.setLength(json.length() - 1);
+        }
+        json.append('}');
+    }
+}
@@ -0,0 +1,105 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.FoodIndex;
+import com.maintenance.calculator.engine.FoodTable;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.MealPlan;
+import com.maintenance.calculator.engine.MealPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meal plan latency for the targets of the benchmark profiles
+ * "solve" runs the bounded search for each profile's bucketed targets with the /meal-plan default
+ * budget, "solveContended" does the same from 4 threads at once, and "cached" is the lookup a
+ * request pays once its bucket has been solved. Scores are per plan; compare "solve" against the
+ * budget, and run with -prof gc to see the per-solve allocation (the plan itself).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MealPlannerBenchmark {
+
+    private static final long BUDGET_NANOS = 20_000_000L;
+
+    @Param({"realistic", "uniform"})
+    public String distribution;
+
+    private FoodIndex index;
+    private final int[] protein = new int[ProfileInputs.SIZE];
+    private final int[] carbs = new int[ProfileInputs.SIZE];
+    private final int[] fat = new int[ProfileInputs.SIZE];
+    private final long[] keys = new long[ProfileInputs.SIZE];
+    private MealPlanCache cache;
+
+    @State(Scope.Thread)
+    public static class Worker {
+        MealPlanner planner;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(MealPlannerBenchmark benchmark) {
+            planner = new MealPlanner(benchmark.index);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        index = new FoodIndex(FoodTable.bundled());
+        ProfileInputs inputs = ProfileInputs.generate(distribution, 42);
+        CalculationResult result = new CalculationResult();
+        cache = new MealPlanCache(ProfileInputs.SIZE * 2);
+        MealPlanner planner = new MealPlanner(index);
+        for (int i = 0; i < ProfileInputs.SIZE; i++) {
+            CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i],
+                Gender.parse(inputs.gender[i]).ordinal(), inputs.activityLevel[i], inputs.days[i], inputs.hours[i],
+                Goal.parse(inputs.goal[i]).ordinal(), result);
+            protein[i] = MealPlanCache.bucket(result.getProteinGrams());
+            carbs[i] = MealPlanCache.bucket(result.getCarbGrams());
+            fat[i] = MealPlanCache.bucket(result.getFatGrams());
+            keys[i] = MealPlanCache.key(protein[i], carbs[i], fat[i]);
+            if (cache.get(keys[i]) == null) {
+                cache.put(keys[i], planner.solve(protein[i], carbs[i], fat[i], BUDGET_NANOS));
+            }
+        }
+    }
+
+    @Benchmark
+    public MealPlan solve(Worker worker) {
+        int i = worker.next++ & (ProfileInputs.SIZE - 1);
+        return worker.planner.solve(protein[i], carbs[i], fat[i], BUDGET_NANOS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MealPlan solveContended(Worker worker) {
+        int i = worker.next++ & (ProfileInputs.SIZE - 1);
+        return worker.planner.solve(protein[i], carbs[i], fat[i], BUDGET_NANOS);
+    }
+
+    @Benchmark
+    public MealPlan cached(Worker worker) {
+        int i = worker.next++ & (ProfileInputs.SIZE - 1);
+        return cache.get(keys[i]);
+    }
+}
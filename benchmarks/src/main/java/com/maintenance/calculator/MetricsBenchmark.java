@@ -0,0 +1,65 @@
+package com.maintenance.calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of metrics recording on the request path
+ * "baseline" is the System.nanoTime() call every recording needs anyway; the difference
+ * to "stage" and "request" is the overhead added per request. The contended variants run
+ * the same calls from 8 threads against one shared registry.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final Metrics metrics = new Metrics();
+
+    @Benchmark
+    public long baseline() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public long stage() {
+        return metrics.stage(Metrics.Stage.COMPUTE, System.nanoTime() - 1500);
+    }
+
+    @Benchmark
+    public void request() {
+        metrics.request(Metrics.Handler.CALCULATE, 200, 42_000);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long stageContended() {
+        return metrics.stage(Metrics.Stage.COMPUTE, System.nanoTime() - 1500);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void requestContended() {
+        metrics.request(Metrics.Handler.CALCULATE, 200, 42_000);
+    }
+
+    @Benchmark
+    public int scrape() {
+        StringBuilder out = new StringBuilder(16384);
+        metrics.writePrometheus(out);
+        return out.length();
+    }
+}
@@ -0,0 +1,153 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per /calculate pipeline stage: parse, validate, compute, render and write,
+ * plus the servlet's request-attribute step
+ * Each invocation processes the next profile from a pre-generated set of 1024.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    @Param({"realistic", "uniform"})
+    public String distribution;
+
+    private ProfileInputs inputs;
+    private int next;
+
+    private WebServer.CalculatorHandler handler;
+    private CalculatorServlet servlet;
+    private HttpServletRequest servletRequest;
+    private final FormParser formParser = new FormParser();
+    private final CalculationResult result = new CalculationResult();
+    private final ResponseBuffer buffer = new ResponseBuffer(8192);
+    private final ResultTemplate.Values values = new ResultTemplate.Values();
+    private final FakeExchange.CountingOutputStream sink = new FakeExchange.CountingOutputStream();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inputs = ProfileInputs.generate(distribution, 42);
+        handler = new WebServer.CalculatorHandler();
+        servlet = new CalculatorServlet();
+        servletRequest = attributeOnlyRequest();
+
+        // Prepare a rendered page for the write benchmark
+        CalorieEngine.calculate(170, 70, 30, 0, 1.55, 3, 1, 0, result);
+        buffer.reset();
+        handler.generateResultsPage(result, Rules.current(), values, buffer);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) & (ProfileInputs.SIZE - 1);
+        return i;
+    }
+
+    @Benchmark
+    public FormParser.Status parse() {
+        byte[] body = inputs.formBytes[nextIndex()];
+        return formParser.parse(body, 0, body.length);
+    }
+
+    @Benchmark
+    public InputError validate() {
+        int i = nextIndex();
+        return CalorieEngine.validate(inputs.height[i], inputs.weight[i], inputs.age[i], inputs.days[i], inputs.hours[i]);
+    }
+
+    @Benchmark
+    public CalculationResult compute() {
+        int i = nextIndex();
+        CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i],
+            Gender.parse(inputs.gender[i]).ordinal(), inputs.activityLevel[i],
+            inputs.days[i], inputs.hours[i], Goal.parse(inputs.goal[i]).ordinal(), result);
+        return result;
+    }
+
+    @Benchmark
+    public int render() {
+        int i = nextIndex();
+        CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i],
+            Gender.parse(inputs.gender[i]).ordinal(), inputs.activityLevel[i],
+            inputs.days[i], inputs.hours[i], Goal.parse(inputs.goal[i]).ordinal(), result);
+        buffer.reset();
+        handler.generateResultsPage(result, Rules.current(), values, buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int renderJson() {
+        int i = nextIndex();
+        CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i],
+            Gender.parse(inputs.gender[i]).ordinal(), inputs.activityLevel[i],
+            inputs.days[i], inputs.hours[i], Goal.parse(inputs.goal[i]).ordinal(), result);
+        buffer.reset();
+        ResultJson.write(result, Rules.current(), buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        buffer.writeTo(sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    public HttpServletRequest servletAttributes() {
+        int i = nextIndex();
+        CalorieEngine.calculate(inputs.height[i], inputs.weight[i], inputs.age[i],
+            Gender.parse(inputs.gender[i]).ordinal(), inputs.activityLevel[i],
+            inputs.days[i], inputs.hours[i], Goal.parse(inputs.goal[i]).ordinal(), result);
+        servlet.setResultAttributes(servletRequest, Rules.current(), result);
+        return servletRequest;
+    }
+
+    /**
+     * HttpServletRequest that only supports attributes, backed by a HashMap like a container's
+     */
+    private static HttpServletRequest attributeOnlyRequest() {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setAttribute": attributes.put((String) args[0], args[1]); return null;
+                    case "getAttribute": return attributes.get((String) args[0]);
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
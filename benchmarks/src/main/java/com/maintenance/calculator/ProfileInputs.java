@@ -0,0 +1,88 @@
+package com.maintenance.calculator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic input profiles for the benchmarks
+ * "uniform" spreads values across the whole valid range, "realistic" clusters them around
+ * common values the way production traffic does, and "invalid" mixes in malformed forms.
+ */
+final class ProfileInputs {
+
+    static final int SIZE = 1024;
+    private static final double[] ACTIVITY_LEVELS = {1.2, 1.375, 1.55, 1.725, 1.9};
+    private static final String[] GOALS = {"maintain", "lose", "gain"};
+
+    final double[] height = new double[SIZE];
+    final double[] weight = new double[SIZE];
+    final int[] age = new int[SIZE];
+    final String[] gender = new String[SIZE];
+    final double[] activityLevel = new double[SIZE];
+    final int[] days = new int[SIZE];
+    final double[] hours = new double[SIZE];
+    final String[] goal = new String[SIZE];
+    final String[] formBodies = new String[SIZE];
+    final byte[][] formBytes = new byte[SIZE][];
+
+    private ProfileInputs() {
+    }
+
+    static ProfileInputs generate(String distribution, long seed) {
+        Random random = new Random(seed);
+        ProfileInputs inputs = new ProfileInputs();
+        for (int i = 0; i < SIZE; i++) {
+            switch (distribution) {
+                case "uniform":
+                    inputs.height[i] = 100 + random.nextInt(151);
+                    inputs.weight[i] = 30 + random.nextInt(271);
+                    inputs.age[i] = 15 + random.nextInt(86);
+                    inputs.days[i] = 1 + random.nextInt(7);
+                    inputs.hours[i] = 0.5 + random.nextInt(8) * 0.5;
+                    break;
+                case "realistic":
+                case "invalid":
+                    inputs.height[i] = clamp(Math.round(172 + random.nextGaussian() * 9), 100, 250);
+                    inputs.weight[i] = clamp(Math.round(75 + random.nextGaussian() * 14), 30, 300);
+                    inputs.age[i] = (int) clamp(Math.round(34 + random.nextGaussian() * 11), 15, 100);
+                    inputs.days[i] = 3 + random.nextInt(3);
+                    inputs.hours[i] = random.nextBoolean() ? 1 : 1.5;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + distribution);
+            }
+            inputs.gender[i] = random.nextBoolean() ? "male" : "female";
+            inputs.activityLevel[i] = ACTIVITY_LEVELS[random.nextInt(ACTIVITY_LEVELS.length)];
+            inputs.goal[i] = GOALS[random.nextInt(GOALS.length)];
+
+            if ("invalid".equals(distribution) && random.nextInt(4) == 0) {
+                inputs.formBodies[i] = random.nextBoolean()
+                    ? "height=abc&weight=70&age=30&gender=male&activityLevel=1.2&days=3&hours=1"
+                    : "height=400&weight=70&age=30&gender=male&activityLevel=1.2&days=3&hours=1";
+            } else {
+                inputs.formBodies[i] = formBody(inputs, i);
+            }
+            inputs.formBytes[i] = inputs.formBodies[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return inputs;
+    }
+
+    private static String formBody(ProfileInputs inputs, int i) {
+        return "height=" + format(inputs.height[i])
+            + "&weight=" + format(inputs.weight[i])
+            + "&age=" + inputs.age[i]
+            + "&gender=" + inputs.gender[i]
+            + "&activityLevel=" + inputs.activityLevel[i]
+            + "&days=" + inputs.days[i]
+            + "&hours=" + format(inputs.hours[i])
+            + "&goal=" + inputs.goal[i];
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
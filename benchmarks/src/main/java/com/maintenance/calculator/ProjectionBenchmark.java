@@ -0,0 +1,75 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.Projection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a weight projection, cold and through the ProjectionCache
+ * "cold" simulates every week of a new Projection; "cached" looks the same profile up in a warm
+ * cache, and "extend" asks a cached curve for one more week than it has, which is the work a
+ * request for a longer horizon adds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ProjectionBenchmark {
+
+    @Param({"12", "104", "520"})
+    public int weeks;
+
+    private static final double HEIGHT = 178, WEIGHT = 92, ACTIVITY = 1.55, TARGET = 80;
+    private static final int AGE = 35;
+    private final int gender = Gender.MALE.ordinal();
+    private final int goal = Goal.LOSE.ordinal();
+
+    private ProjectionCache cache;
+    private Projection growing;
+    private int horizon;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new ProjectionCache(4096);
+        cache.get(HEIGHT, WEIGHT, AGE, gender, ACTIVITY, goal, TARGET).extendTo(weeks);
+    }
+
+    @Setup(Level.Iteration)
+    public void newCurve() {
+        growing = new Projection(HEIGHT, WEIGHT, AGE, gender, ACTIVITY, goal, 0);
+        horizon = 0;
+    }
+
+    @Benchmark
+    public double cold() {
+        return new Projection(HEIGHT, WEIGHT, AGE, gender, ACTIVITY, goal, TARGET).extendTo(weeks)[weeks];
+    }
+
+    @Benchmark
+    public double cached() {
+        return cache.get(HEIGHT, WEIGHT, AGE, gender, ACTIVITY, goal, TARGET).extendTo(weeks)[weeks];
+    }
+
+    @Benchmark
+    public double extend() {
+        if (horizon == weeks) newCurve();
+        horizon++;
+        return growing.extendTo(horizon)[horizon];
+    }
+}
@@ -1,6 +1,8 @@
 // Global variables
 let calorieChart = null;
 let macroChart = null;
+let lastResults = null;
+let liveSocket = null;
 
 // DOM elements
 const form = document.getElementById('calorieForm');
@@ -10,6 +12,7 @@ const resultsSection = document.getElementById('results-section');
 document.addEventListener('DOMContentLoaded', function() {
     initializeEventListeners();
     initializeAnimations();
+    initializeLiveUpdates();
 });
 
 // Initialize all event listeners
@@ -86,6 +89,7 @@ function handleFormSubmission(event) {
     try {
         const formData = getFormData();
         const results = calculateResults(formData);
+        lastResults = results;
         displayResults(results);
         scrollToResults();
     } catch (error) {
@@ -96,6 +100,53 @@ function handleFormSubmission(event) {
     }
 }
 
+// Live recalculation over the /live WebSocket (served by TomcatLauncher). Field changes are sent
+// as they happen and the server replies at most once per frame with the figures that changed;
+// without the endpoint the form simply keeps working on submit.
+const LIVE_FIELDS = ['height', 'weight', 'age', 'gender', 'activityLevel', 'days', 'hours'];
+
+function initializeLiveUpdates() {
+    if (!('WebSocket' in window) || location.protocol === 'file:') {
+        return;
+    }
+    const scheme = location.protocol === 'https:' ? 'wss:' : 'ws:';
+    const socket = new WebSocket(`${scheme}//${location.host}/live`);
+    socket.addEventListener('open', () => {
+        liveSocket = socket;
+        const fields = LIVE_FIELDS.map(id => liveField(id, document.getElementById(id).value));
+        fields.push(liveField('goal', getSelectedGoal()));
+        socket.send(fields.join('&'));
+    });
+    socket.addEventListener('message', event => applyLiveUpdate(JSON.parse(event.data)));
+    socket.addEventListener('close', () => {
+        liveSocket = null;
+    });
+
+    form.addEventListener('input', event => {
+        const key = event.target.name || event.target.id;
+        if (liveSocket && key) {
+            liveSocket.send(liveField(key, event.target.value));
+        }
+    });
+}
+
+function liveField(key, value) {
+    return `${encodeURIComponent(key)}=${encodeURIComponent(value)}`;
+}
+
+// Merge changed figures into the displayed results; nothing is shown before the first submit
+function applyLiveUpdate(update) {
+    if (update.error || !lastResults) {
+        return;
+    }
+    ['bmr', 'maintenanceCalories', 'targetCalories', 'bmi'].forEach(key => {
+        if (key in update) {
+            lastResults[key] = update[key];
+        }
+    });
+    displayCalorieResults(lastResults);
+}
+
 // Get form data
 function getFormData() {
     return {
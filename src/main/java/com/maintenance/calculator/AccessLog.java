@@ -0,0 +1,415 @@
+package com.maintenance.calculator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous access log: request threads publish into a ring, one thread writes the files
+ *
+ * The ring is preallocated as parallel arrays with a sequence number per slot (a bounded
+ * multi-producer queue): a producer claims a slot with one CAS on the tail, copies the record's
+ * fields in and releases the slot by advancing its sequence. Publishing never locks, waits or
+ * allocates; when the ring is full the record is dropped and counted instead. The "access-log"
+ * thread drains the ring in batches into a direct buffer and writes it through a FileChannel,
+ * as JSON lines or as fixed-size binary records, into access-NNNNNNNN.jsonl/.bin files in the
+ * log directory. A file is closed once it would grow past maxFileBytes and only the newest
+ * maxFiles are kept.
+ *
+ * Binary files start with a 16-byte header ("ALOG", version, record size, stage count) followed
+ * by little-endian 128-byte records: epoch millis, duration nanos, response bytes, one nanos
+ * value per Metrics.Stage, then status (short), handler and method ordinals, path length (bytes)
+ * and the path, truncated to PATH_BYTES.
+ */
+public final class AccessLog implements Closeable {
+
+    public enum Format {
+        JSON(".jsonl"), BINARY(".bin");
+
+        final String suffix;
+
+        Format(String suffix) {
+            this.suffix = suffix;
+        }
+    }
+
+    /** Longest path kept; longer ones are truncated */
+    public static final int PATH_BYTES = 64;
+
+    static final String[] METHODS = {"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "OTHER"};
+    private static final int OTHER_METHOD = METHODS.length - 1;
+    private static final int STAGES = Metrics.Stage.values().length;
+
+    private static final int MAGIC = 0x474F4C41; // "ALOG"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    // Three longs, a long per stage and 5 bytes of small fields must fit before the path
+    static final int RECORD_SIZE = 128;
+    // Upper bound of one JSON line
+    private static final int MAX_LINE = 512;
+    private static final int BATCH = 256;
+    private static final int OUT_CAPACITY = 256 * 1024;
+    private static final long IDLE_NANOS = 1_000_000;
+
+    private static final byte[][] HANDLER_NAMES = new byte[Metrics.Handler.values().length][];
+    private static final byte[][] METHOD_NAMES = new byte[METHODS.length][];
+    private static final byte[][] STAGE_FIELDS = new byte[STAGES][];
+
+    static {
+        for (Metrics.Handler handler : Metrics.Handler.values()) {
+            HANDLER_NAMES[handler.ordinal()] = handler.label.getBytes(StandardCharsets.US_ASCII);
+        }
+        for (int i = 0; i < METHODS.length; i++) {
+            METHOD_NAMES[i] = METHODS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            STAGE_FIELDS[stage.ordinal()] = (",\"" + stage.label + "\":").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final Path dir;
+    private final Format format;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // Ring: slot i holds a record when sequence[i] == position + 1, and is free when it equals position
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private final long[] times;
+    private final long[] durations;
+    private final long[] bytes;
+    private final long[] stageNanos;
+    private final int[] statuses;
+    private final byte[] handlers;
+    private final byte[] methods;
+    private final byte[] pathLengths;
+    private final byte[] paths;
+
+    // Consumer state, only touched by the access-log thread
+    private long head;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(OUT_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] digits = new byte[20];
+    private final ArrayDeque<Integer> files = new ArrayDeque<>();
+    private FileChannel channel;
+    private int fileId;
+    private long fileBytes;
+
+    private final LongAdder dropped = new LongAdder();
+    /** Records taken off the ring, i.e. head as seen by other threads */
+    private volatile long written;
+    private volatile long rotations;
+    private volatile boolean closed;
+    private final Thread consumer;
+
+    /**
+     * @param capacity     records the ring holds, rounded up to a power of two
+     * @param maxFileBytes size at which a file is closed and the next one started
+     * @param maxFiles     files kept, the newest ones
+     */
+    public AccessLog(Path dir, Format format, int capacity, long maxFileBytes, int maxFiles) throws IOException {
+        if (maxFileBytes < MAX_LINE + HEADER || maxFiles < 1) {
+            throw new IllegalArgumentException("Access log files must hold at least one record");
+        }
+        this.dir = Files.createDirectories(dir);
+        this.format = format;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+        this.times = new long[size];
+        this.durations = new long[size];
+        this.bytes = new long[size];
+        this.stageNanos = new long[size * STAGES];
+        this.statuses = new int[size];
+        this.handlers = new byte[size];
+        this.methods = new byte[size];
+        this.pathLengths = new byte[size];
+        this.paths = new byte[size * PATH_BYTES];
+
+        // Continue numbering after the files already there
+        List<Integer> existing = new ArrayList<>();
+        try (DirectoryStream<Path> listing = Files.newDirectoryStream(dir, "access-*" + format.suffix)) {
+            for (Path file : listing) {
+                int id = idOf(file);
+                if (id >= 0) existing.add(id);
+            }
+        }
+        Collections.sort(existing);
+        files.addAll(existing);
+        fileId = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+
+        RequestTrace.enable();
+        consumer = new Thread(this::run, "access-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Opens the log configured by --access-log=dir, or returns null when it is not set
+     * --access-log-format (json or binary), --access-log-buffer (records), --access-log-file-mb
+     * and --access-log-files tune it.
+     */
+    static AccessLog open(ServerOptions options) throws IOException {
+        String dir = options.get("access-log", null);
+        if (dir == null) {
+            return null;
+        }
+        Format format = Format.valueOf(options.get("access-log-format", "json").toUpperCase(Locale.ROOT));
+        return new AccessLog(Paths.get(dir), format, options.getInt("access-log-buffer", 16384),
+            options.getInt("access-log-file-mb", 64) * 1024L * 1024L, options.getInt("access-log-files", 10));
+    }
+
+    static String fileName(int id, Format format) {
+        return String.format("access-%08d%s", id, format.suffix);
+    }
+
+    private int idOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring("access-".length(), name.length() - format.suffix.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Queues one request; returns false, counting a drop, if the ring is full
+     *
+     * @param path       raw request path; characters outside printable ASCII, quotes and
+     *                   backslashes are stored as '?'
+     * @param stageNanos nanos per Metrics.Stage ordinal
+     */
+    public boolean publish(Metrics.Handler handler, String method, String path, int status, long responseBytes,
+                           long durationNanos, long[] stageNanos) {
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) position & mask;
+            long available = sequence.get(slot);
+            if (available == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (available < position || closed) {
+                dropped.increment();
+                return false;
+            }
+        }
+
+        times[slot] = System.currentTimeMillis();
+        durations[slot] = durationNanos;
+        bytes[slot] = responseBytes;
+        System.arraycopy(stageNanos, 0, this.stageNanos, slot * STAGES, STAGES);
+        statuses[slot] = status;
+        handlers[slot] = (byte) handler.ordinal();
+        methods[slot] = (byte) methodIndex(method);
+        int length = Math.min(path.length(), PATH_BYTES);
+        int base = slot * PATH_BYTES;
+        for (int i = 0; i < length; i++) {
+            char c = path.charAt(i);
+            paths[base + i] = c < 0x20 || c > 0x7E || c == '"' || c == '\\' ? (byte) '?' : (byte) c;
+        }
+        pathLengths[slot] = (byte) length;
+        sequence.lazySet(slot, position + 1);
+        return true;
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < OTHER_METHOD; i++) {
+            if (METHODS[i].equals(method)) return i;
+        }
+        return OTHER_METHOD;
+    }
+
+    private void run() {
+        while (true) {
+            int drained;
+            try {
+                drained = drain();
+                if (drained == 0) {
+                    flush();
+                }
+            } catch (IOException e) {
+                System.err.println("Access log write failed: " + e.getMessage());
+                discard();
+                LockSupport.parkNanos(1_000_000_000L);
+                continue;
+            }
+            if (drained == 0) {
+                if (closed) break;
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Access log did not close cleanly: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves up to BATCH records from the ring into the output buffer
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        while (count < BATCH) {
+            int slot = (int) head & mask;
+            if (sequence.get(slot) != head + 1) break;
+            int limit = format == Format.JSON ? MAX_LINE : RECORD_SIZE;
+            if (channel == null || fileBytes + out.position() + limit > maxFileBytes) {
+                flush();
+                rotate();
+            } else if (out.remaining() < limit) {
+                flush();
+            }
+            if (format == Format.JSON) {
+                encodeJson(slot);
+            } else {
+                encodeBinary(slot);
+            }
+            sequence.lazySet(slot, head + mask + 1);
+            head++;
+            count++;
+        }
+        written += count;
+        return count;
+    }
+
+    private void flush() throws IOException {
+        if (out.position() == 0) return;
+        out.flip();
+        while (out.hasRemaining()) {
+            fileBytes += channel.write(out);
+        }
+        out.clear();
+    }
+
+    private void rotate() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            rotations++;
+        }
+        fileId++;
+        channel = FileChannel.open(dir.resolve(fileName(fileId, format)), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        fileBytes = 0;
+        files.add(fileId);
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(dir.resolve(fileName(files.removeFirst(), format)));
+        }
+        if (format == Format.BINARY) {
+            out.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(STAGES);
+        }
+    }
+
+    // After a failed write: what was buffered is lost, and the next record starts a new file
+    private void discard() {
+        out.clear();
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private void encodeBinary(int slot) {
+        int start = out.position();
+        out.putLong(times[slot]).putLong(durations[slot]).putLong(bytes[slot]);
+        for (int s = 0; s < STAGES; s++) {
+            out.putLong(stageNanos[slot * STAGES + s]);
+        }
+        out.putShort((short) statuses[slot]).put(handlers[slot]).put(methods[slot]).put(pathLengths[slot]);
+        out.position(start + RECORD_SIZE - PATH_BYTES);
+        out.put(paths, slot * PATH_BYTES, pathLengths[slot]);
+        while (out.position() < start + RECORD_SIZE) out.put((byte) 0);
+    }
+
+    private void encodeJson(int slot) {
+        putAscii("{\"time\":");
+        putLong(times[slot]);
+        putAscii(",\"handler\":\"");
+        out.put(HANDLER_NAMES[handlers[slot]]);
+        putAscii("\",\"method\":\"");
+        out.put(METHOD_NAMES[methods[slot]]);
+        putAscii("\",\"path\":\"");
+        out.put(paths, slot * PATH_BYTES, pathLengths[slot]);
+        putAscii("\",\"status\":");
+        putLong(statuses[slot]);
+        putAscii(",\"bytes\":");
+        putLong(bytes[slot]);
+        putAscii(",\"nanos\":");
+        putLong(durations[slot]);
+        for (int s = 0; s < STAGES; s++) {
+            long nanos = stageNanos[slot * STAGES + s];
+            if (nanos == 0) continue;
+            out.put(STAGE_FIELDS[s]);
+            putLong(nanos);
+        }
+        putAscii("}\n");
+    }
+
+    private void putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putLong(long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) out.put(digits[--n]);
+    }
+
+    /**
+     * Stops accepting records, writes what is queued and closes the current file
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDropped() { return dropped.sum(); }
+    public long getWritten() { return written; }
+    public long getRotations() { return rotations; }
+    public long getQueued() { return tail.get() - written; }
+}
@@ -0,0 +1,212 @@
+package com.maintenance.calculator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with a bounded wait queue, for shedding load before latency runs away
+ *
+ * A request is admitted while fewer than limit requests are in flight. Otherwise it may wait
+ * up to maxWait for a slot if fewer than queueCapacity requests are already waiting; anything
+ * beyond that is rejected at once, so the caller can answer 503 cheaply. With a latency target
+ * the limit adapts AIMD-style: every release that met the target while the limit was in use adds
+ * 1/limit, and a release over the target cuts the limit by BACKOFF (at most once per
+ * BACKOFF_INTERVAL, so one burst of slow requests counts as one signal). Without a target the
+ * limit is fixed.
+ */
+public final class AdmissionController {
+
+    /**
+     * Result of {@link #acquire}
+     */
+    public enum Outcome {
+        /** A slot was free, or came free while waiting; call release() when done */
+        ADMITTED(true),
+        /** The limit was reached and the wait queue was full */
+        REJECTED_QUEUE_FULL(false),
+        /** The request waited maxWait without getting a slot */
+        REJECTED_TIMEOUT(false);
+
+        private final boolean admitted;
+
+        Outcome(boolean admitted) {
+            this.admitted = admitted;
+        }
+
+        public boolean admitted() {
+            return admitted;
+        }
+    }
+
+    /** Sent as Retry-After with a rejection */
+    public static final int RETRY_AFTER_SECONDS = 1;
+
+    private static final double BACKOFF = 0.9;
+    private static final long BACKOFF_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastBackoff;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param limit initial concurrency limit
+     * @param minLimit lowest the limit may adapt to
+     * @param maxLimit highest the limit may adapt to
+     * @param queueCapacity requests that may wait for a slot; 0 rejects as soon as the limit is reached
+     * @param maxWaitMillis longest a request waits for a slot
+     * @param targetLatencyMillis latency above which the limit backs off; 0 keeps the limit fixed
+     */
+    public AdmissionController(String name, int limit, int minLimit, int maxLimit,
+                               int queueCapacity, long maxWaitMillis, long targetLatencyMillis) {
+        if (minLimit < 1 || minLimit > limit || limit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits for " + name + " must satisfy 1 <= "
+                + minLimit + " <= " + limit + " <= " + maxLimit);
+        }
+        this.name = name;
+        this.limit = limit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetLatencyMillis));
+    }
+
+    /**
+     * A fixed limit with no wait queue, e.g. a separate budget for cheap requests
+     */
+    public static AdmissionController fixed(String name, int limit) {
+        return new AdmissionController(name, limit, limit, limit, 0, 0, 0);
+    }
+
+    /**
+     * Takes a slot, waiting for one if the queue has room
+     * An interrupted wait is reported as REJECTED_TIMEOUT with the interrupt flag restored.
+     */
+    public Outcome acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                admitted.increment();
+                return Outcome.ADMITTED;
+            }
+            if (waiting >= queueCapacity) {
+                rejected.increment();
+                return Outcome.REJECTED_QUEUE_FULL;
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejected.increment();
+                        return Outcome.REJECTED_TIMEOUT;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                return Outcome.REJECTED_TIMEOUT;
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            admitted.increment();
+            return Outcome.ADMITTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot taken by an admitted acquire()
+     * @param latencyNanos how long the request took, from arrival to response, to adapt the limit
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (targetLatencyNanos > 0) {
+                if (latencyNanos > targetLatencyNanos) {
+                    long now = System.nanoTime();
+                    if (now - lastBackoff >= BACKOFF_INTERVAL_NANOS) {
+                        limit = Math.max(minLimit, limit * BACKOFF);
+                        lastBackoff = now;
+                    }
+                } else if (saturated) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            if (waiting > 0 && inFlight < (int) limit) {
+                slotFreed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether a request that already waited this long elsewhere (e.g. in the executor queue)
+     * has waited longer than it would be allowed to wait here, and should be shed unserved
+     */
+    public boolean expired(long waitedNanos) {
+        return maxWaitNanos > 0 && waitedNanos > maxWaitNanos;
+    }
+
+    /**
+     * Counts a request that was shed without calling acquire()
+     */
+    public void reject() {
+        rejected.increment();
+    }
+
+    public String getName() { return name; }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmitted() { return admitted.sum(); }
+    public long getRejected() { return rejected.sum(); }
+}
@@ -0,0 +1,118 @@
+package com.maintenance.calculator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers directly from ASCII bytes, without creating Strings or throwing
+ * Failures are reported as NaN (doubles) or INVALID (ints) so callers can map them to a result code.
+ */
+public final class AsciiNumbers {
+
+    /** Returned by parseInt when the bytes are not a valid int */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // Powers of ten that are exact in a double; dividing an exact mantissa by one is correctly rounded
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private AsciiNumbers() {
+    }
+
+    /**
+     * Parses an optionally signed decimal integer from bytes[start, end)
+     */
+    public static long parseInt(byte[] bytes, int start, int end) {
+        if (start >= end) return INVALID;
+        boolean negative = false;
+        int i = start;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            if (++i == end) return INVALID;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) return INVALID;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return INVALID;
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    /**
+     * Parses an optionally signed decimal long from bytes[start, end); Long.MIN_VALUE itself is INVALID
+     */
+    public static long parseLong(byte[] bytes, int start, int end) {
+        if (start >= end) return INVALID;
+        boolean negative = false;
+        int i = start;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            if (++i == end) return INVALID;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) return INVALID;
+            if (value > (Long.MAX_VALUE - digit) / 10) return INVALID;
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number such as "175", "-3.5" or "1.725" from bytes[start, end)
+     * Plain decimals with up to 15 significant digits take an exact fast path; anything else
+     * (exponents, very long mantissas) is handed to Double.parseDouble. Returns NaN when invalid,
+     * including the literal strings "NaN" and "Infinity".
+     */
+    public static double parseDouble(byte[] bytes, int start, int end) {
+        if (start >= end) return Double.NaN;
+        int i = start;
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            if (++i == end) return Double.NaN;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean slowPath = false;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (seenPoint) fractionDigits++;
+                } else {
+                    slowPath = true;
+                }
+                digits++;
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b == 'e' || b == 'E') {
+                slowPath = true;
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) return Double.NaN;
+
+        if (!slowPath && fractionDigits < EXACT_POWERS_OF_TEN.length) {
+            double value = mantissa / EXACT_POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.Rules;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * POST /calculate/batch: newline-delimited JSON profiles in, one JSON result per line out
+ *
+ * The request is read through a fixed-size buffer and results are streamed back with chunked
+ * transfer as rows complete, so memory stays bounded whatever the batch size. Each input line is
+ * a flat object with the same fields as the /calculate form, plus an optional "id" that is echoed
+ * back. Invalid rows produce {"line":n,"error":"..."} and the batch carries on.
+ */
+public class BatchCalculationHandler implements HttpHandler {
+
+    /** Longest accepted input line; longer lines are skipped and reported as errors */
+    static final int MAX_LINE_LENGTH = 16 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            ResponseWriter.sendEmpty(exchange, 405);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (InputStream in = exchange.getRequestBody();
+             OutputStream out = exchange.getResponseBody()) {
+            new BatchRun(in, out).run();
+        }
+    }
+
+    /**
+     * State for one batch request; reuses its buffers for every row
+     */
+    static final class BatchRun {
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        private final byte[] line = new byte[MAX_LINE_LENGTH];
+        private final ResponseBuffer response = new ResponseBuffer(FLUSH_THRESHOLD + 1024);
+        private final RowParser parser = new RowParser();
+        private final CalculationResult result = new CalculationResult();
+
+        BatchRun(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        void run() throws IOException {
+            long lineNumber = 0;
+            int lineLength = 0;
+            boolean overflow = false;
+
+            int read;
+            while ((read = in.read(readBuffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = readBuffer[i];
+                    if (b == '\n') {
+                        lineNumber++;
+                        if (overflow) {
+                            writeOverflowError(lineNumber);
+                        } else {
+                            processLine(lineNumber, lineLength);
+                        }
+                        lineLength = 0;
+                        overflow = false;
+                    } else if (lineLength < MAX_LINE_LENGTH) {
+                        line[lineLength++] = b;
+                    } else {
+                        overflow = true;
+                    }
+                }
+                // Push finished rows out whenever the client has nothing more buffered for us
+                if (response.size() >= FLUSH_THRESHOLD || in.available() == 0) {
+                    flush();
+                }
+            }
+            if (lineLength > 0 || overflow) {
+                lineNumber++;
+                if (overflow) {
+                    writeOverflowError(lineNumber);
+                } else {
+                    processLine(lineNumber, lineLength);
+                }
+            }
+            flush();
+        }
+
+        private void flush() throws IOException {
+            if (response.size() > 0) {
+                response.writeTo(out);
+                response.reset();
+                out.flush();
+            }
+        }
+
+        private void processLine(long lineNumber, int length) {
+            // Tolerate CRLF and blank lines
+            if (length > 0 && line[length - 1] == '\r') length--;
+            if (isBlank(line, length)) return;
+
+            String error = parser.parse(line, length);
+            if (error == null) {
+                InputError inputError = CalorieEngine.validate(parser.height, parser.weight, parser.age,
+                                                               parser.days, parser.hours);
+                if (inputError != null) error = inputError.message();
+            }
+            if (error != null) {
+                writeError(lineNumber, error);
+                return;
+            }
+
+            // Labels are written from the rules the line was calculated under
+            Rules rules = Rules.current();
+            CalorieEngine.calculate(rules, parser.height, parser.weight, parser.age, parser.gender,
+                parser.activityLevel, parser.days, parser.hours, parser.goal, result);
+
+            ResponseBuffer r = response;
+            r.writeAscii("{\"line\":");
+            writeLong(lineNumber);
+            writeId();
+            r.writeByte(',');
+            ResultJson.writeFields(result, rules, r);
+            r.writeAscii("}\n");
+        }
+
+        private void writeOverflowError(long lineNumber) {
+            // The line was never parsed, so there is no id to echo
+            parser.idStart = parser.idEnd = 0;
+            writeError(lineNumber, "Line exceeds " + MAX_LINE_LENGTH + " bytes");
+        }
+
+        private void writeError(long lineNumber, String message) {
+            response.writeAscii("{\"line\":");
+            writeLong(lineNumber);
+            writeId();
+            response.writeAscii(",\"error\":");
+            response.writeJsonString(message);
+            response.writeAscii("}\n");
+            parser.idStart = parser.idEnd = 0;
+        }
+
+        private void writeId() {
+            if (parser.idEnd > parser.idStart) {
+                response.writeAscii(",\"id\":");
+                // The raw token is already valid JSON (a string or a number)
+                for (int i = parser.idStart; i < parser.idEnd; i++) response.writeByte(line[i]);
+            }
+        }
+
+        private void writeLong(long value) {
+            if (value <= Integer.MAX_VALUE) {
+                response.writeInt((int) value);
+            } else {
+                response.writeAscii(Long.toString(value));
+            }
+        }
+
+        private static boolean isBlank(byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != ' ' && bytes[i] != '\t') return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Minimal parser for one flat JSON object of string and number values
+     * Unknown keys are skipped; nested objects and arrays are rejected.
+     */
+    static final class RowParser {
+        double height, weight, activityLevel, hours;
+        int age, days, gender, goal;
+        int idStart, idEnd;
+
+        private byte[] bytes;
+        private int pos;
+        private int end;
+        private final ByteSequence text = new ByteSequence();
+
+        private static final int HEIGHT = 1, WEIGHT = 2, AGE = 4, GENDER = 8,
+                                 ACTIVITY = 16, DAYS = 32, HOURS = 64;
+        // The fields /calculate requires; gender and goal are optional there too
+        private static final int REQUIRED = HEIGHT | WEIGHT | AGE | ACTIVITY | DAYS | HOURS;
+
+        /**
+         * Parses bytes[0, length); returns null on success or an error message
+         */
+        String parse(byte[] line, int length) {
+            bytes = line;
+            pos = 0;
+            end = length;
+            idStart = idEnd = 0;
+            gender = Gender.FEMALE.ordinal();
+            goal = Goal.MAINTAIN.ordinal();
+            int seen = 0;
+
+            skipWhitespace();
+            if (!consume('{')) return "Expected a JSON object";
+            skipWhitespace();
+            if (consume('}')) return "Missing required fields";
+
+            while (true) {
+                skipWhitespace();
+                int keyStart = pos + 1;
+                if (!skipString()) return "Malformed JSON key";
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                if (!consume(':')) return "Malformed JSON";
+                skipWhitespace();
+
+                int valueStart = pos;
+                boolean isString = pos < end && bytes[pos] == '"';
+                if (isString) {
+                    if (!skipString()) return "Malformed JSON string";
+                } else {
+                    while (pos < end && bytes[pos] != ',' && bytes[pos] != '}'
+                           && bytes[pos] != ' ' && bytes[pos] != '\t') pos++;
+                    if (pos == valueStart) return "Malformed JSON value";
+                }
+                int valueEnd = pos;
+                // Numbers may arrive quoted, as they do from HTML forms
+                int numberStart = isString ? valueStart + 1 : valueStart;
+                int numberEnd = isString ? valueEnd - 1 : valueEnd;
+
+                switch (field(keyStart, keyEnd)) {
+                    case HEIGHT:
+                        height = AsciiNumbers.parseDouble(bytes, numberStart, numberEnd);
+                        if (Double.isNaN(height)) return "Invalid numeric input provided.";
+                        seen |= HEIGHT;
+                        break;
+                    case WEIGHT:
+                        weight = AsciiNumbers.parseDouble(bytes, numberStart, numberEnd);
+                        if (Double.isNaN(weight)) return "Invalid numeric input provided.";
+                        seen |= WEIGHT;
+                        break;
+                    case AGE: {
+                        long value = AsciiNumbers.parseInt(bytes, numberStart, numberEnd);
+                        if (value == AsciiNumbers.INVALID) return "Invalid numeric input provided.";
+                        age = (int) value;
+                        seen |= AGE;
+                        break;
+                    }
+                    case GENDER:
+                        gender = Gender.parse(text.set(bytes, numberStart, numberEnd)).ordinal();
+                        break;
+                    case ACTIVITY:
+                        activityLevel = AsciiNumbers.parseDouble(bytes, numberStart, numberEnd);
+                        if (Double.isNaN(activityLevel)) return "Invalid numeric input provided.";
+                        seen |= ACTIVITY;
+                        break;
+                    case DAYS: {
+                        long value = AsciiNumbers.parseInt(bytes, numberStart, numberEnd);
+                        if (value == AsciiNumbers.INVALID) return "Invalid numeric input provided.";
+                        days = (int) value;
+                        seen |= DAYS;
+                        break;
+                    }
+                    case HOURS:
+                        hours = AsciiNumbers.parseDouble(bytes, numberStart, numberEnd);
+                        if (Double.isNaN(hours)) return "Invalid numeric input provided.";
+                        seen |= HOURS;
+                        break;
+                    case GOAL_FIELD:
+                        goal = Goal.parse(text.set(bytes, numberStart, numberEnd)).ordinal();
+                        break;
+                    case ID_FIELD:
+                        // Echoed verbatim, so only accept tokens that are valid JSON on their own
+                        if (isString ? isJsonString(valueStart, valueEnd) : isJsonNumber(valueStart, valueEnd)) {
+                            idStart = valueStart;
+                            idEnd = valueEnd;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+
+                skipWhitespace();
+                if (consume(',')) continue;
+                if (consume('}')) break;
+                return "Malformed JSON";
+            }
+            skipWhitespace();
+            if (pos != end) return "Unexpected data after JSON object";
+            return (seen & REQUIRED) == REQUIRED ? null : "Missing required fields";
+        }
+
+        private static final int GOAL_FIELD = 128, ID_FIELD = 256;
+
+        private int field(int start, int stop) {
+            switch (stop - start) {
+                case 2: return matches(start, stop, "id") ? ID_FIELD : 0;
+                case 3: return matches(start, stop, "age") ? AGE : 0;
+                case 4:
+                    if (matches(start, stop, "days")) return DAYS;
+                    if (matches(start, stop, "goal")) return GOAL_FIELD;
+                    return 0;
+                case 5: return matches(start, stop, "hours") ? HOURS : 0;
+                case 6:
+                    if (matches(start, stop, "height")) return HEIGHT;
+                    if (matches(start, stop, "weight")) return WEIGHT;
+                    if (matches(start, stop, "gender")) return GENDER;
+                    return 0;
+                case 13: return matches(start, stop, "activityLevel") ? ACTIVITY : 0;
+                default: return 0;
+            }
+        }
+
+        /**
+         * Whether bytes[start, stop) is a number in the JSON grammar: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+         */
+        boolean isJsonNumber(int start, int stop) {
+            int i = start;
+            if (i < stop && bytes[i] == '-') i++;
+            if (i < stop && bytes[i] == '0') {
+                i++;
+            } else {
+                int digits = i;
+                while (i < stop && isDigit(bytes[i])) i++;
+                if (i == digits) return false;
+            }
+            if (i < stop && bytes[i] == '.') {
+                int digits = ++i;
+                while (i < stop && isDigit(bytes[i])) i++;
+                if (i == digits) return false;
+            }
+            if (i < stop && (bytes[i] == 'e' || bytes[i] == 'E')) {
+                i++;
+                if (i < stop && (bytes[i] == '+' || bytes[i] == '-')) i++;
+                int digits = i;
+                while (i < stop && isDigit(bytes[i])) i++;
+                if (i == digits) return false;
+            }
+            return i == stop;
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        /**
+         * Whether bytes[start, stop), quotes included, is a JSON string: known escapes only and
+         * well-formed UTF-8 (skipString has already rejected control characters)
+         */
+        boolean isJsonString(int start, int stop) {
+            int i = start + 1;
+            int last = stop - 1;
+            while (i < last) {
+                int b = bytes[i] & 0xFF;
+                if (b == '\\') {
+                    if (i + 1 >= last) return false;
+                    byte escaped = bytes[i + 1];
+                    if (escaped == 'u') {
+                        if (i + 6 > last) return false;
+                        for (int h = i + 2; h < i + 6; h++) {
+                            if (Character.digit(bytes[h], 16) < 0) return false;
+                        }
+                        i += 6;
+                    } else if ("\"\\/bfnrt".indexOf(escaped) >= 0) {
+                        i += 2;
+                    } else {
+                        return false;
+                    }
+                } else if (b < 0x80) {
+                    i++;
+                } else {
+                    // Lead byte C2-F4 followed by 1 to 3 continuation bytes
+                    int continuation = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1;
+                    if (b < 0xC2 || b > 0xF4 || i + continuation >= last) return false;
+                    for (int c = i + 1; c <= i + continuation; c++) {
+                        if ((bytes[c] & 0xC0) != 0x80) return false;
+                    }
+                    i += continuation + 1;
+                }
+            }
+            return i == last;
+        }
+
+        private boolean matches(int start, int stop, String name) {
+            for (int i = start; i < stop; i++) {
+                if (bytes[i] != name.charAt(i - start)) return false;
+            }
+            return true;
+        }
+
+        private boolean skipString() {
+            if (!consume('"')) return false;
+            while (pos < end) {
+                byte b = bytes[pos++];
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    return pos <= end;
+                } else if ((b & 0xFF) < 0x20) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean consume(char c) {
+            if (pos < end && bytes[pos] == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) pos++;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.maintenance.calculator;
+
+/**
+ * Reusable CharSequence view over a range of ASCII bytes
+ * Lets byte-level parsers hand values to the engine's CharSequence parsers without creating Strings.
+ */
+public final class ByteSequence implements CharSequence {
+
+    private byte[] bytes;
+    private int start;
+    private int length;
+
+    /**
+     * Points this view at bytes[start, end); a null array makes it an empty sequence
+     */
+    public ByteSequence set(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.length = bytes == null ? 0 : end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[start + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new ByteSequence().set(bytes, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return bytes == null ? "" : new String(bytes, start, length, java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+}
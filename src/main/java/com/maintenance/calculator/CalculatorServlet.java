@@ -0,0 +1,404 @@
+package com.maintenance.calculator;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.RequestDispatcher;
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.Rules;
+import java.io.IOException;
+
+/**
+ * Enhanced Calorie Calculator Servlet
+ * Calculates BMR, maintenance calories, target calories, and provides workout recommendations
+ * Uses Mifflin-St Jeor equation for more accurate BMR calculation
+ */
+@WebServlet(value = "/calculate", asyncSupported = true)
+public class CalculatorServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    
+    // Reusable result holders and JSON buffers, kept per container thread (see ScratchPool)
+    private static final ScratchPool<CalculationResult> RESULT = new ScratchPool<>(CalculationResult::new);
+    private static final ScratchPool<ResponseBuffer> JSON_BUFFER = new ScratchPool<>(() -> new ResponseBuffer(512));
+    
+    // Load shedding in front of the container's request threads, configured with -Dcalculator.admission-*
+    // (see WebServer.calculateAdmission); the container's own thread pool bounds the in-flight count
+    private static final AdmissionController ADMISSION = servletAdmission(ServerOptions.parse(new String[0]));
+    
+    // Per-user history, opened when -Dcalculator.history-dir is set (see HistoryStore.open)
+    private transient HistoryStore history;
+    
+    static AdmissionController servletAdmission(ServerOptions options) {
+        if (!options.getBoolean("admission", true)) {
+            return null;
+        }
+        int limit = options.getInt("admission-limit", 4 * Runtime.getRuntime().availableProcessors());
+        return new AdmissionController("calculate", limit, 1, options.getInt("admission-max-limit", Math.max(limit, 256)),
+            options.getInt("admission-queue", 4 * limit), options.getInt("admission-wait-ms", 50),
+            options.getInt("admission-target-ms", 100));
+    }
+    
+    @Override
+    public void init() throws ServletException {
+        try {
+            history = HistoryStore.open(ServerOptions.parse(new String[0]));
+            if (history != null) {
+                Metrics.global().counter("calculator_history_append_failures_total",
+                    "Calculations that could not be added to the history", history::getAppendFailures);
+            }
+        } catch (IOException e) {
+            throw new ServletException("Cannot open the history store", e);
+        }
+    }
+    
+    @Override
+    public void destroy() {
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                log("History store did not close cleanly", e);
+            }
+        }
+    }
+    
+    /**
+     * Handles POST requests for calorie calculation
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        Metrics metrics = Metrics.global();
+        long start = System.nanoTime();
+        PipelineEvents.Request event = PipelineEvents.beginRequest();
+        if (ADMISSION != null && !ADMISSION.acquire().admitted()) {
+            response.setHeader("Retry-After", Integer.toString(AdmissionController.RETRY_AFTER_SECONDS));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            metrics.request(Metrics.Handler.CALCULATE, 503, System.nanoTime() - start);
+            PipelineEvents.endRequest(event, PipelineEvents.SERVLET, 503);
+            return;
+        }
+        if (acceptsJson(request.getHeader("Accept"))) {
+            respondJson(request, response, start, event);
+            return;
+        }
+        CalculationResult result = RESULT.acquire();
+        // One rules snapshot for calculating and rendering, even if the rules are reloaded meanwhile
+        Rules rules = Rules.current();
+        try {
+            // Retrieve and validate form data, then calculate BMR, calories, macros and workout plan
+            calculate(request, rules, result);
+            long mark = metrics.stage(Metrics.Stage.COMPUTE, start);
+            
+            // Set all attributes for JSP
+            PipelineEvents.Render render = PipelineEvents.beginRender();
+            setResultAttributes(request, rules, result);
+            
+            // Forward to result JSP, which renders and writes the page
+            RequestDispatcher dispatcher = request.getRequestDispatcher("result.jsp");
+            dispatcher.forward(request, response);
+            metrics.stage(Metrics.Stage.RENDER, mark);
+            // The JSP streams the page, so its size is not known here
+            PipelineEvents.endRender(render, "jsp", 0, -1);
+            
+        } catch (NumberFormatException e) {
+            handleError(request, response, "Invalid input data. Please check your entries and try again.");
+        } catch (IllegalArgumentException e) {
+            handleError(request, response, e.getMessage());
+        } catch (Exception e) {
+            handleError(request, response, "An unexpected error occurred. Please try again.");
+        } finally {
+            RESULT.release(result);
+            long elapsed = System.nanoTime() - start;
+            if (ADMISSION != null) {
+                ADMISSION.release(elapsed);
+            }
+            metrics.request(Metrics.Handler.CALCULATE, response.getStatus(), elapsed);
+            PipelineEvents.endRequest(event, PipelineEvents.SERVLET, response.getStatus());
+        }
+    }
+    
+    /**
+     * Whether the client asked for JSON ahead of HTML, as the mobile app does with Accept: application/json
+     */
+    static boolean acceptsJson(String accept) {
+        if (accept == null) return false;
+        int json = accept.indexOf("application/json");
+        if (json < 0) return false;
+        int html = accept.indexOf("text/html");
+        return html < 0 || json < html;
+    }
+    
+    /**
+     * JSON path: no request attributes and no JSP, just the figures from ResultJson
+     * The body is computed on the container thread, which takes microseconds, and then written
+     * asynchronously: the thread returns to the pool at once instead of blocking on a slow client.
+     * The admission slot and the request metrics are settled when the async cycle ends.
+     */
+    private void respondJson(HttpServletRequest request, HttpServletResponse response, long start,
+                             PipelineEvents.Request event) throws IOException {
+        Metrics metrics = Metrics.global();
+        ResponseBuffer body = JSON_BUFFER.acquire();
+        body.reset();
+        int status = HttpServletResponse.SC_OK;
+        long mark = start;
+        CalculationResult result = RESULT.acquire();
+        Rules rules = Rules.current();
+        try {
+            calculate(request, rules, result);
+            mark = metrics.stage(Metrics.Stage.COMPUTE, start);
+            ResultJson.write(result, rules, body);
+        } catch (IllegalArgumentException e) {
+            status = HttpServletResponse.SC_BAD_REQUEST;
+            body.reset();
+            ResultJson.writeError(e.getMessage(), body);
+        } catch (RuntimeException e) {
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            body.reset();
+            ResultJson.writeError("An unexpected error occurred. Please try again.", body);
+        } finally {
+            RESULT.release(result);
+        }
+        // The write may finish on another thread, after the buffer is reused
+        PipelineEvents.Render render = PipelineEvents.beginRender();
+        byte[] bytes = body.toByteArray();
+        JSON_BUFFER.release(body);
+        mark = metrics.stage(Metrics.Stage.RENDER, mark);
+        PipelineEvents.endRender(render, "json", 0, bytes.length);
+        
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setContentLength(bytes.length);
+        try {
+            AsyncContext async = request.startAsync();
+            JsonWrite write = new JsonWrite(async, response.getOutputStream(), bytes, status, start, mark, event);
+            async.addListener(write);
+            write.output.setWriteListener(write);
+        } catch (IOException | RuntimeException e) {
+            // No async cycle to settle the request, so release its admission slot here
+            long elapsed = System.nanoTime() - start;
+            if (ADMISSION != null) {
+                ADMISSION.release(elapsed);
+            }
+            metrics.request(Metrics.Handler.CALCULATE, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, elapsed);
+            PipelineEvents.endRequest(event, PipelineEvents.SERVLET, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            throw e;
+        }
+    }
+    
+    /**
+     * Non-blocking write of a JSON body; completes the async cycle once the bytes are handed off
+     */
+    private static final class JsonWrite implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream output;
+        private final byte[] body;
+        private final int status;
+        private final long start;
+        private final long writeStart;
+        private final PipelineEvents.Request requestEvent;
+        private final PipelineEvents.Write writeEvent;
+        private boolean written;
+        private boolean finished;
+        
+        JsonWrite(AsyncContext async, ServletOutputStream output, byte[] body, int status, long start, long writeStart,
+                  PipelineEvents.Request requestEvent) {
+            this.async = async;
+            this.output = output;
+            this.body = body;
+            this.status = status;
+            this.start = start;
+            this.writeStart = writeStart;
+            this.requestEvent = requestEvent;
+            this.writeEvent = PipelineEvents.beginWrite();
+        }
+        
+        @Override
+        public void onWritePossible() throws IOException {
+            if (!written) {
+                written = true;
+                output.write(body);
+            }
+            // Otherwise the container calls back once the write has drained
+            if (output.isReady()) {
+                async.complete();
+            }
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            async.complete();
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            finish(status);
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            async.complete();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            finish(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+        
+        private synchronized void finish(int finalStatus) {
+            if (finished) return;
+            finished = true;
+            Metrics metrics = Metrics.global();
+            long elapsed = metrics.stage(Metrics.Stage.WRITE, writeStart) - start;
+            if (ADMISSION != null) {
+                ADMISSION.release(elapsed);
+            }
+            metrics.request(Metrics.Handler.CALCULATE, finalStatus, elapsed);
+            PipelineEvents.endWrite(writeEvent, PipelineEvents.SERVLET, finalStatus, body.length);
+            PipelineEvents.endRequest(requestEvent, PipelineEvents.SERVLET, finalStatus);
+        }
+    }
+    
+    /**
+     * Handles GET requests by redirecting to the main page
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        response.sendRedirect("index.html");
+    }
+    
+    /**
+     * Extracts and validates personal data from request parameters and runs the shared engine
+     */
+    void calculate(HttpServletRequest request, Rules rules, CalculationResult result) throws IllegalArgumentException {
+        PipelineEvents.Parse parse = PipelineEvents.beginParse();
+        double height, weight, activityLevel, hoursPerDay;
+        int age, gender, daysAvailable, goal;
+        long user;
+        try {
+            height = Double.parseDouble(required(request, "height"));
+            weight = Double.parseDouble(required(request, "weight"));
+            age = Integer.parseInt(required(request, "age"));
+            activityLevel = Double.parseDouble(required(request, "activityLevel"));
+            daysAvailable = Integer.parseInt(required(request, "days"));
+            hoursPerDay = Double.parseDouble(required(request, "hours"));
+            // Gender and goal are optional and never fail: anything unrecognised means female and maintain
+            gender = Gender.parse(request.getParameter("gender")).ordinal();
+            goal = Goal.parse(request.getParameter("goal")).ordinal();
+            // Optional user id: the calculation is kept in that user's history
+            user = userId(request.getParameter("user"));
+        } catch (NumberFormatException e) {
+            PipelineEvents.endParse(parse, PipelineEvents.SERVLET, FormParser.Status.INVALID_NUMBER.name());
+            throw new IllegalArgumentException(FormParser.Status.INVALID_NUMBER.message());
+        } catch (IllegalArgumentException e) {
+            PipelineEvents.endParse(parse, PipelineEvents.SERVLET, FormParser.Status.MISSING_FIELD.name());
+            throw e;
+        }
+        PipelineEvents.endParse(parse, PipelineEvents.SERVLET, PipelineEvents.OK);
+        
+        // Validate input ranges
+        PipelineEvents.Compute compute = PipelineEvents.beginCompute();
+        InputError error = CalorieEngine.validate(height, weight, age, daysAvailable, hoursPerDay);
+        if (error != null) {
+            PipelineEvents.endCompute(compute, error.name());
+            throw new IllegalArgumentException(error.message());
+        }
+        
+        CalorieEngine.calculate(rules, height, weight, age, gender, activityLevel,
+                                daysAvailable, hoursPerDay, goal, result);
+        PipelineEvents.endCompute(compute, PipelineEvents.OK, result);
+        PopulationStats.global().record(result);
+        if (history != null && user != 0) {
+            history.tryAppend(user, result);
+        }
+    }
+    
+    /**
+     * A field /calculate cannot do without; a missing one fails like FormParser's MISSING_FIELD
+     */
+    private static String required(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException(FormParser.Status.MISSING_FIELD.message());
+        }
+        return value;
+    }
+    
+    /**
+     * The optional user id: 0 when absent or empty; anything but a non-negative long is an invalid number
+     */
+    static long userId(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        long user = Long.parseLong(value);
+        if (user < 0) {
+            throw new NumberFormatException("Negative user id: " + value);
+        }
+        return user;
+    }
+    
+    /**
+     * Sets all calculated attributes for JSP rendering; labels come from the rules the result was calculated under
+     */
+    void setResultAttributes(HttpServletRequest request, Rules rules, CalculationResult result) {
+        // Personal data
+        request.setAttribute("height", result.getHeight());
+        request.setAttribute("weight", result.getWeight());
+        request.setAttribute("age", result.getAge());
+        request.setAttribute("gender", result.getGender().key());
+        request.setAttribute("goal", result.getGoal().key());
+        
+        // Calorie results
+        request.setAttribute("bmr", result.getBmr());
+        request.setAttribute("maintenanceCalories", result.getMaintenanceCalories());
+        request.setAttribute("targetCalories", result.getTargetCalories());
+        request.setAttribute("bmi", result.getBmi());
+        
+        // Workout plan
+        int plan = result.getWorkoutPlan().ordinal();
+        request.setAttribute("workoutPlan", rules.workoutName(plan));
+        request.setAttribute("workoutDescription", rules.workoutDescription(plan));
+        
+        // Macronutrients
+        request.setAttribute("proteinGrams", result.getProteinGrams());
+        request.setAttribute("carbGrams", result.getCarbGrams());
+        request.setAttribute("fatGrams", result.getFatGrams());
+        
+        // Additional helpful attributes
+        request.setAttribute("calculationDate", new java.util.Date());
+        request.setAttribute("bmiCategory", rules.bmiLabel(result.getBmiCategory().ordinal()));
+    }
+    
+    /**
+     * Handles errors by forwarding to an error page or showing a message
+     */
+    private void handleError(HttpServletRequest request, HttpServletResponse response, String message) 
+            throws ServletException, IOException {
+        request.setAttribute("errorMessage", message);
+        request.setAttribute("showError", true);
+        
+        // You could forward to an error page instead
+        RequestDispatcher dispatcher = request.getRequestDispatcher("index.html");
+        dispatcher.forward(request, response);
+    }
+}
@@ -0,0 +1,601 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.BatchEngine;
+import com.maintenance.calculator.engine.BmiCategory;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.CohortColumns;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.ProjectionEngine;
+import com.maintenance.calculator.engine.Rules;
+import com.maintenance.calculator.engine.WorkoutPlan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline mode: runs a whole population CSV through the calculator
+ *
+ * The input is memory-mapped and cut into segments on line boundaries, which a fork-join pool
+ * processes in parallel. Each segment streams its results into its own part file through a
+ * FileChannel; the parts are then concatenated in order with transferTo, so the output rows line
+ * up with the input rows. Heap use depends on the thread count, not the file size.
+ *
+ * The input needs a header row naming the /calculate form fields (height, weight, age, gender,
+ * activityLevel, days, hours, goal) in any order, plus an optional "id" column that is echoed.
+ * Rows get the same validation and formulas as CalculatorHandler; invalid rows get an error column.
+ * Valid rows are computed in columnar batches by BatchEngine.best(), which uses SIMD when the JVM
+ * is started with --add-modules jdk.incubator.vector.
+ *
+ * With --weeks=N each valid row also gets the weight ProjectionEngine projects after N weeks
+ * on its target calories, computed on the same pool threads as the rest of its segment.
+ * With --rules the file's rules replace the bundled ones for the whole run.
+ *
+ * Usage: java com.maintenance.calculator.WebServer cohort --input=people.csv --output=results.csv
+ *        [--threads=N] [--segment-mb=64] [--weeks=N] [--rules=rules.properties]
+ */
+public final class CohortProcessor {
+
+    /** Longest accepted row; longer rows are reported as errors */
+    static final int MAX_LINE_LENGTH = 4096;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FLUSH_THRESHOLD = 256 * 1024;
+    private static final int BATCH_SIZE = 1024;
+
+    // Column ids, also used as bits in the "seen" mask (same fields as FormParser)
+    private static final int UNKNOWN = 0;
+    private static final int HEIGHT = 1, WEIGHT = 2, AGE = 4, ACTIVITY = 8, DAYS = 16, HOURS = 32;
+    private static final int GENDER = 64, GOAL = 128, ID = 256;
+    private static final int REQUIRED = HEIGHT | WEIGHT | AGE | ACTIVITY | DAYS | HOURS;
+
+    private final Path input;
+    private final Path output;
+    private final int threads;
+    private final long segmentSize;
+    private final int weeks;
+
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    private FileChannel channel;
+    private int[] columns;
+    private boolean hasId;
+    private long[] boundaries;
+
+    public CohortProcessor(Path input, Path output, int threads, long segmentSize) {
+        this(input, output, threads, segmentSize, 0);
+    }
+
+    /**
+     * @param weeks projection horizon for the projectedWeight column; 0 leaves the column out
+     */
+    public CohortProcessor(Path input, Path output, int threads, long segmentSize, int weeks) {
+        if (weeks < 0 || weeks > ProjectionEngine.MAX_WEEKS) {
+            throw new IllegalArgumentException("Weeks must be between 0 and " + ProjectionEngine.MAX_WEEKS);
+        }
+        this.input = input;
+        this.output = output;
+        this.threads = threads;
+        this.segmentSize = segmentSize;
+        this.weeks = weeks;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ServerOptions options = ServerOptions.parse(args);
+        String input = options.get("input", null);
+        String output = options.get("output", null);
+        if (input == null || output == null) {
+            System.err.println("Usage: cohort --input=people.csv --output=results.csv [--threads=N] [--segment-mb=64]"
+                + " [--weeks=N] [--rules=rules.properties]");
+            System.exit(2);
+        }
+        String rules = options.get("rules", null);
+        if (rules != null) {
+            Rules.install(Rules.load(Paths.get(rules)));
+        }
+        int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        // Segments are mapped as a single buffer, so they must stay well below 2 GB
+        int segmentMb = Math.max(1, Math.min(1024, options.getInt("segment-mb", 64)));
+
+        CohortProcessor processor = new CohortProcessor(Paths.get(input), Paths.get(output),
+                                                        Math.max(1, threads), (long) segmentMb << 20,
+                                                        options.getInt("weeks", 0));
+        long start = System.nanoTime();
+        processor.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = processor.getRows();
+        System.out.printf("Processed %d rows (%d errors) in %.1f s, %.0f rows/s (%s engine)%n",
+                          rows, processor.getErrors(), seconds, rows / seconds, BatchEngine.best().name());
+    }
+
+    /**
+     * Processes the whole input, printing progress to stderr about once a second
+     */
+    public void run() throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            channel = in;
+            long size = in.size();
+            long dataStart = readHeader(size);
+            boundaries = segmentBoundaries(dataStart, size);
+            int segments = boundaries.length - 1;
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ForkJoinTask<Void> task = pool.submit(new SegmentRange(0, segments));
+                long startNanos = System.nanoTime();
+                while (true) {
+                    try {
+                        task.get(1, TimeUnit.SECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        reportProgress(size - dataStart, startNanos);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            concatenate(segments);
+        } finally {
+            for (int i = 0; boundaries != null && i < boundaries.length - 1; i++) {
+                Files.deleteIfExists(partFile(i));
+            }
+        }
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private void reportProgress(long totalBytes, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long done = rows.sum();
+        System.err.printf("%d rows, %.0f rows/s, %.1f%% of input%n",
+                          done, done / seconds, totalBytes == 0 ? 100.0 : 100.0 * bytesDone.get() / totalBytes);
+    }
+
+    /**
+     * Maps the header row to column ids and returns the offset of the first data row
+     */
+    private long readHeader(long size) throws IOException {
+        int length = (int) Math.min(size, MAX_LINE_LENGTH);
+        byte[] header = new byte[length];
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, length).get(header);
+
+        int end = 0;
+        while (end < length && header[end] != '\n') end++;
+        if (end == length && length < size) {
+            throw new IOException("Header row exceeds " + MAX_LINE_LENGTH + " bytes");
+        }
+        long dataStart = Math.min(size, end + 1L);
+        if (end > 0 && header[end - 1] == '\r') end--;
+        // Skip a UTF-8 byte order mark
+        int start = end >= 3 && header[0] == (byte) 0xEF && header[1] == (byte) 0xBB && header[2] == (byte) 0xBF ? 3 : 0;
+
+        List<Integer> ids = new ArrayList<>();
+        int seen = 0;
+        for (int fieldStart = start; fieldStart <= end; ) {
+            int fieldEnd = fieldStart;
+            while (fieldEnd < end && header[fieldEnd] != ',') fieldEnd++;
+            String name = new String(header, fieldStart, fieldEnd - fieldStart, StandardCharsets.ISO_8859_1).trim();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            int id = column(name);
+            ids.add(id);
+            seen |= id;
+            fieldStart = fieldEnd + 1;
+        }
+        if ((seen & REQUIRED) != REQUIRED) {
+            throw new IOException("Header must name the columns height, weight, age, activityLevel, days and hours");
+        }
+        columns = ids.stream().mapToInt(Integer::intValue).toArray();
+        hasId = (seen & ID) != 0;
+        return dataStart;
+    }
+
+    private static int column(String name) {
+        switch (name) {
+            case "height": return HEIGHT;
+            case "weight": return WEIGHT;
+            case "age": return AGE;
+            case "gender": return GENDER;
+            case "activityLevel": return ACTIVITY;
+            case "days": return DAYS;
+            case "hours": return HOURS;
+            case "goal": return GOAL;
+            case "id": return ID;
+            default: return UNKNOWN;
+        }
+    }
+
+    /**
+     * Splits [dataStart, size) into segments of about segmentSize that each start on a line
+     */
+    private long[] segmentBoundaries(long dataStart, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        long next = dataStart + segmentSize;
+        while (next < size) {
+            long lineStart = nextLineStart(next, size);
+            if (lineStart >= size) break;
+            bounds.add(lineStart);
+            next = lineStart + segmentSize;
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long nextLineStart(long position, long size) throws IOException {
+        // Already at a line start when the previous byte ends a line
+        long pos = position - 1;
+        while (pos < size) {
+            int length = (int) Math.min(CHUNK_SIZE, size - pos);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') return pos + i + 1;
+            }
+            pos += length;
+        }
+        return size;
+    }
+
+    private Path partFile(int segment) {
+        return output.resolveSibling(output.getFileName() + ".part" + segment);
+    }
+
+    private void concatenate(int segments) throws IOException {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            String header = (hasId ? "id," : "")
+                + "bmr,maintenanceCalories,targetCalories,bmi,bmiCategory,proteinGrams,carbGrams,fatGrams,workoutPlan,"
+                + (weeks > 0 ? "projectedWeight," : "") + "error\n";
+            ByteBuffer headerBytes = ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+            while (headerBytes.hasRemaining()) out.write(headerBytes);
+
+            for (int i = 0; i < segments; i++) {
+                Path part = partFile(i);
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+    }
+
+    /**
+     * Fork-join task over a range of segments; splits in halves down to single segments
+     */
+    private final class SegmentRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        SegmentRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    try {
+                        WORKER.get().process(CohortProcessor.this, from);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SegmentRange(from, mid), new SegmentRange(mid, to));
+        }
+    }
+
+    // Buffers and parse state are reused by each pool thread across segments
+    private static final ThreadLocal<Worker> WORKER = ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Per-thread state for processing one segment at a time
+     */
+    private static final class Worker {
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final byte[] line = new byte[MAX_LINE_LENGTH];
+        private final ResponseBuffer out = new ResponseBuffer(FLUSH_THRESHOLD + 1024);
+        private final ByteSequence text = new ByteSequence();
+        private final BatchEngine engine = BatchEngine.best();
+
+        // Rows waiting for the batch engine, in input order; valid rows also have a column slot
+        private final CohortColumns columns = new CohortColumns(BATCH_SIZE);
+        private final double[] projected = new double[BATCH_SIZE];
+        private final int[] slot = new int[BATCH_SIZE];
+        private final String[] rowError = new String[BATCH_SIZE];
+        private final int[] rowDays = new int[BATCH_SIZE];
+        private final int[] rowIdStart = new int[BATCH_SIZE];
+        private final int[] rowIdEnd = new int[BATCH_SIZE];
+        private final ResponseBuffer ids = new ResponseBuffer(BATCH_SIZE * 16);
+        private int pending;
+        private int valid;
+
+        private CohortProcessor processor;
+        private FileChannel target;
+        private long rows;
+        private long errors;
+
+        // Parsed row
+        private double height, weight, activityLevel, hours;
+        private int age, days, gender, goal;
+        private int idStart, idEnd;
+
+        void process(CohortProcessor processor, int segment) throws IOException {
+            this.processor = processor;
+            rows = 0;
+            errors = 0;
+            long start = processor.boundaries[segment];
+            long length = processor.boundaries[segment + 1] - start;
+            MappedByteBuffer mapped = processor.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+            try (FileChannel part = FileChannel.open(processor.partFile(segment), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                target = part;
+                out.reset();
+                int lineLength = 0;
+                boolean overflow = false;
+
+                while (mapped.hasRemaining()) {
+                    int read = Math.min(CHUNK_SIZE, mapped.remaining());
+                    mapped.get(chunk, 0, read);
+                    for (int i = 0; i < read; i++) {
+                        byte b = chunk[i];
+                        if (b == '\n') {
+                            processLine(lineLength, overflow);
+                            lineLength = 0;
+                            overflow = false;
+                        } else if (lineLength < MAX_LINE_LENGTH) {
+                            line[lineLength++] = b;
+                        } else {
+                            overflow = true;
+                        }
+                    }
+                    if (out.size() >= FLUSH_THRESHOLD) flush();
+                    processor.bytesDone.addAndGet(read);
+                }
+                if (lineLength > 0 || overflow) {
+                    processLine(lineLength, overflow);
+                }
+                computeBatch();
+                flush();
+            } finally {
+                pending = 0;
+                valid = 0;
+                ids.reset();
+                target = null;
+                this.processor = null;
+            }
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(out.array(), 0, out.size());
+            while (buffer.hasRemaining()) target.write(buffer);
+            out.reset();
+            processor.rows.add(rows);
+            processor.errors.add(errors);
+            rows = 0;
+            errors = 0;
+        }
+
+        private void processLine(int length, boolean overflow) {
+            if (overflow) {
+                idStart = idEnd = 0;
+                queueError("Row exceeds " + MAX_LINE_LENGTH + " bytes");
+                return;
+            }
+            // Tolerate CRLF and blank lines
+            if (length > 0 && line[length - 1] == '\r') length--;
+            if (isBlank(length)) return;
+
+            FormParser.Status status = parse(length);
+            if (status != FormParser.Status.OK) {
+                queueError(status.message());
+                return;
+            }
+            InputError error = CalorieEngine.validate(height, weight, age, days, hours);
+            if (error != null) {
+                queueError(error.message());
+                return;
+            }
+
+            columns.set(valid, height, weight, age, gender, activityLevel, goal);
+            rowDays[valid] = days;
+            slot[pending] = valid++;
+            queued();
+        }
+
+        private void queueError(String message) {
+            slot[pending] = -1;
+            rowError[pending] = message;
+            queued();
+        }
+
+        private void queued() {
+            rowIdStart[pending] = ids.size();
+            if (processor.hasId) {
+                for (int i = idStart; i < idEnd; i++) ids.writeByte(line[i]);
+            }
+            rowIdEnd[pending] = ids.size();
+            if (++pending == BATCH_SIZE) computeBatch();
+        }
+
+        /**
+         * Runs the batch engine over the queued valid rows and writes all queued rows in order
+         */
+        private void computeBatch() {
+            engine.compute(columns, 0, valid);
+            int weeks = processor.weeks;
+            if (weeks > 0) {
+                ProjectionEngine.project(columns, 0, valid, weeks, projected);
+            }
+            CohortColumns c = columns;
+            ResponseBuffer r = out;
+            for (int row = 0; row < pending; row++) {
+                if (processor.hasId) {
+                    r.write(ids.array(), rowIdStart[row], rowIdEnd[row] - rowIdStart[row]);
+                    r.writeByte(',');
+                }
+                int i = slot[row];
+                if (i < 0) {
+                    r.writeAscii(weeks > 0 ? ",,,,,,,,,," : ",,,,,,,,,");
+                    r.writeAscii(rowError[row]);
+                    r.writeByte('\n');
+                    rowError[row] = null;
+                    errors++;
+                    continue;
+                }
+                r.writeInt(c.bmr[i]);
+                r.writeByte(',');
+                r.writeInt(c.maintenanceCalories[i]);
+                r.writeByte(',');
+                r.writeInt(c.targetCalories[i]);
+                r.writeByte(',');
+                r.writeDecimal1(c.bmi[i]);
+                r.writeByte(',');
+                r.writeAscii(BmiCategory.of(c.bmi[i]).label());
+                r.writeByte(',');
+                r.writeInt(c.proteinGrams[i]);
+                r.writeByte(',');
+                r.writeInt(c.carbGrams[i]);
+                r.writeByte(',');
+                r.writeInt(c.fatGrams[i]);
+                r.writeByte(',');
+                r.writeAscii(WorkoutPlan.forDays(rowDays[i]).displayName());
+                r.writeByte(',');
+                if (weeks > 0) {
+                    r.writeDecimal1(projected[i]);
+                    r.writeByte(',');
+                }
+                r.writeByte('\n');
+            }
+            rows += pending;
+            pending = 0;
+            valid = 0;
+            ids.reset();
+        }
+
+        /**
+         * Splits the row on commas (honouring double-quoted fields) and parses the known columns
+         * Mirrors FormParser: empty values count as missing, gender and goal have defaults.
+         */
+        private FormParser.Status parse(int length) {
+            int[] columns = processor.columns;
+            int seen = 0;
+            boolean invalidNumber = false;
+            gender = Gender.FEMALE.ordinal();
+            goal = Goal.MAINTAIN.ordinal();
+            idStart = idEnd = 0;
+
+            int column = 0;
+            int pos = 0;
+            while (pos <= length && column < columns.length) {
+                int fieldStart = pos;
+                if (pos < length && line[pos] == '"') {
+                    // Quoted field: commas inside are data, "" is an escaped quote
+                    pos++;
+                    while (pos < length) {
+                        if (line[pos++] != '"') continue;
+                        if (pos < length && line[pos] == '"') {
+                            pos++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                while (pos < length && line[pos] != ',') pos++;
+                int fieldEnd = Math.min(pos, length);
+                pos++;
+
+                int id = columns[column++];
+                if (id == UNKNOWN) continue;
+                if (id == ID) {
+                    idStart = fieldStart;
+                    idEnd = fieldEnd;
+                    continue;
+                }
+
+                // Numbers and enum values may be quoted or padded
+                int s = fieldStart, e = fieldEnd;
+                while (s < e && line[s] == ' ') s++;
+                while (e > s && line[e - 1] == ' ') e--;
+                if (e - s >= 2 && line[s] == '"' && line[e - 1] == '"') {
+                    s++;
+                    e--;
+                }
+                if (s == e) continue;
+
+                switch (id) {
+                    case HEIGHT: height = AsciiNumbers.parseDouble(line, s, e); invalidNumber |= Double.isNaN(height); break;
+                    case WEIGHT: weight = AsciiNumbers.parseDouble(line, s, e); invalidNumber |= Double.isNaN(weight); break;
+                    case ACTIVITY: activityLevel = AsciiNumbers.parseDouble(line, s, e); invalidNumber |= Double.isNaN(activityLevel); break;
+                    case HOURS: hours = AsciiNumbers.parseDouble(line, s, e); invalidNumber |= Double.isNaN(hours); break;
+                    case AGE: age = parseInt(s, e); invalidNumber |= age == Integer.MIN_VALUE; break;
+                    case DAYS: days = parseInt(s, e); invalidNumber |= days == Integer.MIN_VALUE; break;
+                    case GENDER: gender = Gender.parse(text.set(line, s, e)).ordinal(); break;
+                    case GOAL: goal = Goal.parse(text.set(line, s, e)).ordinal(); break;
+                    default: break;
+                }
+                seen |= id;
+            }
+            if (invalidNumber) return FormParser.Status.INVALID_NUMBER;
+            return (seen & REQUIRED) == REQUIRED ? FormParser.Status.OK : FormParser.Status.MISSING_FIELD;
+        }
+
+        private int parseInt(int start, int end) {
+            long value = AsciiNumbers.parseInt(line, start, end);
+            return value == AsciiNumbers.INVALID ? Integer.MIN_VALUE : (int) value;
+        }
+
+        private boolean isBlank(int length) {
+            for (int i = 0; i < length; i++) {
+                if (line[i] != ' ' && line[i] != '\t') return false;
+            }
+            return true;
+        }
+    }
+}
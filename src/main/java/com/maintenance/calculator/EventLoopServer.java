@@ -0,0 +1,813 @@
+package com.maintenance.calculator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional HTTP/1.1 front end on NIO selectors, one event loop thread per core (--frontend=nio)
+ *
+ * Each loop owns a ServerSocketChannel bound with SO_REUSEPORT to the shared port, so the kernel
+ * spreads new connections across the loops without an accept lock or a hand-off; where the option
+ * is not supported, the first loop accepts and deals connections out round-robin. Requests are
+ * parsed in place in the connection's read buffer, handled inline on the loop (static assets,
+ * /calculate, /stats and /metrics, through the same code as the JDK front end) and answered in order, so
+ * keep-alive and pipelined requests need no per-request objects. A connection stops reading while
+ * a large response is still draining, which keeps memory bounded under slow clients.
+ */
+public final class EventLoopServer {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    /** Largest request line plus headers; longer heads get 431 */
+    static final int MAX_HEAD_SIZE = 16 * 1024;
+    /** Largest request body; /calculate forms are a few hundred bytes */
+    static final int MAX_BODY_SIZE = 64 * 1024;
+    // Bodies up to this size are copied behind the headers; larger ones are written from their own array
+    private static final int COPY_LIMIT = 16 * 1024;
+    // Buffered response bytes above which no further pipelined requests are processed
+    private static final int OUTPUT_HIGH_WATER = 64 * 1024;
+    private static final long IDLE_TIMEOUT_NANOS = 30_000_000_000L;
+
+    private static final String HTML = "text/html; charset=utf-8";
+    private static final byte[] NOT_FOUND = "404 - File not found".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CALCULATE = "/calculate".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] METRICS = "/metrics".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATS = "/stats".getBytes(StandardCharsets.US_ASCII);
+    private static final DateTimeFormatter HTTP_DATE =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+
+    private final int port;
+    private final StaticAssetCache assets;
+    private final WebServer.CalculatorHandler calculator;
+    private final Metrics metrics;
+    private final EventLoop[] loops;
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean running;
+    private boolean reusePort;
+
+    /**
+     * @param loops number of event loop threads; 0 or less means one per available core
+     */
+    public EventLoopServer(int port, int loops, StaticAssetCache assets, WebServer.CalculatorHandler calculator,
+                           Metrics metrics) {
+        this.port = port;
+        this.assets = assets;
+        this.calculator = calculator;
+        this.metrics = metrics;
+        this.loops = new EventLoop[loops > 0 ? loops : Runtime.getRuntime().availableProcessors()];
+    }
+
+    public void start() throws IOException {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            reusePort = loops.length > 1 && probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        }
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            ServerSocketChannel server = null;
+            if (i == 0 || reusePort) {
+                server = ServerSocketChannel.open();
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                if (reusePort) {
+                    server.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                server.bind(new InetSocketAddress(port), 1024);
+                server.configureBlocking(false);
+            }
+            loops[i] = new EventLoop(i, server);
+        }
+        for (EventLoop loop : loops) {
+            // Not daemons: the loops keep the server process alive
+            new Thread(loop, "event-loop-" + loop.index).start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        for (EventLoop loop : loops) {
+            if (loop != null) loop.selector.wakeup();
+        }
+    }
+
+    public int getLoops() { return loops.length; }
+    public boolean isReusePort() { return reusePort; }
+    public int getOpenConnections() { return connections.get(); }
+
+    /**
+     * One selector thread and everything it reuses across requests
+     */
+    private final class EventLoop implements Runnable {
+        final int index;
+        final Selector selector;
+        final ServerSocketChannel server;
+        // Connections accepted by loop 0 for this loop when SO_REUSEPORT is unavailable
+        final Queue<SocketChannel> handoff = new ConcurrentLinkedQueue<>();
+        int nextLoop;
+
+        final FormParser form = new FormParser();
+        final WebServer.CalculatorHandler.Reply reply = new WebServer.CalculatorHandler.Reply();
+        final StringBuilder metricsText = new StringBuilder(16384);
+        final ResponseBuffer scratch = new ResponseBuffer(16384);
+        byte[] date;
+        long dateSecond;
+
+        EventLoop(int index, ServerSocketChannel server) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+            this.server = server;
+            if (server != null) {
+                server.register(selector, SelectionKey.OP_ACCEPT);
+            }
+            updateDate(System.currentTimeMillis());
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.nanoTime();
+            try {
+                while (running) {
+                    selector.select(1000);
+                    SocketChannel handed;
+                    while ((handed = handoff.poll()) != null) {
+                        register(handed);
+                    }
+                    updateDate(System.currentTimeMillis());
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                connection.onWritable();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            connection.close();
+                        }
+                    }
+
+                    long now = System.nanoTime();
+                    if (now - lastSweep > 1_000_000_000L) {
+                        closeIdle(now);
+                        lastSweep = now;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    System.err.println("Event loop " + index + " failed: " + e);
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+                try {
+                    if (server != null) server.close();
+                    selector.close();
+                } catch (IOException ignored) {
+                    // Shutting down
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                if (reusePort) {
+                    register(channel);
+                } else {
+                    // Only loop 0 accepts; deal the connection to the next loop in turn
+                    EventLoop target = loops[nextLoop];
+                    nextLoop = (nextLoop + 1) % loops.length;
+                    if (target == this) {
+                        register(channel);
+                    } else {
+                        target.handoff.add(channel);
+                        target.selector.wakeup();
+                    }
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) throws IOException {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(this, channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.incrementAndGet();
+        }
+
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    Connection connection = (Connection) key.attachment();
+                    if (now - connection.lastActive > IDLE_TIMEOUT_NANOS) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+
+        private void updateDate(long millis) {
+            long second = millis / 1000;
+            if (second != dateSecond || date == null) {
+                dateSecond = second;
+                date = HTTP_DATE.format(ZonedDateTime.now(ZoneOffset.UTC)).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    /**
+     * State of one client connection: its read buffer, the request being parsed, and queued output
+     */
+    private final class Connection {
+        final EventLoop loop;
+        final SocketChannel channel;
+        SelectionKey key;
+        long lastActive = System.nanoTime();
+
+        // Request bytes occupy in[0, in.position())
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        int scanned;
+
+        // Parsed head of the current request, as offsets into in
+        int headEnd = -1;
+        int methodEnd, targetStart, targetEnd;
+        int contentLength;
+        boolean http10, keepAlive, expectContinue, continueSent, chunked;
+        int acceptEncodingStart = -1, acceptEncodingEnd;
+        int ifNoneMatchStart = -1, ifNoneMatchEnd;
+        int ifModifiedSinceStart = -1, ifModifiedSinceEnd;
+
+        // Responses not yet written: out[written, size), then largeBody, then file
+        final ResponseBuffer out = new ResponseBuffer(4096);
+        int written;
+        ByteBuffer outView;
+        ByteBuffer largeBody;
+        FileChannel file;
+        long filePosition, fileEnd;
+        boolean closeAfterWrite;
+        boolean closed;
+
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException {
+            if (!in.hasRemaining()) {
+                growReadBuffer();
+            }
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            lastActive = System.nanoTime();
+            processRequests();
+            flush();
+        }
+
+        void onWritable() throws IOException {
+            lastActive = System.nanoTime();
+            flush();
+            if (!closed && !hasPendingOutput()) {
+                // Pipelined requests that arrived while the last response drained
+                processRequests();
+                flush();
+            }
+        }
+
+        /**
+         * Makes room for more of the current request, up to MAX_HEAD_SIZE for a head still arriving
+         * or exactly the head plus body; a head that fills MAX_HEAD_SIZE is rejected when processed
+         */
+        private void growReadBuffer() {
+            int limit = headEnd < 0 ? MAX_HEAD_SIZE : headEnd + contentLength;
+            if (in.capacity() < limit) {
+                grow(Math.min(in.capacity() * 2, limit));
+            }
+        }
+
+        private void grow(int capacity) {
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            in.flip();
+            bigger.put(in);
+            in = bigger;
+        }
+
+        private boolean blocked() {
+            return closeAfterWrite || largeBody != null || file != null || out.size() - written > OUTPUT_HIGH_WATER;
+        }
+
+        /**
+         * Handles every complete request in the read buffer, in order, until output backs up
+         */
+        private void processRequests() {
+            while (!blocked()) {
+                int available = in.position();
+                if (headEnd < 0) {
+                    headEnd = findHeadEnd(in.array(), scanned, available);
+                    if (headEnd < 0) {
+                        scanned = Math.max(0, available - 3);
+                        if (available >= MAX_HEAD_SIZE) {
+                            reject(431, "Request Header Fields Too Large");
+                        }
+                        return;
+                    }
+                    if (!parseHead()) {
+                        return;
+                    }
+                }
+                if (available < headEnd + contentLength) {
+                    if (expectContinue && !continueSent) {
+                        continueSent = true;
+                        out.write(CONTINUE);
+                    }
+                    if (in.capacity() < headEnd + contentLength) {
+                        grow(headEnd + contentLength);
+                    }
+                    return;
+                }
+                long started = System.nanoTime();
+                dispatch(started);
+                consume(headEnd + contentLength);
+            }
+        }
+
+        /**
+         * Parses the request line and the headers this server needs; false if the request was rejected
+         */
+        private boolean parseHead() {
+            byte[] a = in.array();
+            int lineEnd = indexOf(a, 0, headEnd, '\r');
+            methodEnd = indexOf(a, 0, lineEnd, ' ');
+            targetStart = methodEnd + 1;
+            targetEnd = methodEnd < 0 ? -1 : indexOf(a, targetStart, lineEnd, ' ');
+            if (methodEnd <= 0 || targetEnd <= targetStart || !startsWith(a, targetEnd + 1, lineEnd, "HTTP/1.")) {
+                reject(400, "Bad Request");
+                return false;
+            }
+            http10 = a[lineEnd - 1] == '0';
+            keepAlive = !http10;
+            contentLength = 0;
+            expectContinue = continueSent = chunked = false;
+            acceptEncodingStart = ifNoneMatchStart = ifModifiedSinceStart = -1;
+
+            int line = lineEnd + 2;
+            while (line < headEnd - 2) {
+                int end = indexOf(a, line, headEnd, '\r');
+                int colon = indexOf(a, line, end, ':');
+                if (colon <= line) {
+                    reject(400, "Bad Request");
+                    return false;
+                }
+                int value = colon + 1;
+                while (value < end && (a[value] == ' ' || a[value] == '\t')) value++;
+                int valueEnd = end;
+                while (valueEnd > value && (a[valueEnd - 1] == ' ' || a[valueEnd - 1] == '\t')) valueEnd--;
+
+                int nameLength = colon - line;
+                if (nameEquals(a, line, nameLength, "content-length")) {
+                    contentLength = parseLength(a, value, valueEnd);
+                    if (contentLength < 0) {
+                        reject(400, "Bad Request");
+                        return false;
+                    }
+                    if (contentLength > MAX_BODY_SIZE) {
+                        reject(413, "Payload Too Large");
+                        return false;
+                    }
+                } else if (nameEquals(a, line, nameLength, "connection")) {
+                    if (containsIgnoreCase(a, value, valueEnd, "close")) keepAlive = false;
+                    else if (containsIgnoreCase(a, value, valueEnd, "keep-alive")) keepAlive = true;
+                } else if (nameEquals(a, line, nameLength, "transfer-encoding")) {
+                    chunked = true;
+                } else if (nameEquals(a, line, nameLength, "expect")) {
+                    expectContinue = containsIgnoreCase(a, value, valueEnd, "100-continue");
+                } else if (nameEquals(a, line, nameLength, "accept-encoding")) {
+                    acceptEncodingStart = value;
+                    acceptEncodingEnd = valueEnd;
+                } else if (nameEquals(a, line, nameLength, "if-none-match")) {
+                    ifNoneMatchStart = value;
+                    ifNoneMatchEnd = valueEnd;
+                } else if (nameEquals(a, line, nameLength, "if-modified-since")) {
+                    ifModifiedSinceStart = value;
+                    ifModifiedSinceEnd = valueEnd;
+                }
+                line = end + 2;
+            }
+            if (chunked) {
+                // Chunked request bodies are not needed by any endpoint here
+                reject(501, "Not Implemented");
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Drops a handled request from the read buffer, keeping any pipelined bytes behind it
+         */
+        private void consume(int length) {
+            byte[] a = in.array();
+            int remaining = in.position() - length;
+            if (remaining > 0) {
+                System.arraycopy(a, length, a, 0, remaining);
+            }
+            in.position(remaining);
+            if (remaining == 0 && in.capacity() > READ_BUFFER_SIZE) {
+                in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            }
+            headEnd = -1;
+            scanned = 0;
+        }
+
+        private void dispatch(long started) {
+            byte[] a = in.array();
+            int pathEnd = indexOf(a, targetStart, targetEnd, '?');
+            if (pathEnd < 0) pathEnd = targetEnd;
+            int method = methodEnd;
+
+            if (rangeEquals(a, targetStart, pathEnd, CALCULATE)) {
+                // Begins after the request head has been read; the body is already in the buffer
+                PipelineEvents.Request request = PipelineEvents.beginRequest();
+                int status;
+                if (method != 4 || !startsWith(a, 0, method, "POST")) {
+                    status = 405;
+                    writeHead(405, null, 0, "Allow", "POST");
+                } else {
+                    PipelineEvents.Parse parse = PipelineEvents.beginParse();
+                    FormParser.Status parsed = loop.form.parse(a, headEnd, contentLength);
+                    PipelineEvents.endParse(parse, PipelineEvents.NIO, parsed.name());
+                    metrics.stage(Metrics.Stage.PARSE, started);
+                    WebServer.CalculatorHandler.Reply r = loop.reply;
+                    calculator.respond(loop.form, parsed, r);
+                    status = r.status;
+                    long mark = System.nanoTime();
+                    writeHead(r.status, HTML, r.length, null, null);
+                    // The body may be the loop's render buffer, which the next request reuses
+                    out.write(r.body, 0, r.length);
+                    if (status == 200) {
+                        // Queueing only; the socket write happens in flush() for all pipelined responses
+                        metrics.stage(Metrics.Stage.WRITE, mark);
+                    }
+                }
+                metrics.request(Metrics.Handler.CALCULATE, status, System.nanoTime() - started);
+                PipelineEvents.endRequest(request, PipelineEvents.NIO, status);
+            } else if (rangeEquals(a, targetStart, pathEnd, METRICS)) {
+                StringBuilder text = loop.metricsText;
+                text.setLength(0);
+                metrics.writePrometheus(text);
+                ResponseBuffer body = loop.scratch;
+                body.reset();
+                body.writeText(text, false);
+                writeHead(200, "text/plain; version=0.0.4; charset=utf-8", body.size(), null, null);
+                out.write(body.array(), 0, body.size());
+                metrics.request(Metrics.Handler.METRICS, 200, System.nanoTime() - started);
+            } else if (rangeEquals(a, targetStart, pathEnd, STATS)) {
+                ResponseBuffer body = loop.scratch;
+                body.reset();
+                PopulationStats.global().snapshot().writeJson(body);
+                writeHead(200, "application/json", body.size(), null, null);
+                out.write(body.array(), 0, body.size());
+                metrics.request(Metrics.Handler.ADMIN, 200, System.nanoTime() - started);
+            } else {
+                int status = serveStatic(a, method, pathEnd);
+                metrics.request(Metrics.Handler.STATIC, status, System.nanoTime() - started);
+            }
+            if (!keepAlive) {
+                closeAfterWrite = true;
+            }
+        }
+
+        private int serveStatic(byte[] a, int method, int pathEnd) {
+            boolean head = method == 4 && startsWith(a, 0, method, "HEAD");
+            if (!head && !(method == 3 && startsWith(a, 0, method, "GET"))) {
+                writeHead(405, null, 0, "Allow", "GET, HEAD");
+                return 405;
+            }
+            String path = new String(a, targetStart, pathEnd - targetStart, StandardCharsets.ISO_8859_1);
+            if (path.indexOf('%') >= 0) {
+                try {
+                    path = URI.create(path).getPath();
+                } catch (IllegalArgumentException e) {
+                    writeHead(400, null, 0, null, null);
+                    return 400;
+                }
+            }
+            if (path.equals("/")) {
+                path = "/index.html";
+            }
+            path = path.substring(1);
+
+            try {
+                StaticAssetCache.Asset asset = assets.get(path);
+                if (asset != null) {
+                    if (asset.isNotModified(header(ifNoneMatchStart, ifNoneMatchEnd),
+                                            header(ifModifiedSinceStart, ifModifiedSinceEnd))) {
+                        writeStatusLine(304);
+                        writeAssetHeaders(asset);
+                        endHead();
+                        return 304;
+                    }
+                    String encoding = StaticAssetCache.selectEncoding(asset, header(acceptEncodingStart, acceptEncodingEnd));
+                    byte[] content = asset.getIdentity();
+                    if ("gzip".equals(encoding)) {
+                        content = asset.getGzip();
+                    } else if ("deflate".equals(encoding)) {
+                        content = asset.getDeflate();
+                    }
+                    writeStatusLine(200);
+                    writeAssetHeaders(asset);
+                    if (encoding != null) {
+                        writeHeader("Content-Encoding", encoding);
+                    }
+                    writeHeader("Content-Type", asset.getContentType());
+                    writeContentLength(content.length);
+                    endHead();
+                    if (!head) {
+                        writeBody(content);
+                    }
+                    return 200;
+                }
+
+                Path file = assets.resolve(path);
+                if (file != null && Files.isRegularFile(file)) {
+                    // Not cached (too large, over the cache budget or mid-write); stream it from disk
+                    long size = Files.size(file);
+                    writeStatusLine(200);
+                    writeHeader("Content-Type", StaticAssetCache.getContentType(path));
+                    writeContentLength(size);
+                    endHead();
+                    if (!head) {
+                        this.file = FileChannel.open(file, StandardOpenOption.READ);
+                        filePosition = 0;
+                        fileEnd = size;
+                    }
+                    return 200;
+                }
+            } catch (IOException e) {
+                writeHead(500, null, 0, null, null);
+                return 500;
+            }
+            writeHead(404, "text/plain; charset=utf-8", NOT_FOUND.length, null, null);
+            if (!head) {
+                out.write(NOT_FOUND);
+            }
+            return 404;
+        }
+
+        private void writeAssetHeaders(StaticAssetCache.Asset asset) {
+            writeHeader("ETag", asset.getEtag());
+            writeHeader("Last-Modified", asset.getLastModified());
+            writeHeader("Cache-Control", "no-cache");
+            if (asset.hasCompressedVariants()) {
+                writeHeader("Vary", "Accept-Encoding");
+            }
+        }
+
+        /**
+         * Header value as a String, or null when the request did not send it
+         */
+        private String header(int start, int end) {
+            return start < 0 ? null : new String(in.array(), start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        private void reject(int status, String reason) {
+            writeHead(status, null, 0, null, null);
+            closeAfterWrite = true;
+            in.clear();
+            headEnd = -1;
+            scanned = 0;
+        }
+
+        private void writeHead(int status, String contentType, int contentLength, String extraName, String extraValue) {
+            writeStatusLine(status);
+            if (contentType != null) {
+                writeHeader("Content-Type", contentType);
+            }
+            if (extraName != null) {
+                writeHeader(extraName, extraValue);
+            }
+            writeContentLength(contentLength);
+            endHead();
+        }
+
+        private void writeStatusLine(int status) {
+            out.writeAscii(http10 ? "HTTP/1.0 " : "HTTP/1.1 ");
+            out.writeInt(status);
+            out.writeByte(' ');
+            out.writeAscii(reason(status));
+            out.writeAscii("\r\nDate: ");
+            out.write(loop.date);
+            out.writeAscii("\r\n");
+        }
+
+        private void writeHeader(String name, String value) {
+            out.writeAscii(name);
+            out.writeAscii(": ");
+            out.writeText(value, false);
+            out.writeAscii("\r\n");
+        }
+
+        private void writeContentLength(long length) {
+            out.writeAscii("Content-Length: ");
+            if (length <= Integer.MAX_VALUE) {
+                out.writeInt((int) length);
+            } else {
+                out.writeAscii(Long.toString(length));
+            }
+            out.writeAscii("\r\n");
+        }
+
+        private void endHead() {
+            if (!keepAlive) {
+                out.writeAscii("Connection: close\r\n");
+            } else if (http10) {
+                out.writeAscii("Connection: keep-alive\r\n");
+            }
+            out.writeAscii("\r\n");
+        }
+
+        /**
+         * Queues an immutable body: copied behind the headers if small, otherwise written from its own array
+         */
+        private void writeBody(byte[] body) {
+            if (body.length <= COPY_LIMIT) {
+                out.write(body);
+            } else {
+                largeBody = ByteBuffer.wrap(body);
+            }
+        }
+
+        private boolean hasPendingOutput() {
+            return out.size() > written || largeBody != null || file != null;
+        }
+
+        /**
+         * Writes as much queued output as the socket takes, then waits for OP_WRITE or OP_READ
+         */
+        private void flush() throws IOException {
+            if (closed) return;
+            if (out.size() > written) {
+                if (outView == null || outView.array() != out.array()) {
+                    outView = ByteBuffer.wrap(out.array());
+                }
+                outView.limit(out.size()).position(written);
+                channel.write(outView);
+                written = outView.position();
+                if (written == out.size()) {
+                    out.reset();
+                    written = 0;
+                }
+            }
+            if (out.size() == 0 && largeBody != null) {
+                channel.write(largeBody);
+                if (!largeBody.hasRemaining()) {
+                    largeBody = null;
+                }
+            }
+            if (out.size() == 0 && largeBody == null && file != null) {
+                filePosition += file.transferTo(filePosition, fileEnd - filePosition, channel);
+                if (filePosition >= fileEnd) {
+                    file.close();
+                    file = null;
+                }
+            }
+
+            if (hasPendingOutput()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (closeAfterWrite) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            connections.decrementAndGet();
+            key.cancel();
+            try {
+                if (file != null) file.close();
+                channel.close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Internal Server Error";
+        }
+    }
+
+    /**
+     * Offset just past the blank line ending the head, or -1 if it has not arrived yet
+     */
+    static int findHeadEnd(byte[] a, int from, int to) {
+        for (int i = Math.max(from, 3); i < to; i++) {
+            if (a[i] == '\n' && a[i - 1] == '\r' && a[i - 2] == '\n' && a[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] a, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (a[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] a, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (a[from + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean rangeEquals(byte[] a, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (a[from + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Case-insensitive match of a header name against a lower-case constant
+     */
+    private static boolean nameEquals(byte[] a, int from, int length, String lowerCase) {
+        if (length != lowerCase.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if ((a[from + i] | 0x20) != lowerCase.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(byte[] a, int from, int to, String lowerCase) {
+        for (int i = from; i <= to - lowerCase.length(); i++) {
+            if (nameEquals(a, i, lowerCase.length(), lowerCase)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decimal Content-Length, or -1 if malformed or beyond int range
+     */
+    private static int parseLength(byte[] a, int from, int to) {
+        if (from == to) return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = a[i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) return -1;
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,169 @@
+package com.maintenance.calculator;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches individual files and runs a callback when one of them is created, modified or deleted
+ * One daemon thread serves every registration; callbacks run on that thread and should be quick.
+ * A settled watch waits until its file has stopped changing: an editor or a copy writes a file in
+ * several steps, and reacting to the first of them would read it half-written.
+ */
+public class FileWatcher {
+
+    private static volatile FileWatcher shared;
+
+    private final WatchService watchService;
+    private final Map<Path, List<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> watchedDirectories = new ConcurrentHashMap<>();
+    // Settled watches whose file changed recently; only used on the watcher thread
+    private final List<Settling> settling = new ArrayList<>();
+
+    private FileWatcher(WatchService watchService) {
+        this.watchService = watchService;
+        Thread thread = new Thread(this::watchLoop, "file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the process-wide watcher, starting it on first use
+     */
+    public static FileWatcher shared() throws IOException {
+        FileWatcher watcher = shared;
+        if (watcher == null) {
+            synchronized (FileWatcher.class) {
+                watcher = shared;
+                if (watcher == null) {
+                    watcher = new FileWatcher(Path.of("").getFileSystem().newWatchService());
+                    shared = watcher;
+                }
+            }
+        }
+        return watcher;
+    }
+
+    /**
+     * Runs onChange whenever the given file changes; the file does not need to exist yet
+     */
+    public void watch(Path file, Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path directory = absolute.getParent();
+        if (watchedDirectories.putIfAbsent(directory, Boolean.TRUE) == null) {
+            directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        listeners.computeIfAbsent(absolute, p -> new CopyOnWriteArrayList<>()).add(onChange);
+    }
+
+    /**
+     * Runs onSettled once the given file has had no further change for settleMillis
+     */
+    public void watch(Path file, long settleMillis, Runnable onSettled) throws IOException {
+        watch(file, new Settling(TimeUnit.MILLISECONDS.toNanos(settleMillis), onSettled));
+    }
+
+    // Restarts its delay on every change; runs the callback when the delay runs out
+    private final class Settling implements Runnable {
+        final long settleNanos;
+        final Runnable onSettled;
+        long due;
+        boolean waiting;
+
+        Settling(long settleNanos, Runnable onSettled) {
+            this.settleNanos = settleNanos;
+            this.onSettled = onSettled;
+        }
+
+        @Override
+        public void run() {
+            due = System.nanoTime() + settleNanos;
+            if (!waiting) {
+                waiting = true;
+                settling.add(this);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = settling.isEmpty() ? watchService.take() : watchService.poll(untilSettled(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            if (key != null) {
+                dispatch(key);
+            }
+            runSettled();
+        }
+    }
+
+    private long untilSettled() {
+        long now = System.nanoTime();
+        long wait = Long.MAX_VALUE;
+        for (Settling pending : settling) {
+            wait = Math.min(wait, pending.due - now);
+        }
+        return Math.max(0, wait);
+    }
+
+    private void runSettled() {
+        long now = System.nanoTime();
+        List<Runnable> due = null;
+        for (int i = settling.size() - 1; i >= 0; i--) {
+            Settling pending = settling.get(i);
+            if (pending.due - now <= 0) {
+                settling.remove(i);
+                pending.waiting = false;
+                if (due == null) due = new ArrayList<>();
+                due.add(pending.onSettled);
+            }
+        }
+        if (due != null) {
+            notify(due);
+        }
+    }
+
+    private void dispatch(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; tell everyone in this directory to re-check
+                listeners.forEach((path, callbacks) -> {
+                    if (directory.equals(path.getParent())) notify(callbacks);
+                });
+                continue;
+            }
+            List<Runnable> callbacks = listeners.get(directory.resolve((Path) event.context()));
+            if (callbacks != null) {
+                notify(callbacks);
+            }
+        }
+        key.reset();
+    }
+
+    private static void notify(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                System.err.println("File change listener failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.maintenance.calculator;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Starts a JDK Flight Recorder recording of the calculator events when --jfr=file.jfr is given
+ *
+ * The settings are the bundled calculator.jfc (every calculator.* event plus low-overhead JDK
+ * events: GC pauses, lock and I/O stalls over 10 ms, CPU samples every 20 ms), or a .jfc given
+ * with --jfr-settings. The recording keeps --jfr-max-age-minutes of data on disk (default 30)
+ * and is written to the file when the JVM exits; summarize it with "WebServer jfr-summary".
+ * Without --jfr nothing is started and the calculator events stay disabled.
+ */
+final class FlightRecording {
+
+    /** Bundled settings on the classpath */
+    static final String SETTINGS = "/calculator.jfc";
+
+    private FlightRecording() {
+    }
+
+    static Recording start(ServerOptions options) throws IOException {
+        String file = options.get("jfr", null);
+        if (file == null) {
+            return null;
+        }
+        Configuration configuration;
+        try {
+            String settings = options.get("jfr-settings", null);
+            configuration = settings != null ? Configuration.create(Paths.get(settings)) : bundled();
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR settings: " + e.getMessage(), e);
+        }
+        Path destination = Paths.get(file).toAbsolutePath();
+        Recording recording = new Recording(configuration);
+        recording.setName("calculator");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(options.getInt("jfr-max-age-minutes", 30)));
+        recording.setDestination(destination);
+        recording.setDumpOnExit(true);
+        recording.start();
+        System.out.println("Flight recording to " + destination + " (" + configuration.getLabel() + " settings)");
+        return recording;
+    }
+
+    private static Configuration bundled() throws IOException, ParseException {
+        InputStream in = FlightRecording.class.getResourceAsStream(SETTINGS);
+        if (in == null) {
+            throw new IOException("JFR settings " + SETTINGS + " are missing from the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for the /calculate application/x-www-form-urlencoded body
+ *
+ * Works directly on request bytes: keys are percent-decoded into a small scratch buffer and
+ * matched against the fixed set of form fields, values are decoded and parsed in place, and
+ * unknown keys are skipped without buffering. Failures are reported through a Status code
+ * rather than exceptions. Bodies of any length are accepted because only the current pair is
+ * held in memory. An instance is reusable and belongs to one thread at a time.
+ */
+public final class FormParser {
+
+    /**
+     * Outcome of parsing a form body
+     */
+    public enum Status {
+        OK(null),
+        MISSING_FIELD("Invalid input data. Please check your entries and try again."),
+        INVALID_NUMBER("Invalid numeric input provided.");
+
+        private final String message;
+
+        Status(String message) {
+            this.message = message;
+        }
+
+        public String message() {
+            return message;
+        }
+    }
+
+    private static final int MAX_KEY_LENGTH = 16;
+    private static final int MAX_VALUE_LENGTH = 64;
+
+    // Field ids, also used as bits in the "seen" mask
+    private static final int UNKNOWN = 0;
+    private static final int HEIGHT = 1, WEIGHT = 2, AGE = 4, ACTIVITY = 8, DAYS = 16, HOURS = 32;
+    private static final int GENDER = 64, GOAL = 128, USER = 256, WEEKS = 512, TARGET_WEIGHT = 1024;
+    private static final int REQUIRED = HEIGHT | WEIGHT | AGE | ACTIVITY | DAYS | HOURS;
+
+    // Parsed values
+    private double height, weight, activityLevel, hours;
+    private int age, days, gender, goal;
+    private long user;
+    private int weeks;
+    private double targetWeight;
+
+    private final byte[] readBuffer = new byte[4096];
+    private final byte[] key = new byte[MAX_KEY_LENGTH];
+    private final byte[] value = new byte[MAX_VALUE_LENGTH];
+    private final ByteSequence text = new ByteSequence();
+
+    // Streaming state
+    private boolean inValue;
+    private int keyLength;
+    private int valueLength;
+    private boolean overlong;
+    private int field;
+    private int percentDigits;   // hex digits still expected after '%'
+    private int percentValue;
+    private int seen;
+    private boolean invalidNumber;
+
+    /**
+     * Reads and parses the whole stream
+     */
+    public Status parse(InputStream in) throws IOException {
+        reset();
+        int read;
+        while ((read = in.read(readBuffer)) > 0) {
+            feed(readBuffer, 0, read);
+        }
+        return finish();
+    }
+
+    /**
+     * Parses a complete body held in memory
+     */
+    public Status parse(byte[] body, int offset, int length) {
+        reset();
+        feed(body, offset, length);
+        return finish();
+    }
+
+    /**
+     * Starts a new body
+     */
+    public void reset() {
+        inValue = false;
+        keyLength = 0;
+        valueLength = 0;
+        overlong = false;
+        field = UNKNOWN;
+        percentDigits = 0;
+        seen = 0;
+        invalidNumber = false;
+        gender = Gender.FEMALE.ordinal();
+        goal = Goal.MAINTAIN.ordinal();
+        user = 0;
+        weeks = 0;
+        targetWeight = 0;
+    }
+
+    /**
+     * Consumes the next chunk of the body
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int b = bytes[i] & 0xFF;
+            if (percentDigits > 0) {
+                int digit = hexDigit(b);
+                if (digit < 0) {
+                    // Malformed escape; keep the byte as a literal so the value fails validation
+                    percentDigits = 0;
+                    append('%');
+                } else {
+                    percentValue = (percentValue << 4) | digit;
+                    if (--percentDigits == 0) append(percentValue);
+                    continue;
+                }
+            }
+            switch (b) {
+                case '&':
+                    endPair();
+                    break;
+                case '=':
+                    if (!inValue) {
+                        field = overlong ? UNKNOWN : lookup(keyLength);
+                        inValue = true;
+                        overlong = false;
+                        valueLength = 0;
+                    } else {
+                        append(b);
+                    }
+                    break;
+                case '+':
+                    append(' ');
+                    break;
+                case '%':
+                    percentDigits = 2;
+                    percentValue = 0;
+                    break;
+                case '\r':
+                case '\n':
+                    // Trailing line breaks are not part of the value
+                    break;
+                default:
+                    append(b);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Completes the body and reports whether every required field was present and numeric
+     */
+    public Status finish() {
+        endPair();
+        if (invalidNumber) return Status.INVALID_NUMBER;
+        return (seen & REQUIRED) == REQUIRED ? Status.OK : Status.MISSING_FIELD;
+    }
+
+    private void append(int b) {
+        if (inValue) {
+            if (field == UNKNOWN) return;
+            if (valueLength < MAX_VALUE_LENGTH) value[valueLength++] = (byte) b;
+            else overlong = true;
+        } else {
+            if (keyLength < MAX_KEY_LENGTH) key[keyLength++] = (byte) b;
+            else overlong = true;
+        }
+    }
+
+    private void endPair() {
+        if (inValue && field != UNKNOWN) {
+            commit();
+        }
+        inValue = false;
+        keyLength = 0;
+        valueLength = 0;
+        overlong = false;
+        field = UNKNOWN;
+        percentDigits = 0;
+    }
+
+    private void commit() {
+        // Like the old HashMap parser, a key with an empty value is treated as absent
+        if (valueLength == 0) return;
+        if (overlong && field != GENDER && field != GOAL) {
+            invalidNumber = true;
+            return;
+        }
+        switch (field) {
+            case HEIGHT: height = parseDouble(); break;
+            case WEIGHT: weight = parseDouble(); break;
+            case ACTIVITY: activityLevel = parseDouble(); break;
+            case HOURS: hours = parseDouble(); break;
+            case AGE: age = parseInt(); break;
+            case DAYS: days = parseInt(); break;
+            case USER: user = parseUser(); break;
+            case WEEKS: weeks = parseInt(); break;
+            case TARGET_WEIGHT: targetWeight = parseDouble(); break;
+            case GENDER:
+                gender = overlong ? Gender.FEMALE.ordinal() : Gender.parse(text.set(value, 0, valueLength)).ordinal();
+                break;
+            case GOAL:
+                goal = overlong ? Goal.MAINTAIN.ordinal() : Goal.parse(text.set(value, 0, valueLength)).ordinal();
+                break;
+            default:
+                return;
+        }
+        seen |= field;
+    }
+
+    private double parseDouble() {
+        double parsed = AsciiNumbers.parseDouble(value, 0, valueLength);
+        if (Double.isNaN(parsed)) invalidNumber = true;
+        return parsed;
+    }
+
+    // User ids are longs, as in the servlet and /history; a negative one is an invalid number
+    private long parseUser() {
+        long parsed = AsciiNumbers.parseLong(value, 0, valueLength);
+        if (parsed < 0) {
+            invalidNumber = true;
+            return 0;
+        }
+        return parsed;
+    }
+
+    private int parseInt() {
+        long parsed = AsciiNumbers.parseInt(value, 0, valueLength);
+        if (parsed == AsciiNumbers.INVALID) {
+            invalidNumber = true;
+            return 0;
+        }
+        return (int) parsed;
+    }
+
+    private int lookup(int length) {
+        switch (length) {
+            case 3: return keyIs("age") ? AGE : UNKNOWN;
+            case 4:
+                if (keyIs("days")) return DAYS;
+                if (keyIs("goal")) return GOAL;
+                if (keyIs("user")) return USER;
+                return UNKNOWN;
+            case 5:
+                if (keyIs("hours")) return HOURS;
+                if (keyIs("weeks")) return WEEKS;
+                return UNKNOWN;
+            case 6:
+                if (keyIs("height")) return HEIGHT;
+                if (keyIs("weight")) return WEIGHT;
+                if (keyIs("gender")) return GENDER;
+                return UNKNOWN;
+            case 12: return keyIs("targetWeight") ? TARGET_WEIGHT : UNKNOWN;
+            case 13: return keyIs("activityLevel") ? ACTIVITY : UNKNOWN;
+            default: return UNKNOWN;
+        }
+    }
+
+    private boolean keyIs(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (key[i] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int hexDigit(int b) {
+        if (b >= '0' && b <= '9') return b - '0';
+        if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+        if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+        return -1;
+    }
+
+    public double getHeight() { return height; }
+    public double getWeight() { return weight; }
+    public int getAge() { return age; }
+    public int getGender() { return gender; }
+    public double getActivityLevel() { return activityLevel; }
+    public int getDays() { return days; }
+    public double getHours() { return hours; }
+    public int getGoal() { return goal; }
+    /** Optional id the calculation is recorded under in the history store; 0 when absent */
+    public long getUser() { return user; }
+    /** Projection horizon for /projection; 0 when absent */
+    public int getWeeks() { return weeks; }
+    /** Optional weight a /projection stops at; 0 when absent */
+    public double getTargetWeight() { return targetWeight; }
+    /** Whether the body set weeks, so an explicit 0 can be told from a missing field */
+    public boolean hasWeeks() { return (seen & WEEKS) != 0; }
+    /** Whether the body set targetWeight */
+    public boolean hasTargetWeight() { return (seen & TARGET_WEIGHT) != 0; }
+}
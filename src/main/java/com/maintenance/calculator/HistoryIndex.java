@@ -0,0 +1,332 @@
+package com.maintenance.calculator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Off-heap index from user to that user's history records, for range reads by time
+ *
+ * Users live in an open-addressing table (linear probing) in a direct buffer; each slot holds
+ * the user id and the first and last block of the user's chain. A block is 64 bytes: the next
+ * block, the number of entries used, and up to seven entries of (record number, epoch second).
+ * Records are appended in time order, so every chain is sorted by record number and time and a
+ * range read is one walk along it. Blocks come from 8 MiB direct chunks and are recycled through
+ * a free list, so neither the table nor the chains put anything on the Java heap or in front of
+ * the garbage collector, whatever the number of records.
+ * Not thread-safe; HistoryStore calls it under its lock.
+ */
+final class HistoryIndex {
+
+    /** Returned by blocks and slots that do not exist */
+    static final int NONE = 0;
+
+    // User table slot: user id, head block, tail block, unused
+    private static final int SLOT = 24;
+    private static final int SLOT_USER = 0, SLOT_HEAD = 8, SLOT_TAIL = 12;
+    private static final double MAX_LOAD = 0.5;
+
+    // Block: next block, entries used, then ENTRIES x (record, second)
+    private static final int BLOCK = 64;
+    private static final int BLOCK_NEXT = 0, BLOCK_USED = 4, BLOCK_ENTRIES = 8;
+    static final int ENTRIES = (BLOCK - BLOCK_ENTRIES) / 8;
+    private static final int CHUNK_SHIFT = 17; // blocks per chunk: 8 MiB chunks
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private ByteBuffer table;
+    private int tableMask;
+    private int users;
+
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+    private int chunkCount;
+    private int nextBlock = 1; // block 0 is NONE
+    private int freeBlocks = NONE;
+    private long entries;
+
+    HistoryIndex(int expectedUsers) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 30, expectedUsers / MAX_LOAD)) * 2 - 1);
+        table = allocate((long) capacity * SLOT);
+        tableMask = capacity - 1;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("History index table would exceed 2 GiB");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Appends a record to the user's chain; record numbers must increase per user
+     */
+    void add(long user, int record, int second) {
+        int slot = find(user);
+        if (slot < 0) {
+            if (users + 1 > (tableMask + 1) * MAX_LOAD) {
+                resize();
+            }
+            slot = ~find(user);
+            int block = allocateBlock();
+            table.putLong(slot + SLOT_USER, user);
+            table.putInt(slot + SLOT_HEAD, block);
+            table.putInt(slot + SLOT_TAIL, block);
+            users++;
+        }
+        int tail = table.getInt(slot + SLOT_TAIL);
+        ByteBuffer chunk = chunk(tail);
+        int base = blockOffset(tail);
+        int used = chunk.getInt(base + BLOCK_USED);
+        if (used == ENTRIES) {
+            int block = allocateBlock();
+            chunk.putInt(base + BLOCK_NEXT, block);
+            table.putInt(slot + SLOT_TAIL, block);
+            chunk = chunk(block);
+            base = blockOffset(block);
+            used = 0;
+        }
+        int entry = base + BLOCK_ENTRIES + used * 8;
+        chunk.putInt(entry, record);
+        chunk.putInt(entry + 4, second);
+        chunk.putInt(base + BLOCK_USED, used + 1);
+        entries++;
+    }
+
+    /**
+     * Copies the user's record numbers from firstRecord on (unsigned) whose second lies in
+     * [fromSecond, toSecond] into records, oldest first; returns how many matched, which may exceed
+     * records.length, in which case only the newest records.length are kept, in order
+     */
+    int collect(long user, int firstRecord, long fromSecond, long toSecond, int[] records) {
+        int slot = find(user);
+        if (slot < 0 || records.length == 0) return 0;
+        int matched = 0;
+        for (int block = table.getInt(slot + SLOT_HEAD); block != NONE; ) {
+            ByteBuffer chunk = chunk(block);
+            int base = blockOffset(block);
+            int used = chunk.getInt(base + BLOCK_USED);
+            for (int i = 0; i < used; i++) {
+                int entry = base + BLOCK_ENTRIES + i * 8;
+                int record = chunk.getInt(entry);
+                long second = Integer.toUnsignedLong(chunk.getInt(entry + 4));
+                if (second > toSecond) return matched;
+                if (second >= fromSecond && Integer.compareUnsigned(record, firstRecord) >= 0) {
+                    // A ring over the output keeps the newest matches
+                    records[matched % records.length] = record;
+                    matched++;
+                }
+            }
+            block = chunk.getInt(base + BLOCK_NEXT);
+        }
+        return matched;
+    }
+
+    /**
+     * Removes the user and frees the chain, passing each of its record numbers to removed
+     */
+    boolean remove(long user, IntConsumer removed) {
+        int slot = find(user);
+        if (slot < 0) return false;
+        int block = table.getInt(slot + SLOT_HEAD);
+        while (block != NONE) {
+            ByteBuffer chunk = chunk(block);
+            int base = blockOffset(block);
+            int used = chunk.getInt(base + BLOCK_USED);
+            for (int i = 0; i < used; i++) {
+                removed.accept(chunk.getInt(base + BLOCK_ENTRIES + i * 8));
+            }
+            entries -= used;
+            int next = chunk.getInt(base + BLOCK_NEXT);
+            freeBlock(block);
+            block = next;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Whether the user's chain holds this record number
+     */
+    boolean contains(long user, int record) {
+        return locate(user, record) >= 0;
+    }
+
+    /**
+     * Changes one record number in the user's chain, e.g. after compaction moved the record;
+     * the new number must keep the chain in order. False if the record is not in the chain.
+     */
+    boolean renumber(long user, int record, int newRecord) {
+        long location = locate(user, record);
+        if (location < 0) return false;
+        chunk((int) (location >>> 32)).putInt((int) location, newRecord);
+        return true;
+    }
+
+    // (block << 32) | offset of the entry holding record, or -1
+    private long locate(long user, int record) {
+        int slot = find(user);
+        if (slot < 0) return -1;
+        for (int block = table.getInt(slot + SLOT_HEAD); block != NONE; ) {
+            ByteBuffer chunk = chunk(block);
+            int base = blockOffset(block);
+            int used = chunk.getInt(base + BLOCK_USED);
+            // Chains are sorted, so a block whose last entry is below the record can be skipped
+            if (used > 0 && Integer.compareUnsigned(chunk.getInt(base + BLOCK_ENTRIES + (used - 1) * 8), record) >= 0) {
+                for (int i = 0; i < used; i++) {
+                    int entry = base + BLOCK_ENTRIES + i * 8;
+                    int found = chunk.getInt(entry);
+                    if (found == record) return ((long) block << 32) | entry;
+                    if (Integer.compareUnsigned(found, record) > 0) return -1;
+                }
+            }
+            block = chunk.getInt(base + BLOCK_NEXT);
+        }
+        return -1;
+    }
+
+    /**
+     * Frees the leading blocks of each user's chain in [fromSlot, fromSlot + slots) that only hold
+     * record numbers below firstRecord (unsigned), dropping users left with nothing
+     * Returns the next slot to continue from, or 0 after the last slot; meant to be called in
+     * slices so the caller's lock is held briefly. Entries below firstRecord that share a block
+     * with newer ones stay until the block empties; collect() skips them.
+     */
+    int trim(int firstRecord, int fromSlot, int slots) {
+        int capacity = tableMask + 1;
+        int end = Math.min(capacity, fromSlot + slots);
+        int index = fromSlot;
+        while (index < end) {
+            int slot = index * SLOT;
+            int block = table.getInt(slot + SLOT_HEAD);
+            if (block == NONE) {
+                index++;
+                continue;
+            }
+            while (block != NONE) {
+                ByteBuffer chunk = chunk(block);
+                int base = blockOffset(block);
+                int used = chunk.getInt(base + BLOCK_USED);
+                if (Integer.compareUnsigned(chunk.getInt(base + BLOCK_ENTRIES + (used - 1) * 8), firstRecord) >= 0) {
+                    break;
+                }
+                entries -= used;
+                int next = chunk.getInt(base + BLOCK_NEXT);
+                freeBlock(block);
+                block = next;
+            }
+            if (block == NONE) {
+                // Backward-shift deletion may move a later user into this slot, so look at it again
+                removeSlot(slot);
+            } else {
+                table.putInt(slot + SLOT_HEAD, block);
+                index++;
+            }
+        }
+        return end == capacity ? 0 : end;
+    }
+
+    int getUsers() { return users; }
+    long getEntries() { return entries; }
+
+    /** Direct memory held by the table and the block chunks */
+    long getMemoryBytes() {
+        return (long) table.capacity() + (long) chunkCount * (BLOCK << CHUNK_SHIFT);
+    }
+
+    // Byte offset of the user's slot, or ~(offset of the free slot where it would go)
+    private int find(long user) {
+        int index = hash(user) & tableMask;
+        while (true) {
+            int slot = index * SLOT;
+            if (table.getInt(slot + SLOT_HEAD) == NONE) return ~slot;
+            if (table.getLong(slot + SLOT_USER) == user) return slot;
+            index = (index + 1) & tableMask;
+        }
+    }
+
+    private void removeSlot(int slot) {
+        int hole = slot / SLOT;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & tableMask;
+            int candidate = index * SLOT;
+            if (table.getInt(candidate + SLOT_HEAD) == NONE) break;
+            int home = hash(table.getLong(candidate + SLOT_USER)) & tableMask;
+            // Move the entry back into the hole unless its home lies cyclically in (hole, index]
+            boolean stays = hole <= index ? (home > hole && home <= index) : (home > hole || home <= index);
+            if (!stays) {
+                copySlot(candidate, hole * SLOT);
+                hole = index;
+            }
+        }
+        clearSlot(hole * SLOT);
+        users--;
+    }
+
+    private void copySlot(int from, int to) {
+        table.putLong(to + SLOT_USER, table.getLong(from + SLOT_USER));
+        table.putInt(to + SLOT_HEAD, table.getInt(from + SLOT_HEAD));
+        table.putInt(to + SLOT_TAIL, table.getInt(from + SLOT_TAIL));
+    }
+
+    private void clearSlot(int slot) {
+        table.putLong(slot + SLOT_USER, 0);
+        table.putInt(slot + SLOT_HEAD, NONE);
+        table.putInt(slot + SLOT_TAIL, NONE);
+    }
+
+    private void resize() {
+        ByteBuffer old = table;
+        int oldCapacity = tableMask + 1;
+        table = allocate((long) oldCapacity * 2 * SLOT);
+        tableMask = oldCapacity * 2 - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int slot = i * SLOT;
+            if (old.getInt(slot + SLOT_HEAD) == NONE) continue;
+            int to = ~find(old.getLong(slot + SLOT_USER));
+            table.putLong(to + SLOT_USER, old.getLong(slot + SLOT_USER));
+            table.putInt(to + SLOT_HEAD, old.getInt(slot + SLOT_HEAD));
+            table.putInt(to + SLOT_TAIL, old.getInt(slot + SLOT_TAIL));
+        }
+    }
+
+    private int allocateBlock() {
+        int block;
+        if (freeBlocks != NONE) {
+            block = freeBlocks;
+            freeBlocks = chunk(block).getInt(blockOffset(block) + BLOCK_NEXT);
+        } else {
+            block = nextBlock;
+            if ((block >>> CHUNK_SHIFT) == chunkCount) {
+                if (chunkCount == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                }
+                chunks[chunkCount++] = allocate((long) BLOCK << CHUNK_SHIFT);
+            }
+            nextBlock = block + 1;
+        }
+        ByteBuffer chunk = chunk(block);
+        int base = blockOffset(block);
+        chunk.putInt(base + BLOCK_NEXT, NONE);
+        chunk.putInt(base + BLOCK_USED, 0);
+        return block;
+    }
+
+    private void freeBlock(int block) {
+        chunk(block).putInt(blockOffset(block) + BLOCK_NEXT, freeBlocks);
+        freeBlocks = block;
+    }
+
+    private ByteBuffer chunk(int block) {
+        return chunks[block >>> CHUNK_SHIFT];
+    }
+
+    private static int blockOffset(int block) {
+        return (block & CHUNK_MASK) * BLOCK;
+    }
+
+    private static int hash(long user) {
+        long h = user * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,157 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.BmiCategory;
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.Gender;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.WorkoutPlan;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One calculation in the history store, and its fixed 64-byte binary layout
+ *
+ * Inputs and figures are narrowed to what the page shows (floats for the measurements, shorts
+ * for the macro grams), so a record is exactly one cache line. A record is either a calculation
+ * or a deletion marker for its user. Instances are mutable holders, reused by the store's writer.
+ */
+public final class HistoryRecord {
+
+    public static final int SIZE = 64;
+
+    static final byte CALCULATION = 1;
+    /** Everything recorded for the user before this record is deleted */
+    static final byte DELETION = 2;
+
+    // Field offsets within a record
+    private static final int USER = 0, TIMESTAMP = 8;
+    private static final int HEIGHT = 16, WEIGHT = 20, ACTIVITY = 24, HOURS = 28, BMI = 32;
+    private static final int BMR = 36, MAINTENANCE = 40, TARGET = 44;
+    private static final int AGE = 48, DAYS = 50, GENDER = 51, GOAL = 52, BMI_CATEGORY = 53, WORKOUT_PLAN = 54;
+    private static final int KIND = 55;
+    private static final int PROTEIN = 56, CARBS = 58, FAT = 60;
+
+    long user;
+    long timestamp;
+    byte kind;
+    float height, weight, activityLevel, hours, bmi;
+    int bmr, maintenanceCalories, targetCalories;
+    int age, days, gender, goal, bmiCategory, workoutPlan;
+    int proteinGrams, carbGrams, fatGrams;
+
+    void set(long user, long timestamp, CalculationResult result) {
+        this.user = user;
+        this.timestamp = timestamp;
+        this.kind = CALCULATION;
+        height = (float) result.getHeight();
+        weight = (float) result.getWeight();
+        activityLevel = (float) result.getActivityLevel();
+        hours = (float) result.getHoursPerDay();
+        bmi = (float) result.getBmi();
+        bmr = result.getBmr();
+        maintenanceCalories = result.getMaintenanceCalories();
+        targetCalories = result.getTargetCalories();
+        age = result.getAge();
+        days = result.getDaysAvailable();
+        gender = result.getGenderOrdinal();
+        goal = result.getGoalOrdinal();
+        bmiCategory = result.getBmiCategory().ordinal();
+        workoutPlan = result.getWorkoutPlan().ordinal();
+        proteinGrams = result.getProteinGrams();
+        carbGrams = result.getCarbGrams();
+        fatGrams = result.getFatGrams();
+    }
+
+    void setDeletion(long user, long timestamp) {
+        this.user = user;
+        this.timestamp = timestamp;
+        this.kind = DELETION;
+        height = weight = activityLevel = hours = bmi = 0;
+        bmr = maintenanceCalories = targetCalories = 0;
+        age = days = gender = goal = bmiCategory = workoutPlan = 0;
+        proteinGrams = carbGrams = fatGrams = 0;
+    }
+
+    /**
+     * Writes the record at an absolute offset; the buffer must be little-endian
+     */
+    void write(ByteBuffer buffer, int offset) {
+        buffer.putLong(offset + USER, user);
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.putFloat(offset + HEIGHT, height);
+        buffer.putFloat(offset + WEIGHT, weight);
+        buffer.putFloat(offset + ACTIVITY, activityLevel);
+        buffer.putFloat(offset + HOURS, hours);
+        buffer.putFloat(offset + BMI, bmi);
+        buffer.putInt(offset + BMR, bmr);
+        buffer.putInt(offset + MAINTENANCE, maintenanceCalories);
+        buffer.putInt(offset + TARGET, targetCalories);
+        buffer.putShort(offset + AGE, (short) age);
+        buffer.put(offset + DAYS, (byte) days);
+        buffer.put(offset + GENDER, (byte) gender);
+        buffer.put(offset + GOAL, (byte) goal);
+        buffer.put(offset + BMI_CATEGORY, (byte) bmiCategory);
+        buffer.put(offset + WORKOUT_PLAN, (byte) workoutPlan);
+        buffer.putShort(offset + PROTEIN, (short) proteinGrams);
+        buffer.putShort(offset + CARBS, (short) carbGrams);
+        buffer.putShort(offset + FAT, (short) fatGrams);
+        buffer.putShort(offset + FAT + 2, (short) 0);
+        buffer.put(offset + KIND, kind);
+    }
+
+    void read(ByteBuffer buffer, int offset) {
+        user = buffer.getLong(offset + USER);
+        timestamp = buffer.getLong(offset + TIMESTAMP);
+        kind = buffer.get(offset + KIND);
+        height = buffer.getFloat(offset + HEIGHT);
+        weight = buffer.getFloat(offset + WEIGHT);
+        activityLevel = buffer.getFloat(offset + ACTIVITY);
+        hours = buffer.getFloat(offset + HOURS);
+        bmi = buffer.getFloat(offset + BMI);
+        bmr = buffer.getInt(offset + BMR);
+        maintenanceCalories = buffer.getInt(offset + MAINTENANCE);
+        targetCalories = buffer.getInt(offset + TARGET);
+        age = buffer.getShort(offset + AGE);
+        days = buffer.get(offset + DAYS);
+        gender = buffer.get(offset + GENDER);
+        goal = buffer.get(offset + GOAL);
+        bmiCategory = buffer.get(offset + BMI_CATEGORY);
+        workoutPlan = buffer.get(offset + WORKOUT_PLAN);
+        proteinGrams = Short.toUnsignedInt(buffer.getShort(offset + PROTEIN));
+        carbGrams = Short.toUnsignedInt(buffer.getShort(offset + CARBS));
+        fatGrams = Short.toUnsignedInt(buffer.getShort(offset + FAT));
+    }
+
+    static long user(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + USER);
+    }
+
+    static long timestamp(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + TIMESTAMP);
+    }
+
+    static byte kind(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + KIND);
+    }
+
+    public long getUser() { return user; }
+    /** Milliseconds since the epoch */
+    public long getTimestamp() { return timestamp; }
+    public double getHeight() { return height; }
+    public double getWeight() { return weight; }
+    public int getAge() { return age; }
+    public Gender getGender() { return Gender.fromOrdinal(gender); }
+    public double getActivityLevel() { return activityLevel; }
+    public int getDaysAvailable() { return days; }
+    public double getHoursPerDay() { return hours; }
+    public Goal getGoal() { return Goal.fromOrdinal(goal); }
+    public int getBmr() { return bmr; }
+    public int getMaintenanceCalories() { return maintenanceCalories; }
+    public int getTargetCalories() { return targetCalories; }
+    public double getBmi() { return bmi; }
+    public BmiCategory getBmiCategory() { return BmiCategory.fromOrdinal(bmiCategory); }
+    public WorkoutPlan getWorkoutPlan() { return WorkoutPlan.fromOrdinal(workoutPlan); }
+    public int getProteinGrams() { return proteinGrams; }
+    public int getCarbGrams() { return carbGrams; }
+    public int getFatGrams() { return fatGrams; }
+}
@@ -0,0 +1,166 @@
+package com.maintenance.calculator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped segment file of the history store
+ *
+ * A 64-byte header is followed by capacity record slots. The file is created at its full size
+ * (sparse, so untouched slots take no disk space) and mapped once; appending is a copy into the
+ * mapping. The header holds the number of records known to be on disk: sync() forces the new
+ * records first and the count second, so after a crash the count never covers a record that was
+ * not written, and anything past it is ignored and overwritten.
+ * Not thread-safe: HistoryStore appends under its lock and syncs from its own thread.
+ */
+final class HistorySegment {
+
+    static final int HEADER = HistoryRecord.SIZE;
+    private static final int MAGIC = 0x48495354; // "HIST"
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 4, RECORD_SIZE_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12, ID_OFFSET = 16, COMMITTED_OFFSET = 20;
+
+    static final String SUFFIX = ".seg";
+
+    final int id;
+    final int capacity;
+    final Path path;
+    final MappedByteBuffer map;
+    private final FileChannel channel;
+
+    /** Records appended; guarded by the store's lock */
+    int count;
+    /** Records forced to disk and counted in the header; written by the sync thread */
+    int durable;
+    /** Calculation records whose user has been deleted since; guarded by the store's lock */
+    int dead;
+    /** Timestamp of the newest record */
+    long lastTimestamp;
+
+    private HistorySegment(int id, int capacity, Path path, FileChannel channel, MappedByteBuffer map) {
+        this.id = id;
+        this.capacity = capacity;
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+        map.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static String fileName(int id) {
+        return String.format("history-%08d%s", id, SUFFIX);
+    }
+
+    /**
+     * Id encoded in a segment file name, or -1 for any other file
+     */
+    static int idOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("history-") || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(name.substring("history-".length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates an empty segment at path, replacing any file there
+     */
+    static HistorySegment create(Path path, int id, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = HEADER + (long) capacity * HistoryRecord.SIZE;
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            HistorySegment segment = new HistorySegment(id, capacity, path, channel, map);
+            map.putInt(MAGIC_OFFSET, MAGIC);
+            map.putInt(VERSION_OFFSET, VERSION);
+            map.putInt(RECORD_SIZE_OFFSET, HistoryRecord.SIZE);
+            map.putInt(CAPACITY_OFFSET, capacity);
+            map.putInt(ID_OFFSET, id);
+            map.putInt(COMMITTED_OFFSET, 0);
+            map.force(0, HEADER);
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing segment with the records its header commits to
+     */
+    static HistorySegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER) {
+                throw new IOException("History segment " + path + " is truncated");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int capacity = map.getInt(CAPACITY_OFFSET);
+            if (map.getInt(MAGIC_OFFSET) != MAGIC || map.getInt(VERSION_OFFSET) != VERSION
+                    || map.getInt(RECORD_SIZE_OFFSET) != HistoryRecord.SIZE
+                    || channel.size() != HEADER + (long) capacity * HistoryRecord.SIZE) {
+                throw new IOException("Not a history segment (or an incompatible version): " + path);
+            }
+            HistorySegment segment = new HistorySegment(map.getInt(ID_OFFSET), capacity, path, channel, map);
+            int committed = map.getInt(COMMITTED_OFFSET);
+            if (committed < 0 || committed > capacity) {
+                throw new IOException("History segment " + path + " has a corrupt record count " + committed);
+            }
+            segment.count = committed;
+            segment.durable = committed;
+            if (committed > 0) {
+                segment.lastTimestamp = HistoryRecord.timestamp(map, offset(committed - 1));
+            }
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static int offset(int slot) {
+        return HEADER + slot * HistoryRecord.SIZE;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    /**
+     * Appends a record and returns its slot
+     */
+    int append(HistoryRecord record) {
+        int slot = count;
+        record.write(map, offset(slot));
+        count = slot + 1;
+        lastTimestamp = record.timestamp;
+        return slot;
+    }
+
+    void read(int slot, HistoryRecord record) {
+        record.read(map, offset(slot));
+    }
+
+    /**
+     * Forces the first upTo records to disk and then commits them in the header
+     */
+    void sync(int upTo) {
+        if (upTo <= durable) return;
+        map.force(offset(durable), (upTo - durable) * HistoryRecord.SIZE);
+        map.putInt(COMMITTED_OFFSET, upTo);
+        map.force(0, HEADER);
+        durable = upTo;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
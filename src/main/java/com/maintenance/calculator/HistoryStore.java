@@ -0,0 +1,604 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Embedded append-only store of per-user calculation history
+ *
+ * Records are fixed-width (HistoryRecord) and appended to memory-mapped segment files
+ * (HistorySegment) of recordsPerSegment slots each; a full segment is sealed and the next one
+ * created. Appending copies 64 bytes into the mapping and adds one entry to the off-heap
+ * HistoryIndex, all under one short lock, and never waits for the disk: a background thread
+ * forces new records out in groups, once syncBatch records are pending or every syncInterval,
+ * whichever comes first. Callers that need a record on disk wait for it with awaitDurable().
+ * The cost of an append does not depend on how many records the store holds.
+ *
+ * A record is addressed by a 32-bit record number, (segment id << segment bits) | slot, which
+ * caps the store at 2^32 records. Maintenance runs on the sync thread after each segment roll:
+ * sealed segments whose newest record is older than the retention are deleted, and sealed
+ * segments in which more than half the records belong to deleted users are rewritten without
+ * them. The index is rebuilt by scanning the segments when the store is opened.
+ */
+public final class HistoryStore implements Closeable {
+
+    /** Share of dead records at which a sealed segment is compacted */
+    private static final double COMPACT_THRESHOLD = 0.5;
+    /** User table slots trimmed per lock hold after segments expire */
+    private static final int TRIM_SLICE = 4096;
+    /** Least time between two reports of failed appends */
+    private static final long FAILURE_REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Path directory;
+    private final int segmentBits;
+    private final int recordsPerSegment;
+    private final long syncIntervalNanos;
+    private final int syncBatch;
+    private final long retentionMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition syncRequested = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+
+    // Guarded by lock
+    private final List<HistorySegment> segments = new ArrayList<>(); // by id; null once deleted
+    private final List<HistorySegment> unsynced = new ArrayList<>();  // sealed, not yet forced
+    private final HistoryIndex index;
+    private final HistoryRecord scratch = new HistoryRecord();
+    private HistorySegment active;
+    private int firstRecord;     // lowest record number not deleted by retention
+    private long lastTimestamp;
+    private long appended;
+    private long durable;
+    private long records;
+    private boolean maintenanceDue;
+    private volatile boolean closed;
+
+    // Appends from the request path that failed, and when a failure was last reported (nanoTime)
+    private final AtomicLong appendFailures = new AtomicLong();
+    private final AtomicLong failureReported = new AtomicLong();
+
+    private final Thread syncThread;
+
+    /**
+     * Opens the store in directory, creating it if needed
+     *
+     * @param recordsPerSegment slots per segment file, a power of two up to 2^24
+     * @param syncIntervalMillis longest a record waits to be forced to disk
+     * @param syncBatch pending records that trigger a sync before the interval is up
+     * @param retentionMillis age after which whole sealed segments are deleted; 0 keeps everything
+     */
+    public HistoryStore(Path directory, int recordsPerSegment, long syncIntervalMillis, int syncBatch,
+                        long retentionMillis) throws IOException {
+        if (Integer.bitCount(recordsPerSegment) != 1 || recordsPerSegment > 1 << 24) {
+            throw new IllegalArgumentException("Records per segment must be a power of two up to 2^24, not "
+                + recordsPerSegment);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.segmentBits = Integer.numberOfTrailingZeros(recordsPerSegment);
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMillis));
+        this.syncBatch = Math.max(1, syncBatch);
+        this.retentionMillis = Math.max(0, retentionMillis);
+        this.index = new HistoryIndex(1024);
+
+        Files.createDirectories(directory);
+        load();
+
+        syncThread = new Thread(this::syncLoop, "history-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /**
+     * The store configured by history-dir and the other history-* options, or null when
+     * history-dir is not set
+     */
+    static HistoryStore open(ServerOptions options) throws IOException {
+        String directory = options.get("history-dir", "");
+        if (directory.isEmpty()) {
+            return null;
+        }
+        return new HistoryStore(Paths.get(directory), options.getInt("history-segment-records", 1 << 20),
+            options.getInt("history-sync-ms", 10), options.getInt("history-sync-batch", 1024),
+            TimeUnit.DAYS.toMillis(options.getInt("history-retention-days", 0)));
+    }
+
+    /**
+     * Opens every segment in id order and replays it into the index
+     */
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.forEach(file -> {
+                if (HistorySegment.idOf(file) >= 0) {
+                    files.add(file);
+                } else if (file.getFileName().toString().endsWith(".compact")) {
+                    // Left over from a compaction that did not finish; the original is intact
+                    try {
+                        Files.delete(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+        files.sort((a, b) -> Integer.compare(HistorySegment.idOf(a), HistorySegment.idOf(b)));
+
+        HistoryRecord record = new HistoryRecord();
+        for (Path file : files) {
+            HistorySegment segment = HistorySegment.open(file);
+            if (segment.id != HistorySegment.idOf(file) || segment.capacity != recordsPerSegment) {
+                segment.close();
+                throw new IOException("History segment " + file + " does not match this store (id "
+                    + segment.id + ", " + segment.capacity + " records per segment)");
+            }
+            if (segments.isEmpty()) {
+                firstRecord = recordNumber(segment.id, 0);
+            }
+            while (segments.size() < segment.id) {
+                segments.add(null);
+            }
+            segments.add(segment);
+            for (int slot = 0; slot < segment.count; slot++) {
+                segment.read(slot, record);
+                replay(record, recordNumber(segment.id, slot));
+            }
+            lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp);
+            records += segment.count;
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+            if (active.isFull()) {
+                roll();
+            }
+        }
+    }
+
+    private void replay(HistoryRecord record, int number) {
+        if (record.kind == HistoryRecord.CALCULATION) {
+            index.add(record.user, number, second(record.timestamp));
+        } else if (record.kind == HistoryRecord.DELETION) {
+            index.remove(record.user, this::markDead);
+        }
+    }
+
+    /**
+     * Records a calculation for the user, time-stamped now; returns its sequence for awaitDurable()
+     */
+    public long append(long user, CalculationResult result) {
+        lock.lock();
+        try {
+            HistoryRecord record = scratch;
+            record.set(user, now(), result);
+            index.add(user, write(record), second(record.timestamp));
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * append() for request handlers, which serve the page whatever happens to the history
+     * A failure is counted (getAppendFailures) rather than thrown; the first one is reported, and
+     * after that at most one a minute, so a full disk does not flood the log with one line a request.
+     */
+    public boolean tryAppend(long user, CalculationResult result) {
+        try {
+            append(user, result);
+            return true;
+        } catch (RuntimeException e) {
+            long failures = appendFailures.incrementAndGet();
+            long now = System.nanoTime();
+            long reported = failureReported.get();
+            if ((failures == 1 || now - reported >= FAILURE_REPORT_INTERVAL_NANOS)
+                    && failureReported.compareAndSet(reported, now)) {
+                System.err.println("History append failed (" + failures + " so far): " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Deletes everything recorded for the user so far; returns false if there was nothing
+     * The deletion is itself a record, so it survives a restart; the space is reclaimed by compaction.
+     */
+    public boolean delete(long user) {
+        lock.lock();
+        try {
+            boolean removed = index.remove(user, this::markDead);
+            if (removed) {
+                scratch.setDeletion(user, now());
+                write(scratch);
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The user's records with timestamps in [fromMillis, toMillis], oldest first; at most limit,
+     * keeping the newest
+     */
+    public List<HistoryRecord> read(long user, long fromMillis, long toMillis, int limit) {
+        if (limit <= 0 || fromMillis > toMillis) {
+            return new ArrayList<>();
+        }
+        int[] numbers = new int[limit];
+        lock.lock();
+        try {
+            int matched = index.collect(user, firstRecord, Math.max(0, Math.floorDiv(fromMillis, 1000)),
+                Math.floorDiv(toMillis, 1000), numbers);
+            int count = Math.min(matched, limit);
+            int start = matched > limit ? matched % limit : 0;
+            List<HistoryRecord> found = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int number = numbers[(start + i) % limit];
+                HistoryRecord record = new HistoryRecord();
+                segments.get(number >>> segmentBits).read(number & (recordsPerSegment - 1), record);
+                // The index has second resolution
+                if (record.timestamp >= fromMillis && record.timestamp <= toMillis) {
+                    found.add(record);
+                }
+            }
+            return found;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with this sequence (from append()) is on disk
+     */
+    public boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            if (durable < sequence) {
+                syncRequested.signal();
+            }
+            while (durable < sequence) {
+                if (remaining <= 0 || closed) return false;
+                remaining = synced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock; returns the record number
+    private int write(HistoryRecord record) {
+        if (closed) {
+            throw new IllegalStateException("History store is closed");
+        }
+        if (active.isFull()) {
+            roll();
+        }
+        int number = recordNumber(active.id, active.append(record));
+        records++;
+        if (++appended - durable >= syncBatch) {
+            syncRequested.signal();
+        }
+        return number;
+    }
+
+    // Caller holds lock
+    private void roll() {
+        int id = active.id + 1;
+        if (id >= 1 << (32 - segmentBits)) {
+            throw new IllegalStateException("History store is full: record numbers are exhausted");
+        }
+        try {
+            HistorySegment next = createSegment(id);
+            unsynced.add(active);
+            segments.add(next);
+            active = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create history segment " + id, e);
+        }
+        maintenanceDue = true;
+        syncRequested.signal();
+    }
+
+    private HistorySegment createSegment(int id) throws IOException {
+        return HistorySegment.create(directory.resolve(HistorySegment.fileName(id)), id, recordsPerSegment);
+    }
+
+    private void markDead(int number) {
+        HistorySegment segment = segments.get(number >>> segmentBits);
+        if (segment != null) {
+            segment.dead++;
+        }
+    }
+
+    // Caller holds lock; timestamps never go backwards, so chains stay in time order
+    private long now() {
+        lastTimestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+        return lastTimestamp;
+    }
+
+    private int recordNumber(int segment, int slot) {
+        return (segment << segmentBits) | slot;
+    }
+
+    private static int second(long millis) {
+        return (int) Math.floorDiv(millis, 1000);
+    }
+
+    /**
+     * Group commit: one force per batch of appends, outside the lock
+     */
+    private void syncLoop() {
+        while (true) {
+            List<HistorySegment> sealed;
+            HistorySegment current;
+            int count;
+            long target;
+            boolean maintain;
+            lock.lock();
+            try {
+                if (!closed && appended - durable < syncBatch && !maintenanceDue) {
+                    syncRequested.awaitNanos(syncIntervalNanos);
+                }
+                sealed = new ArrayList<>(unsynced);
+                current = active;
+                count = active.count;
+                target = appended;
+                maintain = maintenanceDue;
+                maintenanceDue = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                for (HistorySegment segment : sealed) {
+                    segment.sync(segment.count);
+                }
+                current.sync(count);
+            } catch (UncheckedIOException e) {
+                System.err.println("History sync failed: " + e.getMessage());
+                if (closed) return;
+                // Retry after an interval rather than spinning on a failing disk
+                LockSupport.parkNanos(syncIntervalNanos);
+                continue;
+            }
+
+            boolean stop;
+            lock.lock();
+            try {
+                unsynced.removeAll(sealed);
+                durable = Math.max(durable, target);
+                synced.signalAll();
+                stop = closed && appended == durable;
+            } finally {
+                lock.unlock();
+            }
+            if (stop) return;
+
+            if (maintain) {
+                try {
+                    expire();
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("History maintenance failed: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes sealed segments older than the retention, oldest first, and trims the index
+     */
+    private void expire() throws IOException {
+        if (retentionMillis == 0) return;
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        List<HistorySegment> expired = new ArrayList<>();
+        int first;
+        lock.lock();
+        try {
+            for (int id = firstRecord >>> segmentBits; id < active.id; id++) {
+                HistorySegment segment = segments.get(id);
+                if (segment == null) continue;
+                if (segment.lastTimestamp >= cutoff || unsynced.contains(segment)) break;
+                segments.set(id, null);
+                expired.add(segment);
+                firstRecord = recordNumber(id + 1, 0);
+            }
+            first = firstRecord;
+        } finally {
+            lock.unlock();
+        }
+        if (expired.isEmpty()) return;
+
+        // Reads already skip the expired records; this only returns their index memory
+        int slot = 0;
+        do {
+            lock.lock();
+            try {
+                slot = index.trim(first, slot, TRIM_SLICE);
+            } finally {
+                lock.unlock();
+            }
+        } while (slot != 0);
+
+        for (HistorySegment segment : expired) {
+            segment.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    /**
+     * Rewrites sealed segments dominated by deleted users' records
+     * Live records are copied to a new file outside the lock; the index is then pointed at their
+     * new slots and the file swapped in under it. Deletion records are always kept, because older
+     * segments may still hold records they cancel.
+     */
+    private void compact() throws IOException {
+        List<HistorySegment> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int id = firstRecord >>> segmentBits; id < active.id; id++) {
+                HistorySegment segment = segments.get(id);
+                if (segment != null && !unsynced.contains(segment) && segment.dead > segment.count * COMPACT_THRESHOLD) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (HistorySegment segment : candidates) {
+            compact(segment);
+        }
+    }
+
+    private void compact(HistorySegment segment) throws IOException {
+        Path temporary = segment.path.resolveSibling(segment.path.getFileName() + ".compact");
+        HistorySegment compacted = HistorySegment.create(temporary, segment.id, recordsPerSegment);
+        int[] moved = new int[segment.count];
+        HistoryRecord record = new HistoryRecord();
+        for (int slot = 0; slot < segment.count; slot++) {
+            segment.read(slot, record);
+            boolean live = record.kind == HistoryRecord.DELETION;
+            if (!live) {
+                lock.lock();
+                try {
+                    live = index.contains(record.user, recordNumber(segment.id, slot));
+                } finally {
+                    lock.unlock();
+                }
+            }
+            moved[slot] = live ? compacted.append(record) : -1;
+        }
+        compacted.sync(compacted.count);
+        compacted.close();
+
+        lock.lock();
+        try {
+            int dead = 0;
+            for (int slot = 0; slot < moved.length; slot++) {
+                if (moved[slot] < 0) continue;
+                long user = HistoryRecord.user(segment.map, HistorySegment.offset(slot));
+                if (HistoryRecord.kind(segment.map, HistorySegment.offset(slot)) == HistoryRecord.CALCULATION
+                        && !index.renumber(user, recordNumber(segment.id, slot), recordNumber(segment.id, moved[slot]))) {
+                    // Deleted while the copy was made
+                    dead++;
+                }
+            }
+            Files.move(temporary, segment.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            HistorySegment reopened = HistorySegment.open(segment.path);
+            reopened.dead = dead;
+            segments.set(segment.id, reopened);
+            records -= segment.count - reopened.count;
+        } finally {
+            lock.unlock();
+        }
+        segment.close();
+    }
+
+    /**
+     * Forces everything appended so far to disk, then stops the sync thread
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            syncRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            for (HistorySegment segment : segments) {
+                if (segment != null) segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRecords() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records appended since the store was opened but not yet on disk */
+    public long getPending() {
+        lock.lock();
+        try {
+            return appended - durable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getUsers() {
+        lock.lock();
+        try {
+            return index.getUsers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSegments() {
+        lock.lock();
+        try {
+            int live = 0;
+            for (HistorySegment segment : segments) {
+                if (segment != null) live++;
+            }
+            return live;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Appends from tryAppend() that failed since the store was opened */
+    public long getAppendFailures() {
+        return appendFailures.get();
+    }
+
+    /** Off-heap bytes held by the per-user index */
+    public long getIndexBytes() {
+        lock.lock();
+        try {
+            return index.getMemoryBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.maintenance.calculator;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor used by WebServer to run exchanges
+ * Wraps one of the supported execution modes and keeps queue-depth and active-task gauges,
+ * so the modes can be compared under the same load
+ */
+public class InstrumentedExecutor implements Executor {
+
+    /**
+     * Supported execution modes, selected with --executor=
+     */
+    public enum Mode {
+        /** Every exchange runs on the HttpServer dispatcher thread (the JDK default) */
+        SINGLE,
+        /** Fixed pool of platform threads, sized to the available cores by default */
+        POOL,
+        /** One virtual thread per exchange (requires a Java 21+ runtime) */
+        VIRTUAL;
+
+        public static Mode fromString(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown executor mode: " + value
+                    + " (expected single, pool or virtual)");
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final Executor delegate;
+    private final int threads;
+
+    // Gauges: tasks handed to us but not yet started, and tasks currently running
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    // System.nanoTime() at which the task running on this platform thread was handed to execute()
+    private static final ThreadLocal<long[]> SUBMITTED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private InstrumentedExecutor(Mode mode, Executor delegate, int threads) {
+        this.mode = mode;
+        this.delegate = delegate;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates an executor for the given mode
+     * A threads value of 0 or less means "one per available core" in POOL mode
+     */
+    public static InstrumentedExecutor create(Mode mode, int threads) {
+        switch (mode) {
+            case SINGLE:
+                return new InstrumentedExecutor(mode, Runnable::run, 1);
+            case VIRTUAL:
+                ExecutorService virtual = newVirtualThreadExecutor();
+                if (virtual != null) {
+                    return new InstrumentedExecutor(mode, virtual, 0);
+                }
+                System.err.println("Virtual threads are not available on Java "
+                    + Runtime.version().feature() + ", falling back to a platform thread pool");
+                return create(Mode.POOL, threads);
+            case POOL:
+            default:
+                int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory("http-worker-"));
+                return new InstrumentedExecutor(Mode.POOL, pool, size);
+        }
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() reflectively so the code still
+     * compiles for Java 17 and simply reports null when the runtime has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queued.incrementAndGet();
+        long submitted = System.nanoTime();
+        // A virtual thread starts with its task, so there is no queue wait to report, and a
+        // ThreadLocal would cost each task's thread a holder of its own
+        boolean platform = mode != Mode.VIRTUAL;
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                if (platform) {
+                    SUBMITTED.get()[0] = submitted;
+                }
+                try {
+                    task.run();
+                } finally {
+                    if (platform) {
+                        SUBMITTED.get()[0] = 0;
+                    }
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * System.nanoTime() at which the task now running on the calling thread was submitted,
+     * or 0 outside a task of an InstrumentedExecutor and on virtual threads
+     */
+    public static long currentTaskSubmitted() {
+        if (ScratchPool.isVirtual(Thread.currentThread())) {
+            return 0;
+        }
+        return SUBMITTED.get()[0];
+    }
+
+    public Mode getMode() { return mode; }
+    public int getThreads() { return threads; }
+    public int getQueueDepth() { return queued.get(); }
+    public int getActiveTasks() { return active.get(); }
+    public long getCompletedTasks() { return completed.get(); }
+
+    /**
+     * Stops accepting work and waits briefly for running exchanges to finish
+     */
+    public void shutdown() {
+        if (delegate instanceof ExecutorService) {
+            ExecutorService service = (ExecutorService) delegate;
+            service.shutdown();
+            try {
+                service.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Daemon thread factory with readable thread names
+     */
+    static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
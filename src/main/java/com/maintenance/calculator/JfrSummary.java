@@ -0,0 +1,96 @@
+package com.maintenance.calculator;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline mode: per-stage latency percentiles from a flight recording
+ *
+ * Reads every calculator.* event of a recording (see FlightRecording) and prints, per event type,
+ * the count and the 50th to 99.9th percentile and maximum duration in microseconds. With --by=field
+ * each type is further split by that field where it has it, e.g. --by=outcome separates cached
+ * from computed results and --by=frontend the servlet from the JDK server.
+ * Usage: java com.maintenance.calculator.WebServer jfr-summary --input=recording.jfr [--by=field]
+ */
+public final class JfrSummary {
+
+    private static final String PREFIX = "calculator.";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // Durations of one event type and group, in nanoseconds
+    private static final class Durations {
+        long[] nanos = new long[1024];
+        int count;
+
+        void add(long value) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+        }
+
+        long percentile(double p) {
+            int rank = (int) Math.ceil(p / 100 * count);
+            return nanos[Math.max(0, Math.min(count, rank) - 1)];
+        }
+    }
+
+    private final Map<String, Durations> groups = new TreeMap<>();
+
+    public static void main(String[] args) throws IOException {
+        ServerOptions options = ServerOptions.parse(args);
+        String input = options.get("input", null);
+        if (input == null) {
+            System.err.println("Usage: jfr-summary --input=recording.jfr [--by=outcome|frontend|status|...]");
+            System.exit(2);
+        }
+        JfrSummary summary = new JfrSummary();
+        summary.read(Paths.get(input), options.get("by", null));
+        summary.print(System.out);
+    }
+
+    void read(Path recording, String by) throws IOException {
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (!name.startsWith(PREFIX)) continue;
+                String key = name;
+                if (by != null && event.hasField(by)) {
+                    key = name + " " + by + "=" + event.getValue(by);
+                }
+                groups.computeIfAbsent(key, k -> new Durations()).add(event.getDuration().toNanos());
+            }
+        }
+    }
+
+    void print(PrintStream out) {
+        if (groups.isEmpty()) {
+            out.println("No calculator events in the recording (was it started with the calculator settings?)");
+            return;
+        }
+        int width = groups.keySet().stream().mapToInt(String::length).max().orElse(0);
+        out.printf("%-" + width + "s %9s", "event", "count");
+        for (double p : PERCENTILES) {
+            out.printf(" %10s", "p" + (p == Math.rint(p) ? Integer.toString((int) p) : Double.toString(p)));
+        }
+        out.printf(" %10s   (microseconds)%n", "max");
+        for (Map.Entry<String, Durations> group : groups.entrySet()) {
+            Durations d = group.getValue();
+            Arrays.sort(d.nanos, 0, d.count);
+            out.printf("%-" + width + "s %9d", group.getKey(), d.count);
+            for (double p : PERCENTILES) {
+                out.printf(" %10.1f", d.percentile(p) / 1000.0);
+            }
+            out.printf(" %10.1f%n", d.nanos[d.count - 1] / 1000.0);
+        }
+    }
+}
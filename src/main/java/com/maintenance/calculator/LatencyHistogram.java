@@ -0,0 +1,108 @@
+package com.maintenance.calculator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram with HDR-style log-linear buckets
+ *
+ * Each power of two is split into 8 linear sub-buckets, so any recorded value is reported
+ * within 12.5% of its true value. Counts are striped across several rows picked by thread id,
+ * so concurrent recorders rarely touch the same cache line; a snapshot sums the stripes.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values at or above 2^MAX_MAGNITUDE ns (about 18 minutes) land in the last bucket */
+    private static final int MAX_MAGNITUDE = 40;
+    static final int BUCKETS = (MAX_MAGNITUDE + 1) * SUB_BUCKETS;
+
+    // Row layout per stripe: BUCKETS counts, then the sum; padded to keep stripes apart
+    private static final int ROW = BUCKETS + 1 + 8;
+
+    private final int stripeMask;
+    private final AtomicLongArray cells;
+
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripeMask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * ROW);
+    }
+
+    /**
+     * Bucket index for a value in nanoseconds
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos <= 0 ? 0 : (int) nanos;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Exclusive upper bound in nanoseconds of a bucket
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int magnitude = bucket / SUB_BUCKETS;
+        if (magnitude < SUB_BUCKET_BITS) {
+            // Unused: values below SUB_BUCKETS are counted exactly in the first buckets
+            return SUB_BUCKETS;
+        }
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    public void record(long nanos) {
+        int base = (int) (Thread.currentThread().getId() & stripeMask) * ROW;
+        cells.getAndIncrement(base + bucketOf(nanos));
+        cells.getAndAdd(base + BUCKETS, Math.max(0, nanos));
+    }
+
+    /**
+     * Records the time elapsed since startNanos (a System.nanoTime() value) and returns now
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Sums the stripes into counts (length BUCKETS) and returns the total of recorded values
+     */
+    public long snapshot(long[] counts) {
+        long sum = 0;
+        java.util.Arrays.fill(counts, 0);
+        for (int base = 0; base < cells.length(); base += ROW) {
+            for (int b = 0; b < BUCKETS; b++) {
+                counts[b] += cells.get(base + b);
+            }
+            sum += cells.get(base + BUCKETS);
+        }
+        return sum;
+    }
+
+    /**
+     * Value at the given quantile (0..1) from a snapshot, as the upper bound of its bucket
+     */
+    public static long quantile(long[] counts, double quantile) {
+        long total = 0;
+        for (long count : counts) total += count;
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank && counts[b] > 0) return bucketUpperBound(b);
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+}
@@ -0,0 +1,312 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.Rules;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live recalculation over a WebSocket at /live
+ *
+ * The client sends form fields as they change, form-encoded like the /calculate body
+ * ("weight=81" or "height=180&age=30"); they are merged into the connection's current inputs.
+ * Nothing is computed per message: a changed connection is queued once, and a single frame
+ * thread recalculates every queued connection each frame interval (live-frame-ms, default 50),
+ * so a burst of slider events costs one calculation with the latest values. The reply is a JSON
+ * object holding only the result fields that differ from the last one sent, or {"error":...}
+ * while the inputs are incomplete or out of range.
+ *
+ * A connection is this endpoint instance and nothing else: the raw field values, the figures
+ * last sent and two flags. Parsing, calculation and encoding use buffers owned by the frame
+ * thread, and a send in progress is never stacked on: a connection whose previous push has not
+ * completed stays queued until a later frame. TomcatLauncher shrinks the per-connection frame
+ * buffers to match the small messages.
+ */
+@ServerEndpoint("/live")
+public class LiveCalculationEndpoint implements SendHandler {
+
+    /** Longest message accepted; a whole form is well under this */
+    static final int MAX_MESSAGE_LENGTH = 1024;
+
+    // Input fields in the order they are written back into a form body
+    private static final String[] FIELDS = {
+        "height", "weight", "age", "gender", "activityLevel", "days", "hours", "goal"
+    };
+
+    // Result fields, in the order of the values compared between frames
+    private static final String[] OUTPUTS = {
+        "bmr", "maintenanceCalories", "targetCalories", "bmi", "bmiCategory",
+        "proteinGrams", "carbGrams", "fatGrams", "workoutPlan"
+    };
+    private static final int BMI = 3, BMI_CATEGORY = 4, WORKOUT_PLAN = 8;
+    private static final int UNSENT = Integer.MIN_VALUE;
+
+    private static final int IDLE = 0, QUEUED = 1;
+    private static final AtomicIntegerFieldUpdater<LiveCalculationEndpoint> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(LiveCalculationEndpoint.class, "state");
+
+    private static final ServerOptions OPTIONS = ServerOptions.parse(new String[0]);
+    private static final long FRAME_MILLIS = Math.max(1, OPTIONS.getInt("live-frame-ms", 50));
+    private static final long IDLE_TIMEOUT_MILLIS = OPTIONS.getInt("live-idle-ms", 600_000);
+
+    private static final Queue<LiveCalculationEndpoint> PENDING = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SESSIONS = new AtomicInteger();
+    private static final LongAdder MESSAGES = new LongAdder();
+    private static final LongAdder CALCULATIONS = new LongAdder();
+    private static final LongAdder PUSHES = new LongAdder();
+
+    // Owned by the frame thread
+    private static final FormParser PARSER = new FormParser();
+    private static final CalculationResult RESULT = new CalculationResult();
+    private static final ResponseBuffer FORM = new ResponseBuffer(256);
+    private static final ResponseBuffer JSON = new ResponseBuffer(512);
+    private static final int[] FIGURES = new int[OUTPUTS.length];
+    private static final List<LiveCalculationEndpoint> DEFERRED = new ArrayList<>();
+    // The rules RESULT was calculated under, so its labels are written from the same snapshot
+    private static Rules rules;
+
+    static {
+        ScheduledExecutorService frames = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "live-frames");
+            thread.setDaemon(true);
+            return thread;
+        });
+        frames.scheduleAtFixedRate(LiveCalculationEndpoint::frame, FRAME_MILLIS, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+
+        Metrics metrics = Metrics.global();
+        metrics.gauge("calculator_live_sessions", "Open /live WebSocket connections", SESSIONS::get);
+        metrics.counter("calculator_live_messages_total", "Input updates received on /live", MESSAGES::sum);
+        metrics.counter("calculator_live_calculations_total", "Coalesced /live recalculations", CALCULATIONS::sum);
+        metrics.counter("calculator_live_pushes_total", "Result updates sent on /live", PUSHES::sum);
+    }
+
+    private Session session;
+    // Raw (still form-encoded) field values, guarded by themselves
+    private final String[] values = new String[FIELDS.length];
+    // Written by the frame thread only
+    private final int[] sent = new int[OUTPUTS.length];
+    private String sentError;
+    private volatile int state;
+    private volatile boolean sending;
+
+    @OnOpen
+    public void open(Session session) {
+        this.session = session;
+        Arrays.fill(sent, UNSENT);
+        if (IDLE_TIMEOUT_MILLIS > 0) {
+            session.setMaxIdleTimeout(IDLE_TIMEOUT_MILLIS);
+        }
+        SESSIONS.incrementAndGet();
+    }
+
+    @OnMessage(maxMessageSize = MAX_MESSAGE_LENGTH)
+    public void message(String message) {
+        MESSAGES.increment();
+        synchronized (values) {
+            merge(message, values);
+        }
+        if (STATE.compareAndSet(this, IDLE, QUEUED)) {
+            PENDING.add(this);
+        }
+    }
+
+    @OnClose
+    public void close() {
+        SESSIONS.decrementAndGet();
+    }
+
+    @OnError
+    public void error(Throwable error) {
+        // Tomcat closes the connection after reporting the error; a dropped client needs no log line
+    }
+
+    /**
+     * Completion of a push; the connection may be queued again while it was in flight
+     */
+    @Override
+    public void onResult(SendResult result) {
+        sending = false;
+    }
+
+    /**
+     * Copies each "name=value" pair of a form-encoded update into values; unknown names are
+     * ignored and an empty value clears the field
+     */
+    static void merge(String message, String[] values) {
+        int length = message.length();
+        int start = 0;
+        while (start < length) {
+            int end = message.indexOf('&', start);
+            if (end < 0) end = length;
+            int equals = message.indexOf('=', start);
+            if (equals > start && equals < end) {
+                int field = field(message, start, equals - start);
+                if (field >= 0) {
+                    values[field] = equals + 1 == end ? null : message.substring(equals + 1, end);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    private static int field(String message, int start, int length) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].length() == length && message.regionMatches(start, FIELDS[i], 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Recalculates every connection queued since the last frame
+     */
+    private static void frame() {
+        LiveCalculationEndpoint live;
+        while ((live = PENDING.poll()) != null) {
+            try {
+                live.update();
+            } catch (RuntimeException e) {
+                // One broken connection must not cancel the frame task
+                System.err.println("Live update failed: " + e);
+            }
+        }
+        // Connections still sending the previous push wait for the next frame
+        PENDING.addAll(DEFERRED);
+        DEFERRED.clear();
+    }
+
+    private void update() {
+        if (!session.isOpen()) {
+            return;
+        }
+        if (sending) {
+            DEFERRED.add(this);
+            return;
+        }
+        // Updates from here on queue the connection again for the next frame
+        state = IDLE;
+
+        FORM.reset();
+        synchronized (values) {
+            for (int i = 0; i < FIELDS.length; i++) {
+                if (values[i] == null) continue;
+                if (FORM.size() > 0) FORM.writeByte('&');
+                FORM.writeAscii(FIELDS[i]);
+                FORM.writeByte('=');
+                FORM.writeText(values[i], false);
+            }
+        }
+
+        JSON.reset();
+        String error = calculate();
+        if (error != null) {
+            if (error.equals(sentError)) return;
+            sentError = error;
+            // The next valid result is sent in full
+            Arrays.fill(sent, UNSENT);
+            ResultJson.writeError(error, JSON);
+        } else {
+            sentError = null;
+            if (!writeChanges()) return;
+        }
+        push(new String(JSON.array(), 0, JSON.size(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses FORM and calculates into RESULT; returns the validation message when that fails
+     */
+    private static String calculate() {
+        FormParser.Status status = PARSER.parse(FORM.array(), 0, FORM.size());
+        if (status != FormParser.Status.OK) {
+            return status.message();
+        }
+        InputError invalid = CalorieEngine.validate(PARSER.getHeight(), PARSER.getWeight(), PARSER.getAge(),
+            PARSER.getDays(), PARSER.getHours());
+        if (invalid != null) {
+            return invalid.message();
+        }
+        rules = Rules.current();
+        CalorieEngine.calculate(rules, PARSER.getHeight(), PARSER.getWeight(), PARSER.getAge(), PARSER.getGender(),
+            PARSER.getActivityLevel(), PARSER.getDays(), PARSER.getHours(), PARSER.getGoal(), RESULT);
+        CALCULATIONS.increment();
+
+        FIGURES[0] = RESULT.getBmr();
+        FIGURES[1] = RESULT.getMaintenanceCalories();
+        FIGURES[2] = RESULT.getTargetCalories();
+        // Compared as it is displayed, to one decimal place
+        FIGURES[BMI] = (int) Math.round(RESULT.getBmi() * 10.0);
+        FIGURES[BMI_CATEGORY] = RESULT.getBmiCategory().ordinal();
+        FIGURES[5] = RESULT.getProteinGrams();
+        FIGURES[6] = RESULT.getCarbGrams();
+        FIGURES[7] = RESULT.getFatGrams();
+        FIGURES[WORKOUT_PLAN] = RESULT.getWorkoutPlan().ordinal();
+        return null;
+    }
+
+    /**
+     * Writes the fields of FIGURES that differ from the last push into JSON, recording them as
+     * sent; false when nothing changed
+     */
+    private boolean writeChanges() {
+        for (int i = 0; i < OUTPUTS.length; i++) {
+            if (FIGURES[i] == sent[i]) continue;
+            sent[i] = FIGURES[i];
+            JSON.writeByte(JSON.size() == 0 ? '{' : ',');
+            JSON.writeByte('"');
+            JSON.writeAscii(OUTPUTS[i]);
+            JSON.writeAscii("\":");
+            switch (i) {
+                case BMI:
+                    JSON.writeDecimal1(RESULT.getBmi());
+                    break;
+                case BMI_CATEGORY:
+                    JSON.writeJsonString(rules.bmiLabel(FIGURES[i]));
+                    break;
+                case WORKOUT_PLAN:
+                    JSON.writeJsonString(rules.workoutName(FIGURES[i]));
+                    break;
+                default:
+                    JSON.writeInt(FIGURES[i]);
+                    break;
+            }
+        }
+        if (JSON.size() == 0) {
+            return false;
+        }
+        JSON.writeByte('}');
+        return true;
+    }
+
+    private void push(String text) {
+        sending = true;
+        try {
+            session.getAsyncRemote().sendText(text, this);
+            PUSHES.increment();
+        } catch (IllegalStateException e) {
+            // Closed between the isOpen() check and the send
+            sending = false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.MealPlan;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of meal plans for /meal-plan, keyed by target bucket
+ *
+ * Targets are rounded to BUCKET_GRAMS per macronutrient before solving, whether or not the cache
+ * is on, so every profile in a bucket gets the same plan and common targets are solved once.
+ * Direct-mapped like ProjectionCache: a new bucket replaces whatever occupied its slot, and
+ * lookups never lock.
+ */
+public class MealPlanCache {
+
+    /** Granularity of the targets a plan is solved for */
+    public static final int BUCKET_GRAMS = 5;
+
+    /** Returned by {@link #key} when the target cannot be cached */
+    public static final long UNCACHEABLE = -1L;
+
+    private static final class Entry {
+        final long key;
+        final MealPlan plan;
+
+        Entry(long key, MealPlan plan) {
+            this.key = key;
+            this.plan = plan;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of buckets, rounded up to a power of two
+     */
+    public MealPlanCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Grams rounded to the nearest bucket
+     */
+    public static int bucket(int grams) {
+        return (grams + BUCKET_GRAMS / 2) / BUCKET_GRAMS * BUCKET_GRAMS;
+    }
+
+    /**
+     * Packs bucketed targets into a key, 12 bits each, or UNCACHEABLE if one is out of range
+     */
+    public static long key(int protein, int carbs, int fat) {
+        int p = protein / BUCKET_GRAMS, c = carbs / BUCKET_GRAMS, f = fat / BUCKET_GRAMS;
+        if ((p | c | f) < 0 || p >= 4096 || c >= 4096 || f >= 4096) {
+            return UNCACHEABLE;
+        }
+        return ((long) p << 24) | ((long) c << 12) | f;
+    }
+
+    /**
+     * The cached plan for a key, or null
+     */
+    public MealPlan get(long key) {
+        Entry entry = slots.get(slot(key));
+        if (entry != null && entry.key == key) {
+            hits.increment();
+            return entry.plan;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(long key, MealPlan plan) {
+        Entry previous = slots.getAndSet(slot(key), new Entry(key, plan));
+        if (previous != null && previous.key != key) {
+            evictions.increment();
+        }
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    public int capacity() { return slots.length(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+}
@@ -0,0 +1,173 @@
+package com.maintenance.calculator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide request metrics, exported in the Prometheus text format
+ *
+ * Recording is lock-free and allocation-free: request counts are LongAdders indexed by handler
+ * and status code, and latencies go into LatencyHistograms per pipeline stage and per handler.
+ * Only a scrape allocates.
+ */
+public final class Metrics {
+
+    /**
+     * Stages of the /calculate pipeline
+     */
+    public enum Stage {
+        PARSE, COMPUTE, RENDER, WRITE;
+
+        final String label = name().toLowerCase();
+    }
+
+    /**
+     * Request handlers that are counted separately
+     */
+    public enum Handler {
+        STATIC, CALCULATE, BATCH, PROJECTION, MEAL_PLAN, HISTORY, METRICS, ADMIN;
+
+        final String label = name().toLowerCase();
+    }
+
+    // Status codes with their own counter; anything else is counted as "other"
+    private static final int[] STATUS_CODES = {200, 204, 304, 400, 404, 405, 413, 429, 500, 503};
+    private static final int OTHER_STATUS = STATUS_CODES.length;
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final LatencyHistogram[] handlerLatency = new LatencyHistogram[Handler.values().length];
+    private final LongAdder[][] requests = new LongAdder[Handler.values().length][STATUS_CODES.length + 1];
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final String type;
+        final LongSupplier value;
+
+        Gauge(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    Metrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new LatencyHistogram();
+        for (int i = 0; i < handlerLatency.length; i++) handlerLatency[i] = new LatencyHistogram();
+        for (LongAdder[] row : requests) {
+            for (int i = 0; i < row.length; i++) row[i] = new LongAdder();
+        }
+    }
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records the time spent in a stage since startNanos and returns the current System.nanoTime()
+     */
+    public long stage(Stage stage, long startNanos) {
+        long now = stages[stage.ordinal()].recordSince(startNanos);
+        RequestTrace.stage(stage, now - startNanos);
+        return now;
+    }
+
+    /**
+     * Counts a finished request and records its total latency
+     */
+    public void request(Handler handler, int status, long elapsedNanos) {
+        requests[handler.ordinal()][statusSlot(status)].increment();
+        handlerLatency[handler.ordinal()].record(elapsedNanos);
+    }
+
+    private static int statusSlot(int status) {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i] == status) return i;
+        }
+        return OTHER_STATUS;
+    }
+
+    /**
+     * Exposes a value that is read at scrape time, e.g. a queue depth
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, "gauge", value));
+    }
+
+    /**
+     * Exposes a monotonically increasing value that is read at scrape time, e.g. cache hits
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, "counter", value));
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format (version 0.0.4)
+     */
+    public void writePrometheus(StringBuilder out) {
+        out.append("# HELP calculator_requests_total Requests served, by handler and status code\n");
+        out.append("# TYPE calculator_requests_total counter\n");
+        for (Handler handler : Handler.values()) {
+            LongAdder[] row = requests[handler.ordinal()];
+            for (int i = 0; i < row.length; i++) {
+                long count = row[i].sum();
+                if (count == 0) continue;
+                out.append("calculator_requests_total{handler=\"").append(handler.label)
+                   .append("\",code=\"").append(i == OTHER_STATUS ? "other" : Integer.toString(STATUS_CODES[i]))
+                   .append("\"} ").append(count).append('\n');
+            }
+        }
+
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        out.append("# HELP calculator_request_duration_seconds Total request latency, by handler\n");
+        out.append("# TYPE calculator_request_duration_seconds histogram\n");
+        for (Handler handler : Handler.values()) {
+            writeHistogram(out, "calculator_request_duration_seconds", "handler", handler.label,
+                handlerLatency[handler.ordinal()], counts);
+        }
+
+        out.append("# HELP calculator_stage_duration_seconds Latency of each /calculate pipeline stage\n");
+        out.append("# TYPE calculator_stage_duration_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            writeHistogram(out, "calculator_stage_duration_seconds", "stage", stage.label,
+                stages[stage.ordinal()], counts);
+        }
+
+        for (Gauge gauge : gauges) {
+            out.append("# HELP ").append(gauge.name).append(' ').append(gauge.help).append('\n');
+            out.append("# TYPE ").append(gauge.name).append(' ').append(gauge.type).append('\n');
+            out.append(gauge.name).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+    }
+
+    /**
+     * Exports a histogram with buckets at each power of two from about 1 microsecond to about 69 seconds
+     */
+    private static void writeHistogram(StringBuilder out, String name, String labelName, String labelValue,
+                                       LatencyHistogram histogram, long[] counts) {
+        long sumNanos = histogram.snapshot(counts);
+        long cumulative = 0;
+        int bucket = 0;
+        for (int magnitude = 10; magnitude <= 36; magnitude++) {
+            long bound = 1L << magnitude;
+            while (bucket < counts.length && LatencyHistogram.bucketUpperBound(bucket) <= bound) {
+                cumulative += counts[bucket++];
+            }
+            out.append(name).append("_bucket{").append(labelName).append("=\"").append(labelValue)
+               .append("\",le=\"").append(bound / 1e9).append("\"} ").append(cumulative).append('\n');
+        }
+        while (bucket < counts.length) cumulative += counts[bucket++];
+        out.append(name).append("_bucket{").append(labelName).append("=\"").append(labelValue)
+           .append("\",le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum{").append(labelName).append("=\"").append(labelValue)
+           .append("\"} ").append(sumNanos / 1e9).append('\n');
+        out.append(name).append("_count{").append(labelName).append("=\"").append(labelValue)
+           .append("\"} ").append(cumulative).append('\n');
+    }
+}
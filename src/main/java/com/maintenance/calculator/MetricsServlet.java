@@ -0,0 +1,31 @@
+package com.maintenance.calculator;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prometheus scrape endpoint for the servlet deployment
+ * Serves the same registry as the embedded server's /metrics context.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        StringBuilder text = new StringBuilder(16384);
+        Metrics.global().writePrometheus(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,249 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the /calculate pipeline: one event type per stage, the whole
+ * request, and template loads
+ *
+ * Nothing is recorded unless a recording enables the calculator.* events, e.g. one started with
+ * --jfr (see FlightRecording) or -XX:StartFlightRecording:settings=calculator.jfc. Call sites go
+ * through the begin methods, which return null while their event is disabled, so an event is
+ * only allocated while it is being recorded. Without JFR the probe is the uninstrumented
+ * Event.isEnabled(), which returns false, and the JIT removes the branch.
+ */
+final class PipelineEvents {
+
+    static final String JDK = "jdk", NIO = "nio", SERVLET = "servlet";
+
+    // Outcomes of the parse and compute stages; rejections use the FormParser.Status or InputError name
+    static final String OK = "OK", CACHED = "CACHED", ERROR = "ERROR";
+
+    private static final String CATEGORY = "Calculator";
+
+    @Name("calculator.Parse")
+    @Label("Parse")
+    @Category({CATEGORY, "Pipeline"})
+    @Description("Decoding the /calculate form")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("Front End")
+        String frontend;
+
+        @Label("Outcome")
+        @Description("OK, or the FormParser.Status that rejected the form")
+        String outcome;
+    }
+
+    @Name("calculator.Compute")
+    @Label("Compute")
+    @Category({CATEGORY, "Pipeline"})
+    @Description("Validation, result cache lookup and CalorieEngine.calculate (BMR, calories, macros, workout plan)")
+    @StackTrace(false)
+    static final class Compute extends Event {
+        @Label("Height")
+        double height;
+        @Label("Weight")
+        double weight;
+        @Label("Age")
+        int age;
+        @Label("Gender")
+        String gender;
+        @Label("Activity Level")
+        double activityLevel;
+        @Label("Days")
+        int days;
+        @Label("Hours")
+        double hours;
+        @Label("Goal")
+        String goal;
+
+        @Label("Outcome")
+        @Description("OK, CACHED (answered by the result cache), ERROR, or the InputError that rejected the profile")
+        String outcome;
+        @Label("BMR")
+        int bmr;
+        @Label("Target Calories")
+        int targetCalories;
+        @Label("Workout Plan")
+        String workoutPlan;
+    }
+
+    @Name("calculator.Render")
+    @Label("Render")
+    @Category({CATEGORY, "Pipeline"})
+    @Description("Producing the response body")
+    @StackTrace(false)
+    static final class Render extends Event {
+        @Label("Renderer")
+        @Description("template, jsp or json")
+        String renderer;
+        @Label("Template Version")
+        int templateVersion;
+        @Label("Body Size")
+        @Description("-1 when the renderer streams the page itself")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("calculator.Write")
+    @Label("Write")
+    @Category({CATEGORY, "Pipeline"})
+    @Description("Sending the response to the client")
+    @StackTrace(false)
+    static final class Write extends Event {
+        @Label("Front End")
+        String frontend;
+        @Label("Status")
+        int status;
+        @Label("Body Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("calculator.Request")
+    @Label("Calculate Request")
+    @Category(CATEGORY)
+    @Description("A whole /calculate request, from the first byte of the form to the response")
+    @StackTrace(false)
+    static final class Request extends Event {
+        @Label("Front End")
+        String frontend;
+        @Label("Status")
+        int status;
+    }
+
+    @Name("calculator.TemplateLoad")
+    @Label("Template Load")
+    @Category(CATEGORY)
+    @Description("Reading and compiling the result page template")
+    static final class TemplateLoad extends Event {
+        @Label("Path")
+        String path;
+        @Label("Fallback")
+        @Description("The built-in template was used because the file was missing or invalid")
+        boolean fallback;
+    }
+
+    // Probes: only their isEnabled() is ever called
+    private static final Parse PARSE = new Parse();
+    private static final Compute COMPUTE = new Compute();
+    private static final Render RENDER = new Render();
+    private static final Write WRITE = new Write();
+    private static final Request REQUEST = new Request();
+    private static final TemplateLoad TEMPLATE_LOAD = new TemplateLoad();
+
+    private PipelineEvents() {
+    }
+
+    static Parse beginParse() {
+        if (!PARSE.isEnabled()) return null;
+        Parse event = new Parse();
+        event.begin();
+        return event;
+    }
+
+    static void endParse(Parse event, String frontend, String outcome) {
+        if (event == null) return;
+        event.frontend = frontend;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    static Compute beginCompute() {
+        if (!COMPUTE.isEnabled()) return null;
+        Compute event = new Compute();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a compute event that stopped before a result: the form was invalid or the engine failed
+     */
+    static void endCompute(Compute event, String outcome) {
+        if (event == null) return;
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    static void endCompute(Compute event, String outcome, CalculationResult result) {
+        if (event == null) return;
+        event.height = result.getHeight();
+        event.weight = result.getWeight();
+        event.age = result.getAge();
+        event.gender = result.getGender().key();
+        event.activityLevel = result.getActivityLevel();
+        event.days = result.getDaysAvailable();
+        event.hours = result.getHoursPerDay();
+        event.goal = result.getGoal().key();
+        event.bmr = result.getBmr();
+        event.targetCalories = result.getTargetCalories();
+        event.workoutPlan = result.getWorkoutPlan().displayName();
+        endCompute(event, outcome);
+    }
+
+    static Render beginRender() {
+        if (!RENDER.isEnabled()) return null;
+        Render event = new Render();
+        event.begin();
+        return event;
+    }
+
+    static void endRender(Render event, String renderer, int templateVersion, long bytes) {
+        if (event == null) return;
+        event.renderer = renderer;
+        event.templateVersion = templateVersion;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    static Write beginWrite() {
+        if (!WRITE.isEnabled()) return null;
+        Write event = new Write();
+        event.begin();
+        return event;
+    }
+
+    static void endWrite(Write event, String frontend, int status, long bytes) {
+        if (event == null) return;
+        event.frontend = frontend;
+        event.status = status;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    static Request beginRequest() {
+        if (!REQUEST.isEnabled()) return null;
+        Request event = new Request();
+        event.begin();
+        return event;
+    }
+
+    static void endRequest(Request event, String frontend, int status) {
+        if (event == null) return;
+        event.frontend = frontend;
+        event.status = status;
+        event.commit();
+    }
+
+    static TemplateLoad beginTemplateLoad() {
+        if (!TEMPLATE_LOAD.isEnabled()) return null;
+        TemplateLoad event = new TemplateLoad();
+        event.begin();
+        return event;
+    }
+
+    static void endTemplateLoad(TemplateLoad event, String path, boolean fallback) {
+        if (event == null) return;
+        event.path = path;
+        event.fallback = fallback;
+        event.commit();
+    }
+}
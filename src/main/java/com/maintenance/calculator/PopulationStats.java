@@ -0,0 +1,352 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.BmiCategory;
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.Goal;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running statistics of the profiles the calculator has served: distributions of BMI, BMR,
+ * maintenance and target calories, and counts by BMI category and by goal (GET /stats)
+ *
+ * Recording takes no lock. Each platform thread appends results to a batch of its own, bracketed
+ * by two writes of a sequence number that tell a reader whether a record is in progress. A full
+ * batch is handed off on a queue and the thread carries on with an empty one; whichever thread
+ * gets the merge lock without waiting folds the queued batches into one TDigest per measure. A
+ * snapshot swaps each thread's partial batch for an empty one, waits at most for the record in
+ * progress to end, and merges everything under the merge lock, so reading /stats never stops a
+ * request and sees every result recorded before it. Virtual threads, which come and go with their
+ * requests, borrow one of a fixed set of shared batches instead, so memory stays bounded however
+ * many threads record. Counts cover every /calculate result served, including those answered
+ * from the result cache, since the process started.
+ */
+public final class PopulationStats {
+
+    /** Reported quantiles */
+    static final double[] QUANTILES = {0.01, 0.05, 0.10, 0.25, 0.50, 0.75, 0.90, 0.95, 0.99};
+
+    private static final int BMI = 0, BMR = 1, MAINTENANCE = 2, TARGET = 3;
+    private static final String[] MEASURES = {"bmi", "bmr", "maintenanceCalories", "targetCalories"};
+
+    private static final BmiCategory[] CATEGORIES = BmiCategory.values();
+    private static final Goal[] GOALS = Goal.values();
+
+    // Results per batch: a thread hands off, and someone merges, once per this many records
+    private static final int BATCH_ROWS = 256;
+
+    // After the constants the recorders are built from
+    private static final PopulationStats GLOBAL = new PopulationStats();
+
+    /**
+     * Results not yet merged, one row of measures each
+     */
+    private static final class Batch {
+        final double[] values = new double[BATCH_ROWS * MEASURES.length];
+        final long[] categories = new long[CATEGORIES.length];
+        final long[] goals = new long[GOALS.length];
+        int rows;
+
+        void reset() {
+            rows = 0;
+            Arrays.fill(categories, 0);
+            Arrays.fill(goals, 0);
+        }
+    }
+
+    /**
+     * Where one thread at a time records: its batch and the sequence a reader waits on
+     * The sequence is odd while a record is in progress.
+     */
+    private static final class Recorder {
+        private static final AtomicReferenceFieldUpdater<Recorder, Batch> ACTIVE =
+            AtomicReferenceFieldUpdater.newUpdater(Recorder.class, Batch.class, "active");
+        private static final AtomicIntegerFieldUpdater<Recorder> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Recorder.class, "claimed");
+
+        // The platform thread recording here, or null for a recorder shared by virtual threads
+        final WeakReference<Thread> owner;
+        volatile Batch active = new Batch();
+        // Only the thread recording here changes it, so the increments need not be atomic
+        volatile long sequence;
+        volatile int claimed;
+
+        Recorder(Thread owner) {
+            this.owner = owner == null ? null : new WeakReference<>(owner);
+        }
+
+        boolean retired() {
+            if (owner == null) {
+                return false;
+            }
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    private final ThreadLocal<Recorder> recorders = ThreadLocal.withInitial(this::register);
+    private final Recorder[] shared;
+    private final int sharedMask;
+    private final Queue<Recorder> registered = new ConcurrentLinkedQueue<>();
+    private final Queue<Batch> full = new ConcurrentLinkedQueue<>();
+    private final Queue<Batch> free = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock merging = new ReentrantLock();
+    // Guarded by merging
+    private final TDigest[] digests = newDigests();
+    private final long[] categories = new long[CATEGORIES.length];
+    private final long[] goals = new long[GOALS.length];
+
+    public PopulationStats() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+        this.shared = new Recorder[count];
+        for (int i = 0; i < count; i++) {
+            shared[i] = new Recorder(null);
+            registered.add(shared[i]);
+        }
+        this.sharedMask = count - 1;
+    }
+
+    /**
+     * Process-wide statistics fed by every front end
+     */
+    public static PopulationStats global() {
+        return GLOBAL;
+    }
+
+    private static TDigest[] newDigests() {
+        TDigest[] digests = new TDigest[MEASURES.length];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = new TDigest();
+        }
+        return digests;
+    }
+
+    private Recorder register() {
+        // A new thread may be replacing ended ones, so keep the list of recorders to live threads
+        if (merging.tryLock()) {
+            try {
+                retire();
+            } finally {
+                merging.unlock();
+            }
+        }
+        Recorder recorder = new Recorder(Thread.currentThread());
+        registered.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Adds a calculated result; allocation-free once the batches in circulation suffice
+     */
+    public void record(CalculationResult result) {
+        Thread thread = Thread.currentThread();
+        boolean virtual = ScratchPool.isVirtual(thread);
+        Recorder recorder = virtual ? claim(thread) : recorders.get();
+        recorder.sequence++;
+        try {
+            Batch batch = recorder.active;
+            if (batch.rows == BATCH_ROWS) {
+                batch = handOff(recorder, batch);
+            }
+            int row = batch.rows * MEASURES.length;
+            batch.values[row + BMI] = result.getBmi();
+            batch.values[row + BMR] = result.getBmr();
+            batch.values[row + MAINTENANCE] = result.getMaintenanceCalories();
+            batch.values[row + TARGET] = result.getTargetCalories();
+            batch.categories[result.getBmiCategory().ordinal()]++;
+            batch.goals[result.getGoalOrdinal()]++;
+            batch.rows++;
+        } finally {
+            recorder.sequence++;
+            if (virtual) {
+                recorder.claimed = 0;
+            }
+        }
+    }
+
+    // A shared recorder no other thread is using, starting from the thread's own
+    private Recorder claim(Thread thread) {
+        int home = (int) thread.getId();
+        while (true) {
+            for (int i = 0; i <= sharedMask; i++) {
+                Recorder recorder = shared[(home + i) & sharedMask];
+                if (recorder.claimed == 0 && Recorder.CLAIMED.compareAndSet(recorder, 0, 1)) {
+                    return recorder;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    // Queues a full batch and returns the one to record into; called by the recorder's writer
+    private Batch handOff(Recorder recorder, Batch batch) {
+        Batch empty = emptyBatch();
+        if (Recorder.ACTIVE.compareAndSet(recorder, batch, empty)) {
+            full.add(batch);
+        } else {
+            // A snapshot took the batch meanwhile and left an empty one
+            free.add(empty);
+        }
+        if (merging.tryLock()) {
+            try {
+                mergeFull();
+            } finally {
+                merging.unlock();
+            }
+        }
+        return recorder.active;
+    }
+
+    private Batch emptyBatch() {
+        Batch batch = free.poll();
+        return batch != null ? batch : new Batch();
+    }
+
+    // Folds the queued batches into the digests; called with merging held
+    private void mergeFull() {
+        Batch batch;
+        while ((batch = full.poll()) != null) {
+            merge(batch);
+        }
+    }
+
+    private void merge(Batch batch) {
+        double[] values = batch.values;
+        for (int row = 0; row < batch.rows * MEASURES.length; row += MEASURES.length) {
+            for (int m = 0; m < MEASURES.length; m++) {
+                digests[m].add(values[row + m]);
+            }
+        }
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            categories[c] += batch.categories[c];
+        }
+        for (int g = 0; g < GOALS.length; g++) {
+            goals[g] += batch.goals[g];
+        }
+        batch.reset();
+        free.add(batch);
+    }
+
+    // Merges the last batches of threads that have ended and forgets their recorders; called with merging held
+    private void retire() {
+        for (Iterator<Recorder> it = registered.iterator(); it.hasNext(); ) {
+            Recorder recorder = it.next();
+            if (recorder.retired()) {
+                merge(recorder.active);
+                it.remove();
+            }
+        }
+    }
+
+    // Takes the recorder's partial batch once no record is writing to it; called with merging held
+    private Batch drain(Recorder recorder) {
+        Batch batch = Recorder.ACTIVE.getAndSet(recorder, emptyBatch());
+        long sequence = recorder.sequence;
+        if ((sequence & 1) != 0) {
+            while (recorder.sequence == sequence) {
+                Thread.onSpinWait();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Merged view of everything recorded so far; later records do not change it
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        merging.lock();
+        try {
+            retire();
+            for (Recorder recorder : registered) {
+                merge(drain(recorder));
+            }
+            mergeFull();
+            for (int m = 0; m < MEASURES.length; m++) {
+                snapshot.digests[m].merge(digests[m]);
+            }
+            System.arraycopy(categories, 0, snapshot.categories, 0, categories.length);
+            System.arraycopy(goals, 0, snapshot.goals, 0, goals.length);
+        } finally {
+            merging.unlock();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Merged statistics at one moment
+     */
+    public static final class Snapshot {
+        private final TDigest[] digests = newDigests();
+        private final long[] categories = new long[CATEGORIES.length];
+        private final long[] goals = new long[GOALS.length];
+
+        public long count() { return digests[BMI].count(); }
+        public TDigest bmi() { return digests[BMI]; }
+        public TDigest bmr() { return digests[BMR]; }
+        public TDigest maintenanceCalories() { return digests[MAINTENANCE]; }
+        public TDigest targetCalories() { return digests[TARGET]; }
+        public long count(BmiCategory category) { return categories[category.ordinal()]; }
+        public long count(Goal goal) { return goals[goal.ordinal()]; }
+
+        /**
+         * Writes the snapshot as one JSON object; values of an empty snapshot are null
+         */
+        public void writeJson(ResponseBuffer out) {
+            out.writeAscii("{\"count\":");
+            out.writeAscii(Long.toString(count()));
+            for (int m = 0; m < MEASURES.length; m++) {
+                TDigest digest = digests[m];
+                out.writeAscii(",\"");
+                out.writeAscii(MEASURES[m]);
+                out.writeAscii("\":{\"mean\":");
+                writeValue(out, digest.mean());
+                out.writeAscii(",\"min\":");
+                writeValue(out, digest.min());
+                for (double q : QUANTILES) {
+                    out.writeAscii(",\"p");
+                    out.writeInt((int) Math.round(q * 100));
+                    out.writeAscii("\":");
+                    writeValue(out, digest.quantile(q));
+                }
+                out.writeAscii(",\"max\":");
+                writeValue(out, digest.max());
+                out.writeByte('}');
+            }
+            out.writeAscii(",\"bmiCategories\":{");
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                if (c > 0) out.writeByte(',');
+                out.writeByte('"');
+                out.writeAscii(CATEGORIES[c].name().toLowerCase(Locale.ROOT));
+                out.writeAscii("\":");
+                out.writeAscii(Long.toString(categories[c]));
+            }
+            out.writeAscii("},\"goals\":{");
+            for (int g = 0; g < GOALS.length; g++) {
+                if (g > 0) out.writeByte(',');
+                out.writeByte('"');
+                out.writeAscii(GOALS[g].key());
+                out.writeAscii("\":");
+                out.writeAscii(Long.toString(goals[g]));
+            }
+            out.writeAscii("}}\n");
+        }
+
+        private static void writeValue(ResponseBuffer out, double value) {
+            if (Double.isNaN(value)) {
+                out.writeAscii("null");
+            } else {
+                out.writeDecimal1(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.Projection;
+import com.maintenance.calculator.engine.Rules;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of weight projections for /projection, keyed by the starting profile
+ *
+ * The horizon is not part of the key: a cached Projection keeps every week it has simulated, so
+ * a request for more weeks than before only simulates the extra ones. Profiles are packed into a
+ * long like ResultCache keys (inputs off the grid are not cached) and the table is direct-mapped:
+ * a new profile replaces whatever occupied its slot. Lookups never lock. A projection made under
+ * other Rules (the goal's calorie offset sets its intake) counts as a miss and is replaced.
+ */
+public class ProjectionCache {
+
+    /** Returned by {@link #key} when the inputs cannot be cached */
+    public static final long UNCACHEABLE = -1L;
+
+    private static final class Entry {
+        final long key;
+        final int rulesVersion;
+        final Projection projection;
+
+        Entry(long key, int rulesVersion, Projection projection) {
+            this.key = key;
+            this.rulesVersion = rulesVersion;
+            this.projection = projection;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of profiles, rounded up to a power of two
+     */
+    public ProjectionCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Packs validated inputs into a key, or returns UNCACHEABLE if a value is off the grid
+     * Layout (48 bits): height tenths-1000 (11) | weight tenths-300 (12) | age (7) | gender (1)
+     * | goal (2) | activity level index (3) | target weight tenths-299, 0 for none (12)
+     */
+    public static long key(double height, double weight, int age, int gender, double activityLevel, int goal,
+                           double targetWeight) {
+        long heightTenths = Math.round(height * 10);
+        long weightTenths = Math.round(weight * 10);
+        long targetTenths = Math.round(targetWeight * 10);
+        if (heightTenths / 10.0 != height || weightTenths / 10.0 != weight || targetTenths / 10.0 != targetWeight) {
+            return UNCACHEABLE;
+        }
+        int activity = ResultCache.activityIndex(activityLevel);
+        if (activity < 0) {
+            return UNCACHEABLE;
+        }
+        long key = heightTenths - 1000;
+        key = (key << 12) | (weightTenths - 300);
+        key = (key << 7) | age;
+        key = (key << 1) | gender;
+        key = (key << 2) | goal;
+        key = (key << 3) | activity;
+        key = (key << 12) | (targetTenths == 0 ? 0 : targetTenths - 299);
+        return key;
+    }
+
+    /**
+     * The cached projection for a validated profile, creating (and caching) it on a miss
+     */
+    public Projection get(double height, double weight, int age, int gender, double activityLevel, int goal,
+                          double targetWeight) {
+        long key = key(height, weight, age, gender, activityLevel, goal, targetWeight);
+        if (key == UNCACHEABLE) {
+            uncacheable.increment();
+            return new Projection(height, weight, age, gender, activityLevel, goal, targetWeight);
+        }
+        int rulesVersion = Rules.current().version();
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h >>> 32) & mask;
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.key == key && entry.rulesVersion == rulesVersion) {
+            hits.increment();
+            return entry.projection;
+        }
+        misses.increment();
+        Projection projection = new Projection(height, weight, age, gender, activityLevel, goal, targetWeight);
+        slots.set(slot, new Entry(key, rulesVersion, projection));
+        if (entry != null && entry.key != key) {
+            evictions.increment();
+        }
+        return projection;
+    }
+
+    public int capacity() { return slots.length(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getUncacheable() { return uncacheable.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+}
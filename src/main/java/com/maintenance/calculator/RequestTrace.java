@@ -0,0 +1,114 @@
+package com.maintenance.calculator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Per-thread details of the request in progress, for the access log
+ *
+ * Metrics.stage() adds each stage's time here and ResponseWriter the response size, but only
+ * while an AccessLog is recording; otherwise both cost one volatile read. A platform thread keeps
+ * one trace in a ThreadLocal and reuses it for every request it serves. A virtual thread serves one
+ * request and ends, so a ThreadLocal would build a trace (and the thread's ThreadLocal map) per
+ * request; virtual threads instead claim one of a fixed table of traces, probing from the thread
+ * id, and give it back in end(). begin() clears the trace, and readers copy what they need before
+ * end().
+ */
+final class RequestTrace {
+
+    // Traces shared by virtual threads, and slots tried by one claim or lookup
+    private static final int SLOTS = 1024;
+    private static final int PROBES = 16;
+
+    private static final AtomicReferenceFieldUpdater<RequestTrace, Thread> OWNER =
+        AtomicReferenceFieldUpdater.newUpdater(RequestTrace.class, Thread.class, "owner");
+
+    private static volatile boolean enabled;
+
+    private static final ThreadLocal<RequestTrace> CURRENT = ThreadLocal.withInitial(RequestTrace::new);
+    private static final RequestTrace[] SHARED = new RequestTrace[SLOTS];
+
+    static {
+        for (int i = 0; i < SLOTS; i++) {
+            SHARED[i] = new RequestTrace();
+        }
+    }
+
+    final long[] stageNanos = new long[Metrics.Stage.values().length];
+    /** Response body bytes, or -1 if not known (a streamed response, or none sent yet) */
+    long responseBytes;
+    // The virtual thread using a shared trace, or null while it is free
+    private volatile Thread owner;
+
+    private RequestTrace() {
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Clears and returns this thread's trace at the start of a request; pass it to end() afterwards
+     * A virtual thread that finds every probed trace busy gets a detached one, which records nothing.
+     */
+    static RequestTrace begin() {
+        Thread thread = Thread.currentThread();
+        RequestTrace trace = ScratchPool.isVirtual(thread) ? claim(thread) : CURRENT.get();
+        Arrays.fill(trace.stageNanos, 0);
+        trace.responseBytes = -1;
+        return trace;
+    }
+
+    /**
+     * Gives back a trace taken by begin() on this thread
+     */
+    static void end(RequestTrace trace) {
+        if (trace.owner != null) {
+            trace.owner = null;
+        }
+    }
+
+    static void stage(Metrics.Stage stage, long nanos) {
+        if (enabled) {
+            RequestTrace trace = current();
+            if (trace != null) {
+                trace.stageNanos[stage.ordinal()] += nanos;
+            }
+        }
+    }
+
+    static void responseBytes(long bytes) {
+        if (enabled) {
+            RequestTrace trace = current();
+            if (trace != null) {
+                trace.responseBytes = bytes;
+            }
+        }
+    }
+
+    private static RequestTrace claim(Thread thread) {
+        int start = (int) thread.getId();
+        for (int i = 0; i < PROBES; i++) {
+            RequestTrace trace = SHARED[(start + i) & (SLOTS - 1)];
+            if (trace.owner == null && OWNER.compareAndSet(trace, null, thread)) {
+                return trace;
+            }
+        }
+        return new RequestTrace();
+    }
+
+    private static RequestTrace current() {
+        Thread thread = Thread.currentThread();
+        if (!ScratchPool.isVirtual(thread)) {
+            return CURRENT.get();
+        }
+        int start = (int) thread.getId();
+        for (int i = 0; i < PROBES; i++) {
+            RequestTrace trace = SHARED[(start + i) & (SLOTS - 1)];
+            if (trace.owner == thread) {
+                return trace;
+            }
+        }
+        return null;
+    }
+}
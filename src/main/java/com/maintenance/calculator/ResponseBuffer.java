@@ -0,0 +1,187 @@
+package com.maintenance.calculator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that response bodies are rendered into
+ * Numbers and text are encoded straight to UTF-8 bytes without intermediate Strings,
+ * and an instance is meant to be reset and reused by the same thread
+ */
+public class ResponseBuffer {
+
+    private static final byte[] MIN_INT = "-2147483648".getBytes();
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private byte[] bytes;
+    private int size;
+
+    public ResponseBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return bytes.length;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    public void write(byte[] data, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(data, offset, bytes, size, length);
+        size += length;
+    }
+
+    public void writeByte(int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+    }
+
+    public void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            write(MIN_INT);
+            return;
+        }
+        ensureCapacity(11);
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) digits++;
+        int pos = size + digits;
+        do {
+            bytes[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        size += digits;
+    }
+
+    /**
+     * Writes a value rounded to one decimal place, like String.format("%.1f") in the US locale
+     */
+    public void writeDecimal1(double value) {
+        long tenths = Math.round(value * 10.0);
+        if (tenths < 0) {
+            writeByte('-');
+            tenths = -tenths;
+        }
+        long whole = tenths / 10;
+        if (whole > Integer.MAX_VALUE) {
+            write(Long.toString(whole).getBytes());
+        } else {
+            writeInt((int) whole);
+        }
+        writeByte('.');
+        writeByte('0' + (int) (tenths % 10));
+    }
+
+    /**
+     * Writes text as UTF-8, optionally escaping the HTML special characters
+     */
+    public void writeText(CharSequence text, boolean escapeHtml) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (escapeHtml) {
+                switch (c) {
+                    case '<': writeAscii("&lt;"); continue;
+                    case '>': writeAscii("&gt;"); continue;
+                    case '&': writeAscii("&amp;"); continue;
+                    case '"': writeAscii("&quot;"); continue;
+                    case '\'': writeAscii("&#39;"); continue;
+                    default: break;
+                }
+            }
+            i = writeUtf8(text, i, length);
+        }
+    }
+
+    /**
+     * Writes text as a quoted JSON string in UTF-8, escaping quotes, backslashes and control characters
+     */
+    public void writeJsonString(CharSequence text) {
+        int length = text.length();
+        ensureCapacity(length + 2);
+        bytes[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                writeByte(HEX_DIGITS[c >> 4]);
+                writeByte(HEX_DIGITS[c & 0xF]);
+            } else {
+                i = writeUtf8(text, i, length);
+            }
+        }
+        writeByte('"');
+    }
+
+    // Encodes the character at i, or the surrogate pair starting there; returns the index of the last char used
+    private int writeUtf8(CharSequence text, int i, int length) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            writeByte(c);
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, text.charAt(++i));
+            ensureCapacity(4);
+            bytes[size++] = (byte) (0xF0 | (cp >> 18));
+            bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            writeByte('?');
+        } else {
+            ensureCapacity(3);
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    public void writeAscii(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+}
@@ -0,0 +1,93 @@
+package com.maintenance.calculator;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sends complete response bodies through an HttpExchange with an exact Content-Length
+ *
+ * Text is encoded to UTF-8 once, into a pooled ResponseBuffer (see ScratchPool), and the buffer's
+ * own array is handed to the exchange, so a response costs no String-to-byte[] copy and the declared
+ * length is always the byte count. Bodies whose size is not known up front (the NDJSON batch)
+ * stream with chunked transfer instead.
+ */
+final class ResponseWriter {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    /** A pooled buffer that grew past this is dropped after use rather than kept */
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+    private static final ScratchPool<ResponseBuffer> BUFFERS =
+        new ScratchPool<>(() -> new ResponseBuffer(INITIAL_CAPACITY));
+
+    private ResponseWriter() {
+    }
+
+    /**
+     * An empty pooled response buffer; send(exchange, status, contentType, buffer) gives it back
+     */
+    static ResponseBuffer buffer() {
+        ResponseBuffer buffer = BUFFERS.acquire();
+        if (buffer.capacity() > MAX_POOLED_CAPACITY) {
+            BUFFERS.discard(buffer);
+            buffer = BUFFERS.acquire();
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Sends a buffer from buffer() and returns it to the pool
+     */
+    static void send(HttpExchange exchange, int status, String contentType, ResponseBuffer body) throws IOException {
+        try {
+            send(exchange, status, contentType, body.array(), body.size());
+        } finally {
+            if (body.capacity() > MAX_POOLED_CAPACITY) {
+                BUFFERS.discard(body);
+            } else {
+                BUFFERS.release(body);
+            }
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        send(exchange, status, contentType, body, body.length);
+    }
+
+    /**
+     * Sends the first length bytes of body; a HEAD request gets the headers only
+     */
+    static void send(HttpExchange exchange, int status, String contentType, byte[] body, int length) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (length == 0 || "HEAD".equals(exchange.getRequestMethod())) {
+            sendEmpty(exchange, status);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        RequestTrace.responseBytes(length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body, 0, length);
+        }
+    }
+
+    /**
+     * Encodes text as UTF-8 into this thread's buffer and sends it
+     */
+    static void sendText(HttpExchange exchange, int status, String contentType, CharSequence text) throws IOException {
+        ResponseBuffer body = buffer();
+        body.writeText(text, false);
+        send(exchange, status, contentType, body);
+    }
+
+    /**
+     * Sends a status with no body, e.g. 304 or 405
+     */
+    static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        RequestTrace.responseBytes(0);
+        exchange.close();
+    }
+}
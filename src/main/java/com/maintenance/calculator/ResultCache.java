@@ -0,0 +1,177 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded memoization cache for /calculate, holding the computed figures and the rendered page
+ *
+ * The validated input domain is small, so a profile is packed into a single long key
+ * (see {@link #key}); inputs that do not fall exactly on the quantization grid are simply
+ * not cached. Entries live in a set-associative table: a key maps to one set of WAYS slots
+ * and a CLOCK (second chance) sweep over that set picks the victim, so memory is fixed at
+ * capacity entries and lookups never lock.
+ */
+public class ResultCache {
+
+    /** Returned by {@link #key} when the inputs cannot be cached */
+    public static final long UNCACHEABLE = -1L;
+
+    private static final int WAYS = 4;
+    private static final double[] ACTIVITY_LEVELS = {1.2, 1.375, 1.55, 1.725, 1.9};
+
+    /**
+     * Immutable cache entry; the page bytes must never be modified after insertion
+     */
+    public static final class Entry {
+        final long key;
+        final int templateVersion;
+        final int rulesVersion;
+        final CalculationResult result;
+        final byte[] page;
+
+        Entry(long key, int templateVersion, int rulesVersion, CalculationResult result, byte[] page) {
+            this.key = key;
+            this.templateVersion = templateVersion;
+            this.rulesVersion = rulesVersion;
+            this.result = result;
+            this.page = page;
+        }
+
+        public CalculationResult getResult() { return result; }
+        public byte[] getPage() { return page; }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    // CLOCK reference bits; racy updates only cost a little hit-rate precision
+    private final byte[] referenced;
+    private final int setMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries, rounded up to a power of two (at least WAYS)
+     */
+    public ResultCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS) - 1) << 1;
+        if (sets <= 0) sets = 1;
+        this.slots = new AtomicReferenceArray<>(sets * WAYS);
+        this.referenced = new byte[sets * WAYS];
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * Packs validated inputs into a key, or returns UNCACHEABLE if a value is off the grid
+     * Layout (43 bits): height tenths-1000 (11) | weight tenths-300 (12) | age (7) | days (3)
+     * | hours halves (4) | gender (1) | goal (2) | activity level index (3)
+     */
+    public static long key(double height, double weight, int age, int gender, double activityLevel,
+                           int days, double hours, int goal) {
+        long heightTenths = Math.round(height * 10);
+        long weightTenths = Math.round(weight * 10);
+        long hourHalves = Math.round(hours * 2);
+        if (heightTenths / 10.0 != height || weightTenths / 10.0 != weight || hourHalves / 2.0 != hours) {
+            return UNCACHEABLE;
+        }
+        int activity = activityIndex(activityLevel);
+        if (activity < 0) {
+            return UNCACHEABLE;
+        }
+        long key = heightTenths - 1000;
+        key = (key << 12) | (weightTenths - 300);
+        key = (key << 7) | age;
+        key = (key << 3) | days;
+        key = (key << 4) | hourHalves;
+        key = (key << 1) | gender;
+        key = (key << 2) | goal;
+        key = (key << 3) | activity;
+        return key;
+    }
+
+    static int activityIndex(double activityLevel) {
+        for (int i = 0; i < ACTIVITY_LEVELS.length; i++) {
+            if (ACTIVITY_LEVELS[i] == activityLevel) return i;
+        }
+        return -1;
+    }
+
+    private int setStart(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return ((int) (h >>> 32) & setMask) * WAYS;
+    }
+
+    /**
+     * Looks up a key computed under the given rules version and rendered with the given template
+     * version; counts a hit or a miss
+     */
+    public Entry get(long key, int templateVersion, int rulesVersion) {
+        if (key == UNCACHEABLE) {
+            uncacheable.increment();
+            return null;
+        }
+        int start = setStart(key);
+        for (int i = start; i < start + WAYS; i++) {
+            Entry entry = slots.get(i);
+            if (entry != null && entry.key == key && entry.templateVersion == templateVersion
+                    && entry.rulesVersion == rulesVersion) {
+                if (referenced[i] == 0) referenced[i] = 1;
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a copy of the result and page bytes, evicting with a CLOCK sweep over the key's set
+     */
+    public void put(long key, int templateVersion, int rulesVersion, CalculationResult result, byte[] page,
+                    int pageLength) {
+        if (key == UNCACHEABLE) {
+            return;
+        }
+        CalculationResult copy = new CalculationResult();
+        copy.copyFrom(result);
+        byte[] bytes = new byte[pageLength];
+        System.arraycopy(page, 0, bytes, 0, pageLength);
+        Entry entry = new Entry(key, templateVersion, rulesVersion, copy, bytes);
+
+        int start = setStart(key);
+        // Replace an existing or empty slot first
+        for (int i = start; i < start + WAYS; i++) {
+            Entry current = slots.get(i);
+            if (current == null || current.key == key) {
+                if (slots.compareAndSet(i, current, entry)) {
+                    referenced[i] = 0;
+                    return;
+                }
+            }
+        }
+        // Second chance: clear reference bits until an unreferenced slot is found
+        for (int sweep = 0; sweep < 2 * WAYS; sweep++) {
+            int i = start + (int) ((key + sweep) & (WAYS - 1));
+            if (referenced[i] != 0) {
+                referenced[i] = 0;
+                continue;
+            }
+            Entry current = slots.get(i);
+            if (slots.compareAndSet(i, current, entry)) {
+                evictions.increment();
+                return;
+            }
+        }
+        // Lost every race; dropping the insert is fine for a cache
+    }
+
+    public int capacity() { return slots.length(); }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getUncacheable() { return uncacheable.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+}
@@ -0,0 +1,55 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.Rules;
+
+/**
+ * Compact JSON encoding of a CalculationResult, shared by the batch endpoint and the servlet
+ * Writes straight into a ResponseBuffer. Labels and plan names come from the rules file, so they
+ * are escaped and encoded as UTF-8 like any other text.
+ */
+final class ResultJson {
+
+    private ResultJson() {
+    }
+
+    /**
+     * Writes the result fields, without the surrounding braces, so callers can add their own
+     * The labels are taken from rules, which should be the snapshot the result was calculated under.
+     */
+    static void writeFields(CalculationResult result, Rules rules, ResponseBuffer r) {
+        r.writeAscii("\"bmr\":");
+        r.writeInt(result.getBmr());
+        r.writeAscii(",\"maintenanceCalories\":");
+        r.writeInt(result.getMaintenanceCalories());
+        r.writeAscii(",\"targetCalories\":");
+        r.writeInt(result.getTargetCalories());
+        r.writeAscii(",\"bmi\":");
+        r.writeDecimal1(result.getBmi());
+        r.writeAscii(",\"bmiCategory\":");
+        r.writeJsonString(rules.bmiLabel(result.getBmiCategory().ordinal()));
+        r.writeAscii(",\"proteinGrams\":");
+        r.writeInt(result.getProteinGrams());
+        r.writeAscii(",\"carbGrams\":");
+        r.writeInt(result.getCarbGrams());
+        r.writeAscii(",\"fatGrams\":");
+        r.writeInt(result.getFatGrams());
+        r.writeAscii(",\"workoutPlan\":");
+        r.writeJsonString(rules.workoutName(result.getWorkoutPlan().ordinal()));
+    }
+
+    static void write(CalculationResult result, Rules rules, ResponseBuffer r) {
+        r.writeByte('{');
+        writeFields(result, rules, r);
+        r.writeByte('}');
+    }
+
+    /**
+     * {"error":"message"}
+     */
+    static void writeError(String message, ResponseBuffer r) {
+        r.writeAscii("{\"error\":");
+        r.writeJsonString(message);
+        r.writeByte('}');
+    }
+}
@@ -0,0 +1,208 @@
+package com.maintenance.calculator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precompiled results page template
+ * The template is parsed once into static UTF-8 byte segments and typed slots, so rendering
+ * is a straight copy of bytes plus number/text encoding into a ResponseBuffer.
+ * Slots are written as {{name}}; the template file is recompiled once a change on disk has
+ * settled for SETTLE_MILLIS, so an editor saving in several writes never has a half-written
+ * template compiled.
+ */
+public class ResultTemplate {
+
+    private static final long SETTLE_MILLIS = 200;
+
+    /**
+     * Values that can be placed into the template
+     */
+    public enum Slot {
+        GOAL_COLOR("goalColor", Kind.TEXT),
+        GOAL_ICON("goalIcon", Kind.TEXT),
+        GOAL_TEXT("goalText", Kind.TEXT),
+        BMR("bmr", Kind.INT),
+        MAINTENANCE_CALORIES("maintenanceCalories", Kind.INT),
+        TARGET_CALORIES("targetCalories", Kind.INT),
+        LOSE_CALORIES("loseCalories", Kind.INT),
+        GAIN_CALORIES("gainCalories", Kind.INT),
+        ACTIVITY_CALORIES("activityCalories", Kind.INT),
+        BMI("bmi", Kind.DECIMAL),
+        BMI_CATEGORY("bmiCategory", Kind.TEXT),
+        WORKOUT_NAME("workoutName", Kind.TEXT),
+        WORKOUT_DESCRIPTION("workoutDescription", Kind.TEXT),
+        PROTEIN_GRAMS("proteinGrams", Kind.INT),
+        CARB_GRAMS("carbGrams", Kind.INT),
+        FAT_GRAMS("fatGrams", Kind.INT),
+        GENDER("gender", Kind.TEXT),
+        HEIGHT("height", Kind.DECIMAL),
+        WEIGHT("weight", Kind.DECIMAL),
+        AGE("age", Kind.INT);
+
+        enum Kind { INT, DECIMAL, TEXT }
+
+        private static final Slot[] VALUES = values();
+
+        final String placeholder;
+        final Kind kind;
+
+        Slot(String placeholder, Kind kind) {
+            this.placeholder = placeholder;
+            this.kind = kind;
+        }
+
+        static Slot forPlaceholder(String name) {
+            for (Slot slot : VALUES) {
+                if (slot.placeholder.equals(name)) return slot;
+            }
+            throw new IllegalArgumentException("Unknown template slot: {{" + name + "}}");
+        }
+    }
+
+    /**
+     * Mutable holder for one page's values; intended to be reused by the rendering thread
+     */
+    public static class Values {
+        private final int[] ints = new int[Slot.VALUES.length];
+        private final double[] decimals = new double[Slot.VALUES.length];
+        private final String[] texts = new String[Slot.VALUES.length];
+
+        public Values set(Slot slot, int value) {
+            ints[slot.ordinal()] = value;
+            return this;
+        }
+
+        public Values set(Slot slot, double value) {
+            decimals[slot.ordinal()] = value;
+            return this;
+        }
+
+        public Values set(Slot slot, String value) {
+            texts[slot.ordinal()] = value;
+            return this;
+        }
+    }
+
+    /**
+     * Template in compiled form: segments[i] precedes slots[i], and the last segment closes the page
+     */
+    private static class Compiled {
+        final byte[][] segments;
+        final Slot[] slots;
+
+        Compiled(byte[][] segments, Slot[] slots) {
+            this.segments = segments;
+            this.slots = slots;
+        }
+    }
+
+    private final Path file;
+    private final String fallback;
+    private volatile Compiled compiled;
+    private volatile int version;
+
+    private ResultTemplate(Path file, String fallback) {
+        this.file = file;
+        this.fallback = fallback;
+        this.compiled = loadOrFallback();
+    }
+
+    /**
+     * Loads the template from file (using the fallback text if it is missing or invalid)
+     * and recompiles it whenever the file changes and then stays unchanged for SETTLE_MILLIS
+     */
+    public static ResultTemplate watching(Path file, String fallback) throws IOException {
+        ResultTemplate template = new ResultTemplate(file, fallback);
+        FileWatcher.shared().watch(file, SETTLE_MILLIS, template::reload);
+        return template;
+    }
+
+    /**
+     * Compiles a fixed template that never reloads
+     */
+    public static ResultTemplate of(String text) {
+        return new ResultTemplate(null, text);
+    }
+
+    private void reload() {
+        compiled = loadOrFallback();
+        version++;
+    }
+
+    /**
+     * Incremented on every reload, so rendered output can be tagged with the template it came from
+     */
+    public int version() {
+        return version;
+    }
+
+    private Compiled loadOrFallback() {
+        PipelineEvents.TemplateLoad event = PipelineEvents.beginTemplateLoad();
+        if (file != null) {
+            try {
+                Compiled loaded = compile(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                PipelineEvents.endTemplateLoad(event, file.toString(), false);
+                return loaded;
+            } catch (NoSuchFileException e) {
+                // Expected when no custom template is deployed
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Could not load " + file + ", using built-in template: " + e.getMessage());
+            }
+        }
+        Compiled builtIn = compile(fallback);
+        PipelineEvents.endTemplateLoad(event, file != null ? file.toString() : null, true);
+        return builtIn;
+    }
+
+    static Compiled compile(String text) {
+        List<byte[]> segments = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int open = text.indexOf("{{", start);
+            if (open < 0) break;
+            int close = text.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated template slot at offset " + open);
+            }
+            segments.add(text.substring(start, open).getBytes(StandardCharsets.UTF_8));
+            slots.add(Slot.forPlaceholder(text.substring(open + 2, close).trim()));
+            start = close + 2;
+        }
+        segments.add(text.substring(start).getBytes(StandardCharsets.UTF_8));
+        return new Compiled(segments.toArray(new byte[0][]), slots.toArray(new Slot[0]));
+    }
+
+    /**
+     * Renders the page into the buffer as UTF-8; text slots are HTML-escaped
+     */
+    public void render(Values values, ResponseBuffer out) {
+        Compiled template = compiled;
+        Slot[] slots = template.slots;
+        byte[][] segments = template.segments;
+        for (int i = 0; i < slots.length; i++) {
+            out.write(segments[i]);
+            Slot slot = slots[i];
+            int index = slot.ordinal();
+            switch (slot.kind) {
+                case INT:
+                    out.writeInt(values.ints[index]);
+                    break;
+                case DECIMAL:
+                    out.writeDecimal1(values.decimals[index]);
+                    break;
+                default:
+                    String text = values.texts[index];
+                    if (text != null) out.writeText(text, true);
+                    break;
+            }
+        }
+        out.write(segments[slots.length]);
+    }
+}
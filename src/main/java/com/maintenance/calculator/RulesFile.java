@@ -0,0 +1,71 @@
+package com.maintenance.calculator;
+
+import com.maintenance.calculator.engine.Rules;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the engine's Rules in step with a rules file (--rules=rules.properties)
+ *
+ * The file is read at startup, where an invalid file stops the server, and again on the
+ * file-watcher thread once it has stopped changing for SETTLE_MILLIS: an editor saving in place
+ * first truncates the file, and an empty rules file is valid (every rule at its default). A
+ * reload parses and validates a whole new snapshot before installing it, so requests never wait
+ * for it and never see half-applied rules; a file that fails validation is reported and the rules
+ * in force stay. Deleting the file restores the bundled rules.
+ */
+final class RulesFile {
+
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path file;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private RulesFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Installs the rules from --rules and watches the file, or returns null when the option is not set
+     */
+    static RulesFile watch(ServerOptions options) throws IOException {
+        String name = options.get("rules", null);
+        if (name == null) {
+            return null;
+        }
+        RulesFile rules = new RulesFile(Paths.get(name));
+        try {
+            Rules.install(Rules.load(rules.file));
+        } catch (NoSuchFileException e) {
+            System.out.println("Rules file " + rules.file + " not found, using the bundled rules until it appears");
+        }
+        FileWatcher.shared().watch(rules.file, SETTLE_MILLIS, rules::reload);
+        return rules;
+    }
+
+    // On the file-watcher thread
+    private void reload() {
+        try {
+            Rules loaded = Rules.load(file);
+            Rules.install(loaded);
+            reloads.increment();
+            System.out.println("Rules reloaded from " + file + " (version " + loaded.version() + ")");
+        } catch (NoSuchFileException e) {
+            Rules.install(Rules.bundled());
+            reloads.increment();
+            System.out.println("Rules file " + file + " removed, using the bundled rules");
+        } catch (IOException e) {
+            failures.increment();
+            System.err.println("Could not reload rules, keeping version " + Rules.current().version() + ": "
+                + e.getMessage());
+        }
+    }
+
+    long getReloads() { return reloads.sum(); }
+    long getFailures() { return failures.sum(); }
+}
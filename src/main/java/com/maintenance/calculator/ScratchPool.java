@@ -0,0 +1,105 @@
+package com.maintenance.calculator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Reusable per-request working objects: form parsers, result holders, response buffers
+ *
+ * A platform thread keeps one object of its own in a ThreadLocal, as the handlers always did, and
+ * release() does nothing. A virtual thread serves one request and ends, so a ThreadLocal would
+ * build a fresh object for every request and drop it; virtual threads borrow from a fixed table of
+ * slots instead, claiming and returning an object with one CAS each. An object released into a
+ * full table, or never released, is left to the collector, so the table bounds what is kept.
+ */
+final class ScratchPool<T> {
+
+    // Slots tried by one acquire or release before giving up
+    private static final int PROBES = 8;
+
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private final Supplier<? extends T> factory;
+    private final ThreadLocal<T> perThread;
+    private final AtomicReferenceArray<T> shared;
+    private final int mask;
+
+    ScratchPool(Supplier<? extends T> factory) {
+        this.factory = factory;
+        this.perThread = ThreadLocal.withInitial(factory);
+        int slots = Integer.highestOneBit(Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+        this.shared = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+    }
+
+    /**
+     * An object for this request; pass it to release() once nothing refers to it any more
+     */
+    T acquire() {
+        Thread thread = Thread.currentThread();
+        if (!isVirtual(thread)) {
+            return perThread.get();
+        }
+        int start = (int) thread.getId();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            T item = shared.get(slot);
+            if (item != null && shared.compareAndSet(slot, item, null)) {
+                return item;
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Returns an object taken by acquire() on this thread
+     */
+    void release(T item) {
+        Thread thread = Thread.currentThread();
+        if (item == null || !isVirtual(thread)) {
+            return;
+        }
+        int start = (int) thread.getId();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (shared.get(slot) == null && shared.compareAndSet(slot, null, item)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops an object taken by acquire() on this thread, e.g. a buffer that grew too large to keep;
+     * the next acquire() builds a fresh one
+     */
+    void discard(T item) {
+        if (!isVirtual(Thread.currentThread()) && perThread.get() == item) {
+            perThread.remove();
+        }
+    }
+
+    /**
+     * Thread.isVirtual() on Java 21+; always false on older runtimes, which have no virtual threads
+     */
+    static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.maintenance.calculator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Startup options for WebServer
+ * Reads --name=value command-line arguments, falling back to -Dcalculator.name system properties
+ */
+public class ServerOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private ServerOptions() {
+    }
+
+    /**
+     * Parses command-line arguments of the form --name=value (a bare --name means "true")
+     */
+    public static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.values.put(arg.substring(2), "true");
+            } else {
+                options.values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        if (value == null) {
+            value = System.getProperty("calculator." + name);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be an integer: " + value);
+        }
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = get(name, null);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
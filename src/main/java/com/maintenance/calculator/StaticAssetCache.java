@@ -0,0 +1,301 @@
+package com.maintenance.calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory cache for the static files served by WebServer
+ * Each file is read once, compressed variants are built up front, and an entry is only
+ * reloaded once the shared FileWatcher reports that the file has changed and then stayed
+ * unchanged for SETTLE_MILLIS; until then the previous version is served. A read during which the
+ * file's size or modification time moved is not cached. Files past the per-file limit, or that
+ * would take the whole cache past its budget, are served straight from disk.
+ */
+public class StaticAssetCache {
+
+    /** Files larger than this are served straight from disk instead of being cached */
+    private static final long MAX_CACHED_SIZE = 8 * 1024 * 1024;
+    /** Most bytes, counting the compressed variants, kept for all files together */
+    private static final long MAX_TOTAL_SIZE = 64 * 1024 * 1024;
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path root;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private final Set<String> watched = ConcurrentHashMap.newKeySet();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final FileWatcher watcher;
+
+    public StaticAssetCache(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.watcher = FileWatcher.shared();
+    }
+
+    /**
+     * Returns the cached asset for a request path relative to the root, or null if the file does
+     * not exist, is outside the root, is too large to cache or was changing while it was read
+     * Entries are keyed on the normalized path, so "./a.css" and "x/../a.css" share the entry for
+     * "a.css" instead of each loading and charging a copy of the file.
+     */
+    public Asset get(String relativePath) throws IOException {
+        // Paths as the pages link them are already normalized and skip resolving
+        Asset asset = assets.get(relativePath);
+        if (asset != null) {
+            return asset;
+        }
+
+        Path file = resolve(relativePath);
+        if (file == null || !Files.isRegularFile(file) || Files.size(file) > MAX_CACHED_SIZE) {
+            return null;
+        }
+        String key = root.relativize(file).toString();
+        if (!key.equals(relativePath)) {
+            asset = assets.get(key);
+            if (asset != null) {
+                return asset;
+            }
+        }
+
+        // Watch the file before reading it, so a change racing with the load is not missed
+        if (watched.add(key)) {
+            watcher.watch(file, SETTLE_MILLIS, () -> changed(key, file));
+        }
+        Asset loaded = Asset.load(file, getContentType(key));
+        if (loaded == null) {
+            return null;
+        }
+        return assets.compute(key, (path, existing) -> existing != null ? existing : admit(null, loaded));
+    }
+
+    // Inside assets.compute: the entry to keep in place of previous, charging the budget for it
+    private Asset admit(Asset previous, Asset next) {
+        long freed = previous != null ? previous.size() : 0;
+        long needed = next != null ? next.size() : 0;
+        long current;
+        do {
+            current = cachedBytes.get();
+            if (current - freed + needed > MAX_TOTAL_SIZE) {
+                // Over budget: the file is served from disk instead
+                next = null;
+                needed = 0;
+            }
+        } while (!cachedBytes.compareAndSet(current, current - freed + needed));
+        return next;
+    }
+
+    /** Bytes held by cached files and their compressed variants */
+    public long cachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * Resolves a request path against the root, rejecting anything that escapes it
+     */
+    public Path resolve(String relativePath) {
+        Path file = root.resolve(relativePath).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    // On the file-watcher thread once the file has settled; also after lost events
+    private void changed(String relativePath, Path file) {
+        if (assets.containsKey(relativePath)) {
+            reload(relativePath, file);
+        }
+    }
+
+    private void reload(String relativePath, Path file) {
+        Asset loaded = null;
+        try {
+            if (Files.isRegularFile(file) && Files.size(file) <= MAX_CACHED_SIZE) {
+                loaded = Asset.load(file, getContentType(relativePath));
+            }
+        } catch (IOException e) {
+            // Gone or unreadable; the next request looks at the disk again
+        }
+        // A null load (deleted, too large, or still changing) drops the entry
+        Asset next = loaded;
+        assets.compute(relativePath, (path, previous) -> admit(previous, next));
+    }
+
+    public static String getContentType(String path) {
+        if (path.endsWith(".html") || path.endsWith(".htm")) return "text/html";
+        if (path.endsWith(".css")) return "text/css";
+        if (path.endsWith(".js")) return "application/javascript";
+        if (path.endsWith(".json")) return "application/json";
+        if (path.endsWith(".png")) return "image/png";
+        if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
+        if (path.endsWith(".gif")) return "image/gif";
+        if (path.endsWith(".svg")) return "image/svg+xml";
+        return "text/plain";
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/")
+            || contentType.equals("application/javascript")
+            || contentType.equals("application/json")
+            || contentType.equals("image/svg+xml");
+    }
+
+    /**
+     * Immutable cached file with its precompressed variants and validators
+     */
+    public static class Asset {
+        private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+        private final String contentType;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] deflate;
+        private final String etag;
+        private final long lastModifiedSeconds;
+        private final String lastModified;
+
+        private Asset(String contentType, byte[] identity, byte[] gzip, byte[] deflate,
+                      String etag, long lastModifiedSeconds) {
+            this.contentType = contentType;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.deflate = deflate;
+            this.etag = etag;
+            this.lastModifiedSeconds = lastModifiedSeconds;
+            this.lastModified = HTTP_DATE.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochSecond(lastModifiedSeconds), ZoneOffset.UTC));
+        }
+
+        /**
+         * Reads and compresses a file, or returns null if it changed while it was being read
+         */
+        static Asset load(Path file, String contentType) throws IOException {
+            BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+            byte[] identity = Files.readAllBytes(file);
+            BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+            if (identity.length != after.size() || before.size() != after.size()
+                    || !before.lastModifiedTime().equals(after.lastModifiedTime())) {
+                return null;
+            }
+            long lastModifiedSeconds = after.lastModifiedTime().toMillis() / 1000;
+
+            CRC32 crc = new CRC32();
+            crc.update(identity);
+            String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(identity.length) + "\"";
+
+            byte[] gzip = null;
+            byte[] deflate = null;
+            if (isCompressible(contentType)) {
+                gzip = smallerOrNull(gzip(identity), identity);
+                deflate = smallerOrNull(deflate(identity), identity);
+            }
+            return new Asset(contentType, identity, gzip, deflate, etag, lastModifiedSeconds);
+        }
+
+        private static byte[] gzip(byte[] data) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+                gzip.write(data);
+            }
+            return out.toByteArray();
+        }
+
+        private static byte[] deflate(byte[] data) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+                deflate.write(data);
+            } finally {
+                deflater.end();
+            }
+            return out.toByteArray();
+        }
+
+        private static byte[] smallerOrNull(byte[] compressed, byte[] original) {
+            return compressed.length < original.length ? compressed : null;
+        }
+
+        /** Memory held: the file and its compressed variants */
+        long size() {
+            return identity.length + (gzip != null ? gzip.length : 0) + (deflate != null ? deflate.length : 0);
+        }
+
+        public String getContentType() { return contentType; }
+        public byte[] getIdentity() { return identity; }
+        public byte[] getGzip() { return gzip; }
+        public byte[] getDeflate() { return deflate; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public boolean hasCompressedVariants() { return gzip != null || deflate != null; }
+
+        /**
+         * True if the conditional request headers show the client already has this version
+         * If-None-Match takes precedence over If-Modified-Since, as required by RFC 9110
+         */
+        public boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                for (String candidate : ifNoneMatch.split(",")) {
+                    String tag = candidate.trim();
+                    if (tag.startsWith("W/")) tag = tag.substring(2);
+                    if (tag.equals("*") || tag.equals(etag)) return true;
+                }
+                return false;
+            }
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince.trim(), HTTP_DATE).toEpochSecond();
+                    return lastModifiedSeconds <= since;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Picks the best precompressed variant the client accepts: "gzip", "deflate" or null for identity
+     */
+    public static String selectEncoding(Asset asset, String acceptEncoding) {
+        if (acceptEncoding == null || !asset.hasCompressedVariants()) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String part : acceptEncoding.split(",")) {
+            String token = part.trim();
+            int semicolon = token.indexOf(';');
+            String coding = (semicolon >= 0 ? token.substring(0, semicolon) : token).trim();
+            if (semicolon >= 0 && isZeroQuality(token.substring(semicolon + 1))) {
+                continue;
+            }
+            if (coding.equalsIgnoreCase("gzip")) gzip = true;
+            else if (coding.equalsIgnoreCase("deflate")) deflate = true;
+            else if (coding.equals("*")) gzip = deflate = true;
+        }
+        if (gzip && asset.getGzip() != null) return "gzip";
+        if (deflate && asset.getDeflate() != null) return "deflate";
+        return null;
+    }
+
+    private static boolean isZeroQuality(String parameters) {
+        String params = parameters.trim();
+        if (!params.startsWith("q=")) return false;
+        try {
+            return Double.parseDouble(params.substring(2).trim()) == 0.0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.maintenance.calculator;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Population statistics for the servlet deployment
+ * Serves the same JSON as the embedded server's /stats context.
+ */
+@WebServlet("/stats")
+public class StatsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        ResponseBuffer body = new ResponseBuffer(4096);
+        PopulationStats.global().snapshot().writeJson(body);
+
+        response.setContentType("application/json");
+        response.setContentLength(body.size());
+        response.getOutputStream().write(body.array(), 0, body.size());
+    }
+}
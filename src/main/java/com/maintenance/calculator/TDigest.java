@@ -0,0 +1,217 @@
+package com.maintenance.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Merging t-digest (Dunning and Ertl) in fixed memory: quantile estimates of a stream of values
+ *
+ * Values collect in a buffer; when it fills they are sorted and merged into a sorted list of
+ * centroids (mean, weight). A centroid may only grow while it spans at most one unit of the k1
+ * scale function, k(q) = compression / 2π · asin(2q - 1), so centroids near the tails stay small
+ * and the extreme quantiles stay accurate while the middle is summarised coarsely. That bounds the
+ * centroids by compression + 2, so every array is sized once in the constructor and add() never
+ * allocates. Two digests merge the same way, which is what makes per-thread digests cheap to
+ * combine. Count, sum, min and max are exact. Not thread-safe.
+ */
+public final class TDigest {
+
+    /** Default compression: about 100 centroids, quantiles typically within 0.1% of rank in the tails */
+    public static final double COMPRESSION = 100;
+
+    private static final int BUFFER = 512;
+
+    private final double compression;
+    private final double[] means;
+    private final double[] weights;
+    private int centroids;
+    private final double[] buffer = new double[BUFFER];
+    private int buffered;
+    // Merge input: the centroids plus the buffer, or the centroids of two digests
+    private final double[] mergeMeans;
+    private final double[] mergeWeights;
+
+    private double totalWeight;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        if (!(compression >= 10)) {
+            throw new IllegalArgumentException("compression must be at least 10: " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) + 4;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.mergeMeans = new double[capacity + Math.max(capacity, BUFFER)];
+        this.mergeWeights = new double[mergeMeans.length];
+    }
+
+    /**
+     * Adds a value; NaN is ignored
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (buffered == BUFFER) {
+            flush();
+        }
+        buffer[buffered++] = value;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds everything other has seen; other is flushed but otherwise unchanged
+     */
+    public void merge(TDigest other) {
+        other.flush();
+        if (other.centroids == 0) {
+            return;
+        }
+        flush();
+        int n = 0, i = 0, j = 0;
+        while (i < centroids || j < other.centroids) {
+            if (j == other.centroids || (i < centroids && means[i] <= other.means[j])) {
+                mergeMeans[n] = means[i];
+                mergeWeights[n++] = weights[i++];
+            } else {
+                mergeMeans[n] = other.means[j];
+                mergeWeights[n++] = other.weights[j++];
+            }
+        }
+        totalWeight += other.totalWeight;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress(n);
+    }
+
+    /**
+     * Clears the digest, keeping its arrays
+     */
+    public void reset() {
+        centroids = 0;
+        buffered = 0;
+        totalWeight = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    // Merges the sorted buffer into the centroids
+    private void flush() {
+        if (buffered == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, buffered);
+        int n = 0, i = 0, j = 0;
+        while (i < centroids || j < buffered) {
+            if (j == buffered || (i < centroids && means[i] <= buffer[j])) {
+                mergeMeans[n] = means[i];
+                mergeWeights[n++] = weights[i++];
+            } else {
+                mergeMeans[n] = buffer[j++];
+                mergeWeights[n++] = 1;
+            }
+        }
+        totalWeight += buffered;
+        buffered = 0;
+        compress(n);
+    }
+
+    // Rebuilds the centroids from n sorted entries of the merge arrays
+    private void compress(int n) {
+        double total = totalWeight;
+        int out = 0;
+        double mean = mergeMeans[0];
+        double weight = mergeWeights[0];
+        double before = 0;
+        // Most weight the open centroid may reach: one unit of k past its left edge
+        double limit = total * qOf(kOf(0) + 1);
+        for (int i = 1; i < n; i++) {
+            double w = mergeWeights[i];
+            double grown = weight + w;
+            if (before + grown <= limit) {
+                mean += (mergeMeans[i] - mean) * w / grown;
+                weight = grown;
+            } else {
+                means[out] = mean;
+                weights[out++] = weight;
+                before += weight;
+                limit = total * qOf(kOf(before / total) + 1);
+                mean = mergeMeans[i];
+                weight = w;
+            }
+        }
+        means[out] = mean;
+        weights[out++] = weight;
+        centroids = out;
+    }
+
+    // The k1 scale function and its inverse
+    private double kOf(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private double qOf(double k) {
+        return k >= compression / 4 ? 1 : (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    /**
+     * Estimated value at quantile q (0 to 1), or NaN when nothing has been added
+     */
+    public double quantile(double q) {
+        flush();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        if (centroids == 1) {
+            return min + (max - min) * q;
+        }
+        // Each centroid's mass is centred on its mean; interpolate between neighbouring means,
+        // and between min or max and the outermost means
+        double target = q * totalWeight;
+        double first = weights[0] / 2;
+        if (target < first) {
+            return clamp(min + (means[0] - min) * target / first);
+        }
+        double cumulative = first;
+        for (int i = 0; i < centroids - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (target < cumulative + step) {
+                return clamp(means[i] + (means[i + 1] - means[i]) * (target - cumulative) / step);
+            }
+            cumulative += step;
+        }
+        double last = weights[centroids - 1] / 2;
+        return clamp(means[centroids - 1] + (max - means[centroids - 1]) * Math.min(1, (target - cumulative) / last));
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public long count() { return count; }
+    public double min() { return count == 0 ? Double.NaN : min; }
+    public double max() { return count == 0 ? Double.NaN : max; }
+    public double mean() { return count == 0 ? Double.NaN : sum / count; }
+
+    /** Centroids after merging any buffered values */
+    public int centroids() {
+        flush();
+        return centroids;
+    }
+}
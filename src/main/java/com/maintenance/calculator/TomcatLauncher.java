@@ -0,0 +1,189 @@
+package com.maintenance.calculator;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http11.Http11Nio2Protocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.jasper.servlet.JasperInitializer;
+import org.apache.jasper.servlet.JspServlet;
+import org.apache.tomcat.websocket.server.WsSci;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the servlet front end (CalculatorServlet, MetricsServlet and the JSPs) in embedded Tomcat
+ *
+ * One NIO2 connector serves HTTP/1.1 and cleartext HTTP/2 (h2c, by upgrade or prior knowledge) and
+ * compresses text responses. Every JSP under the document root is compiled while the server
+ * starts, so the first request after a deploy does not wait for Jasper. The same context serves
+ * the /live WebSocket (LiveCalculationEndpoint).
+ * Options (--name=value, or -Dcalculator.name): port, threads, min-spare-threads, accept-count,
+ * max-connections, compression-min-size, docbase and jsp-development; jfr starts a flight
+ * recording (see FlightRecording) and rules loads and watches a rules file (see RulesFile).
+ */
+public class TomcatLauncher {
+    private static final int PORT = 5000;
+
+    static final String COMPRESSIBLE_TYPES = "text/html,text/css,text/javascript,application/javascript,"
+        + "application/json,text/plain,image/svg+xml";
+
+    // Directories under the document root that never hold pages
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of("node_modules", "target", "src", "benchmarks");
+
+    public static void main(String[] args) throws IOException, LifecycleException {
+        ServerOptions options = ServerOptions.parse(args);
+        FlightRecording.start(options);
+        RulesFile.watch(options);
+        Tomcat tomcat = create(options);
+        tomcat.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                tomcat.stop();
+                tomcat.destroy();
+            } catch (LifecycleException e) {
+                System.err.println("Tomcat did not stop cleanly: " + e.getMessage());
+            }
+        }));
+
+        System.out.println("Tomcat started on port " + options.getInt("port", PORT) + " (NIO2, h2c)");
+        System.out.println("Access the application at: http://localhost:" + options.getInt("port", PORT));
+        tomcat.getServer().await();
+    }
+
+    /**
+     * Builds a Tomcat instance serving the document root (default: the working directory)
+     */
+    static Tomcat create(ServerOptions options) throws IOException {
+        Path docBase = Paths.get(options.get("docbase", "")).toAbsolutePath().normalize();
+        boolean jspDevelopment = options.getBoolean("jsp-development", false);
+
+        Tomcat tomcat = new Tomcat();
+        // Work directory for compiled JSPs and session files
+        tomcat.setBaseDir(Files.createTempDirectory("calculator-tomcat").toString());
+        tomcat.setConnector(connector(options));
+
+        Context context = tomcat.addContext("", docBase.toString());
+        // Default servlet for static files, the *.jsp servlet, welcome files and MIME types
+        Tomcat.initWebappDefaults(context);
+        context.addServletContainerInitializer(new JasperInitializer(), null);
+        // A JSP that fails to compile stops the startup instead of failing its first request
+        if (context instanceof StandardContext) {
+            ((StandardContext) context).setFailCtxIfServletStartFails(Boolean.TRUE);
+        }
+
+        Container jsp = context.findChild("jsp");
+        if (jsp instanceof Wrapper) {
+            configureJsp((Wrapper) jsp, jspDevelopment);
+        }
+
+        // Servlets added by instance skip annotation scanning, so asyncSupported is set here
+        Tomcat.addServlet(context, "calculate", new CalculatorServlet()).setAsyncSupported(true);
+        context.addServletMappingDecoded("/calculate", "calculate");
+        Tomcat.addServlet(context, "metrics", new MetricsServlet());
+        context.addServletMappingDecoded("/metrics", "metrics");
+        Tomcat.addServlet(context, "stats", new StatsServlet());
+        context.addServletMappingDecoded("/stats", "stats");
+        live(context);
+
+        for (String page : findJsps(docBase)) {
+            precompile(context, page, jspDevelopment);
+        }
+        return tomcat;
+    }
+
+    /**
+     * Registers the /live endpoint with per-connection buffers sized for its small messages
+     * Tomcat allocates a text and a binary buffer of 8 KiB for every WebSocket connection by
+     * default; at tens of thousands of connections that is most of the heap for no benefit.
+     */
+    private static void live(Context context) {
+        String size = Integer.toString(LiveCalculationEndpoint.MAX_MESSAGE_LENGTH);
+        context.addParameter("org.apache.tomcat.websocket.textBufferSize", size);
+        context.addParameter("org.apache.tomcat.websocket.binaryBufferSize", size);
+        context.addServletContainerInitializer(new WsSci(), Set.of(LiveCalculationEndpoint.class));
+    }
+
+    /**
+     * NIO2 HTTP/1.1 connector with the h2c upgrade and response compression
+     */
+    static Connector connector(ServerOptions options) {
+        Connector connector = new Connector(Http11Nio2Protocol.class.getName());
+        connector.setPort(options.getInt("port", PORT));
+        // HTTP/2 inherits the thread and compression settings below from this connector
+        connector.addUpgradeProtocol(new Http2Protocol());
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        connector.setProperty("maxThreads", Integer.toString(options.getInt("threads", 200)));
+        connector.setProperty("minSpareThreads", Integer.toString(options.getInt("min-spare-threads", Math.min(10, cores * 2))));
+        // Connections queued by the OS once maxConnections are open; beyond it clients are refused
+        connector.setProperty("acceptCount", Integer.toString(options.getInt("accept-count", 100)));
+        connector.setProperty("maxConnections", Integer.toString(options.getInt("max-connections", 8192)));
+
+        connector.setProperty("compression", "on");
+        connector.setProperty("compressionMinSize", Integer.toString(options.getInt("compression-min-size", 1024)));
+        connector.setProperty("compressibleMimeType", COMPRESSIBLE_TYPES);
+        return connector;
+    }
+
+    /**
+     * Registers a JSP as its own servlet, loaded on startup
+     * Jasper compiles a servlet's jspFile in init(), so the page is ready before the connector
+     * takes requests; the exact mapping wins over the *.jsp mapping for forwards to the page.
+     */
+    private static void precompile(Context context, String page, boolean development) {
+        Wrapper wrapper = Tomcat.addServlet(context, "jsp:" + page, JspServlet.class.getName());
+        wrapper.addInitParameter("jspFile", page);
+        configureJsp(wrapper, development);
+        wrapper.setLoadOnStartup(1);
+        context.addServletMappingDecoded(page, wrapper.getName());
+    }
+
+    /**
+     * Outside development, pages are compiled once and never checked for changes per request
+     */
+    private static void configureJsp(Wrapper wrapper, boolean development) {
+        wrapper.addInitParameter("development", Boolean.toString(development));
+        wrapper.addInitParameter("fork", "false");
+    }
+
+    /**
+     * Context-relative paths of every .jsp under the document root
+     */
+    static List<String> findJsps(Path docBase) throws IOException {
+        List<String> pages = new ArrayList<>();
+        Files.walkFileTree(docBase, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                if (!dir.equals(docBase) && (name.startsWith(".") || SKIPPED_DIRECTORIES.contains(name))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(".jsp")) {
+                    pages.add("/" + docBase.relativize(file).toString().replace('\\', '/'));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return pages;
+    }
+}
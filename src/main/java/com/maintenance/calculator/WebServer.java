@@ -0,0 +1,1159 @@
+package com.maintenance.calculator;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.maintenance.calculator.engine.CalculationResult;
+import com.maintenance.calculator.engine.CalorieEngine;
+import com.maintenance.calculator.engine.Goal;
+import com.maintenance.calculator.engine.InputError;
+import com.maintenance.calculator.engine.FoodIndex;
+import com.maintenance.calculator.engine.FoodTable;
+import com.maintenance.calculator.engine.MealPlan;
+import com.maintenance.calculator.engine.MealPlanner;
+import com.maintenance.calculator.engine.Projection;
+import com.maintenance.calculator.engine.ProjectionEngine;
+import com.maintenance.calculator.engine.Rules;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class WebServer {
+    private static final int PORT = 5000;
+    
+    public static void main(String[] args) throws IOException {
+        // Offline mode: "cohort --input=... --output=..." processes a CSV instead of serving
+        if (args.length > 0 && "cohort".equals(args[0])) {
+            CohortProcessor.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Offline mode: "jfr-summary --input=recording.jfr" prints per-stage percentiles of a recording
+        if (args.length > 0 && "jfr-summary".equals(args[0])) {
+            JfrSummary.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        ServerOptions options = ServerOptions.parse(args);
+        int port = options.getInt("port", PORT);
+        Metrics metrics = Metrics.global();
+        
+        // Optional flight recording of the pipeline events (--jfr=file.jfr)
+        FlightRecording.start(options);
+        
+        // Calculator rules from a file, reloaded when it changes (--rules=rules.properties)
+        rules(options, metrics);
+        
+        // Optional memoization of results and rendered pages (--result-cache=entries, 0 disables)
+        ResultCache resultCache = resultCache(options, metrics);
+        
+        // Optional per-user history of calculations (--history-dir=path)
+        HistoryStore history = history(options, metrics);
+        
+        // Front end: the JDK HttpServer (default) or NIO event loops (--frontend=nio, --loops=N)
+        String frontend = options.get("frontend", "jdk");
+        if ("nio".equals(frontend)) {
+            startEventLoops(options, port, resultCache, history, metrics);
+            return;
+        } else if (!"jdk".equals(frontend)) {
+            throw new IllegalArgumentException("Unknown front end: " + frontend + " (expected jdk or nio)");
+        }
+        
+        // Optional asynchronous access log (--access-log=dir)
+        AccessLog accessLog = accessLog(options, metrics);
+        
+        // TCP_NODELAY: with Nagle's algorithm on (the JDK server's default) each keep-alive response
+        // waits out the client's delayed ACK, about 40 ms; -Dsun.net.httpserver.nodelay=false restores it
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        
+        // Accept backlog (--backlog=connections); 0 uses the system default
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), options.getInt("backlog", 0));
+        
+        // Executor mode: virtual, pool (default) or single
+        InstrumentedExecutor executor = InstrumentedExecutor.create(
+            InstrumentedExecutor.Mode.fromString(options.get("executor", "pool")),
+            options.getInt("threads", 0)
+        );
+        
+        metrics.gauge("calculator_executor_queue_depth", "Tasks waiting for an executor thread", executor::getQueueDepth);
+        metrics.gauge("calculator_executor_active_tasks", "Tasks currently running", executor::getActiveTasks);
+        metrics.counter("calculator_executor_completed_tasks_total", "Tasks completed", executor::getCompletedTasks);
+        
+        // Load shedding (--admission=false disables): /calculate gets an adaptive limit, and
+        // static assets a fixed budget of their own so the landing page stays fast meanwhile
+        boolean admission = options.getBoolean("admission", true);
+        AdmissionController calculateAdmission = admission ? calculateAdmission(options, executor) : null;
+        AdmissionController staticAdmission = admission
+            ? AdmissionController.fixed("static", options.getInt("static-limit", 64)) : null;
+        
+        // Static file handler
+        HttpContext staticContext = server.createContext("/", new StaticFileHandler(staticAssets(metrics)));
+        measured(staticContext, Metrics.Handler.STATIC, accessLog);
+        admitted(staticContext, staticAdmission);
+        
+        // Calculator endpoint
+        HttpContext calculateContext = server.createContext("/calculate", new CalculatorHandler(resultCache, history));
+        measured(calculateContext, Metrics.Handler.CALCULATE, accessLog);
+        admitted(calculateContext, calculateAdmission);
+        
+        // Streaming NDJSON batch endpoint
+        measured(server.createContext("/calculate/batch", new BatchCalculationHandler()), Metrics.Handler.BATCH, accessLog);
+        
+        // Weight projections (--projection-cache=profiles, 0 disables the cache)
+        ProjectionCache projectionCache = projectionCache(options, metrics);
+        measured(server.createContext("/projection", new ProjectionHandler(projectionCache)), Metrics.Handler.PROJECTION, accessLog);
+        
+        // Meal plans (--foods=table.csv replaces the bundled table, --meal-plan-cache=buckets, 0 disables
+        // the cache, --meal-plan-budget-ms bounds each search)
+        measured(server.createContext("/meal-plan", mealPlanHandler(options, metrics)), Metrics.Handler.MEAL_PLAN, accessLog);
+        
+        // History reads and deletions
+        if (history != null) {
+            measured(server.createContext("/history", new HistoryHandler(history)), Metrics.Handler.HISTORY, accessLog);
+        }
+        
+        // Executor gauges
+        measured(server.createContext("/executor", new ExecutorStatsHandler(executor)), Metrics.Handler.ADMIN, accessLog);
+        
+        // Result cache counters
+        if (resultCache != null) {
+            measured(server.createContext("/cache", new CacheStatsHandler(resultCache)), Metrics.Handler.ADMIN, accessLog);
+        }
+        
+        // Admission gauges
+        for (AdmissionController controller : new AdmissionController[] {calculateAdmission, staticAdmission}) {
+            if (controller == null) continue;
+            String prefix = "calculator_admission_" + controller.getName();
+            metrics.gauge(prefix + "_limit", "Current concurrency limit", controller::getLimit);
+            metrics.gauge(prefix + "_in_flight", "Admitted requests in progress", controller::getInFlight);
+            metrics.gauge(prefix + "_waiting", "Requests waiting for a slot", controller::getWaiting);
+            metrics.counter(prefix + "_rejected_total", "Requests shed with 503", controller::getRejected);
+        }
+        
+        // Population statistics of the results served
+        measured(server.createContext("/stats", new StatsHandler(PopulationStats.global())), Metrics.Handler.ADMIN, accessLog);
+        
+        // Prometheus scrape endpoint
+        measured(server.createContext("/metrics", new MetricsHandler(metrics)), Metrics.Handler.METRICS, accessLog);
+        
+        server.setExecutor(executor);
+        server.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            executor.shutdown();
+        }));
+        
+        System.out.println("Server started on port " + port + " (executor: "
+            + executor.getMode().name().toLowerCase() + ")");
+        System.out.println("Access the application at: http://localhost:" + port);
+    }
+    
+    private static ResultCache resultCache(ServerOptions options, Metrics metrics) {
+        int resultCacheSize = options.getInt("result-cache", 0);
+        if (resultCacheSize <= 0) {
+            return null;
+        }
+        ResultCache resultCache = new ResultCache(resultCacheSize);
+        metrics.counter("calculator_result_cache_hits_total", "Result cache hits", resultCache::getHits);
+        metrics.counter("calculator_result_cache_misses_total", "Result cache misses", resultCache::getMisses);
+        metrics.counter("calculator_result_cache_evictions_total", "Result cache evictions", resultCache::getEvictions);
+        return resultCache;
+    }
+    
+    private static StaticAssetCache staticAssets(Metrics metrics) throws IOException {
+        StaticAssetCache assets = new StaticAssetCache(Paths.get(""));
+        metrics.gauge("calculator_static_cache_bytes", "Bytes of static files and their compressed variants held in memory",
+            assets::cachedBytes);
+        return assets;
+    }
+    
+    private static ProjectionCache projectionCache(ServerOptions options, Metrics metrics) {
+        int size = options.getInt("projection-cache", 4096);
+        if (size <= 0) {
+            return null;
+        }
+        ProjectionCache cache = new ProjectionCache(size);
+        metrics.counter("calculator_projection_cache_hits_total", "Projection cache hits", cache::getHits);
+        metrics.counter("calculator_projection_cache_misses_total", "Projection cache misses", cache::getMisses);
+        metrics.counter("calculator_projection_cache_evictions_total", "Projection cache evictions", cache::getEvictions);
+        return cache;
+    }
+    
+    private static void rules(ServerOptions options, Metrics metrics) throws IOException {
+        RulesFile rules = RulesFile.watch(options);
+        metrics.gauge("calculator_rules_version", "Version of the calculator rules in force", () -> Rules.current().version());
+        if (rules != null) {
+            metrics.counter("calculator_rules_reloads_total", "Rules file reloads installed", rules::getReloads);
+            metrics.counter("calculator_rules_reload_failures_total", "Rules file reloads rejected as invalid",
+                rules::getFailures);
+        }
+    }
+    
+    private static MealPlanHandler mealPlanHandler(ServerOptions options, Metrics metrics) throws IOException {
+        String foods = options.get("foods", null);
+        FoodTable table = foods != null ? FoodTable.load(Paths.get(foods)) : FoodTable.bundled();
+        int size = options.getInt("meal-plan-cache", 4096);
+        MealPlanCache cache = size > 0 ? new MealPlanCache(size) : null;
+        MealPlanHandler handler = new MealPlanHandler(new FoodIndex(table), cache,
+            options.getInt("meal-plan-budget-ms", 20) * 1_000_000L);
+        metrics.counter("calculator_meal_plan_solves_total", "Meal plan searches run", handler::getSolves);
+        metrics.counter("calculator_meal_plan_incomplete_total", "Meal plan searches stopped by their budget",
+            handler::getIncomplete);
+        if (cache != null) {
+            metrics.counter("calculator_meal_plan_cache_hits_total", "Meal plan cache hits", cache::getHits);
+            metrics.counter("calculator_meal_plan_cache_misses_total", "Meal plan cache misses", cache::getMisses);
+            metrics.counter("calculator_meal_plan_cache_evictions_total", "Meal plan cache evictions", cache::getEvictions);
+        }
+        return handler;
+    }
+    
+    private static AccessLog accessLog(ServerOptions options, Metrics metrics) throws IOException {
+        AccessLog accessLog = AccessLog.open(options);
+        if (accessLog == null) {
+            return null;
+        }
+        metrics.counter("calculator_access_log_records_total", "Access log records written", accessLog::getWritten);
+        metrics.counter("calculator_access_log_dropped_total", "Access log records dropped because the ring was full",
+            accessLog::getDropped);
+        metrics.counter("calculator_access_log_rotations_total", "Access log files completed", accessLog::getRotations);
+        metrics.gauge("calculator_access_log_queued", "Access log records waiting to be written", accessLog::getQueued);
+        Runtime.getRuntime().addShutdownHook(new Thread(accessLog::close));
+        return accessLog;
+    }
+    
+    /**
+     * Opens the history store when --history-dir is set; it is closed, and synced, on shutdown
+     * Calculations posted with a user field are recorded; segments hold --history-segment-records
+     * records, writes reach the disk within --history-sync-ms (or after --history-sync-batch
+     * records), and with --history-retention-days old segments are deleted.
+     */
+    private static HistoryStore history(ServerOptions options, Metrics metrics) throws IOException {
+        HistoryStore history = HistoryStore.open(options);
+        if (history == null) {
+            return null;
+        }
+        metrics.gauge("calculator_history_records", "Records in the history store", history::getRecords);
+        metrics.gauge("calculator_history_users", "Users with history", history::getUsers);
+        metrics.gauge("calculator_history_segments", "History segment files", history::getSegments);
+        metrics.gauge("calculator_history_pending", "History records not yet synced to disk", history::getPending);
+        metrics.gauge("calculator_history_index_bytes", "Off-heap memory of the history index", history::getIndexBytes);
+        metrics.counter("calculator_history_append_failures_total", "Calculations that could not be added to the history",
+            history::getAppendFailures);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.err.println("History store did not close cleanly: " + e.getMessage());
+            }
+        }));
+        return history;
+    }
+    
+    /**
+     * Serves static files, /calculate and /metrics from NIO event loops instead of the JDK HttpServer
+     * Handlers run inline on the loops, so there is no executor and no admission filter.
+     */
+    private static void startEventLoops(ServerOptions options, int port, ResultCache resultCache,
+            HistoryStore history, Metrics metrics) throws IOException {
+        EventLoopServer server = new EventLoopServer(port, options.getInt("loops", 0),
+            staticAssets(metrics), new CalculatorHandler(resultCache, history), metrics);
+        metrics.gauge("calculator_event_loop_connections", "Open client connections", server::getOpenConnections);
+        server.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        
+        System.out.println("Server started on port " + port + " (event loops: " + server.getLoops()
+            + (server.isReusePort() ? ", SO_REUSEPORT" : "") + ")");
+        System.out.println("Access the application at: http://localhost:" + port);
+    }
+    
+    private static void measured(HttpContext context, Metrics.Handler handler, AccessLog accessLog) {
+        context.getFilters().add(new MetricsFilter(Metrics.global(), handler));
+        if (accessLog != null) {
+            context.getFilters().add(new AccessLogFilter(accessLog, handler));
+        }
+    }
+    
+    private static void admitted(HttpContext context, AdmissionController controller) {
+        if (controller != null) {
+            context.getFilters().add(new AdmissionFilter(controller));
+        }
+    }
+    
+    /**
+     * Adaptive admission for /calculate, sized for the executor mode
+     * Pool and single threads cannot run more exchanges than they have threads, so the limit
+     * starts at the thread count, only adapts downwards, and nothing waits by default: the
+     * executor queue is the wait queue there, bounded in time by --admission-wait-ms. Virtual
+     * threads get a limit that can grow and a real wait queue.
+     */
+    static AdmissionController calculateAdmission(ServerOptions options, InstrumentedExecutor executor) {
+        boolean virtual = executor.getMode() == InstrumentedExecutor.Mode.VIRTUAL;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int limit = options.getInt("admission-limit", virtual ? 4 * cores : executor.getThreads());
+        int maxLimit = options.getInt("admission-max-limit", virtual ? Math.max(limit, 256) : limit);
+        // A waiting exchange blocks the only thread in single mode
+        int queue = executor.getMode() == InstrumentedExecutor.Mode.SINGLE ? 0
+            : options.getInt("admission-queue", virtual ? 4 * limit : 0);
+        return new AdmissionController("calculate", limit, 1, maxLimit, queue,
+            options.getInt("admission-wait-ms", 50), options.getInt("admission-target-ms", 100));
+    }
+    
+    /**
+     * Sheds exchanges with 503 and Retry-After once their context's admission limit is reached
+     * Exchanges that already waited longer than the limit allows in the executor queue are shed
+     * without being served; latency fed back to the limit counts from that submission.
+     */
+    static class AdmissionFilter extends Filter {
+        private static final byte[] BUSY = "503 - Server busy, please retry shortly".getBytes(StandardCharsets.UTF_8);
+        
+        private final AdmissionController controller;
+        
+        AdmissionFilter(AdmissionController controller) {
+            this.controller = controller;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long arrived = InstrumentedExecutor.currentTaskSubmitted();
+            if (arrived == 0) {
+                arrived = System.nanoTime();
+            }
+            if (controller.expired(System.nanoTime() - arrived)) {
+                controller.reject();
+                reject(exchange);
+                return;
+            }
+            if (!controller.acquire().admitted()) {
+                reject(exchange);
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                controller.release(System.nanoTime() - arrived);
+            }
+        }
+        
+        private static void reject(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().set("Retry-After", Integer.toString(AdmissionController.RETRY_AFTER_SECONDS));
+            ResponseWriter.send(exchange, 503, "text/plain; charset=utf-8", BUSY);
+        }
+        
+        @Override
+        public String description() {
+            return "Admission control for " + controller.getName();
+        }
+    }
+    
+    /**
+     * Counts every exchange by status code and records its latency
+     */
+    static class MetricsFilter extends Filter {
+        private final Metrics metrics;
+        private final Metrics.Handler handler;
+        
+        MetricsFilter(Metrics metrics, Metrics.Handler handler) {
+            this.metrics = metrics;
+            this.handler = handler;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                // -1 means the handler failed before sending headers; the server answers 500
+                int status = exchange.getResponseCode();
+                metrics.request(handler, status < 0 ? 500 : status, System.nanoTime() - start);
+            }
+        }
+        
+        @Override
+        public String description() {
+            return "Request metrics for " + handler.name().toLowerCase();
+        }
+    }
+    
+    /**
+     * Publishes every exchange to the access log, with the stage times and response size the
+     * handler recorded in its RequestTrace
+     */
+    static class AccessLogFilter extends Filter {
+        private final AccessLog accessLog;
+        private final Metrics.Handler handler;
+        
+        AccessLogFilter(AccessLog accessLog, Metrics.Handler handler) {
+            this.accessLog = accessLog;
+            this.handler = handler;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            RequestTrace trace = RequestTrace.begin();
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                int status = exchange.getResponseCode();
+                accessLog.publish(handler, exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+                    status < 0 ? 500 : status, trace.responseBytes, System.nanoTime() - start, trace.stageNanos);
+                RequestTrace.end(trace);
+            }
+        }
+        
+        @Override
+        public String description() {
+            return "Access log for " + handler.name().toLowerCase();
+        }
+    }
+    
+    static class MetricsHandler implements HttpHandler {
+        private static final ScratchPool<StringBuilder> TEXT =
+            new ScratchPool<>(() -> new StringBuilder(16384));
+        
+        private final Metrics metrics;
+        
+        MetricsHandler(Metrics metrics) {
+            this.metrics = metrics;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            StringBuilder text = TEXT.acquire();
+            try {
+                text.setLength(0);
+                metrics.writePrometheus(text);
+                ResponseWriter.sendText(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text);
+            } finally {
+                TEXT.release(text);
+            }
+        }
+    }
+    
+    /**
+     * GET /stats: JSON distributions of BMI, BMR, maintenance and target calories, and counts
+     * by BMI category and by goal, over every result served (see PopulationStats)
+     */
+    static class StatsHandler implements HttpHandler {
+        private final PopulationStats stats;
+        
+        StatsHandler(PopulationStats stats) {
+            this.stats = stats;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            ResponseBuffer body = ResponseWriter.buffer();
+            stats.snapshot().writeJson(body);
+            ResponseWriter.send(exchange, 200, "application/json", body);
+        }
+    }
+    
+    static class ExecutorStatsHandler implements HttpHandler {
+        private final InstrumentedExecutor executor;
+        
+        ExecutorStatsHandler(InstrumentedExecutor executor) {
+            this.executor = executor;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String response = "mode " + executor.getMode().name().toLowerCase() + "\n" +
+                              "threads " + executor.getThreads() + "\n" +
+                              "queue_depth " + executor.getQueueDepth() + "\n" +
+                              "active_tasks " + executor.getActiveTasks() + "\n" +
+                              "completed_tasks " + executor.getCompletedTasks() + "\n";
+            ResponseWriter.sendText(exchange, 200, "text/plain; charset=utf-8", response);
+        }
+    }
+    
+    static class StaticFileHandler implements HttpHandler {
+        private static final byte[] NOT_FOUND = "404 - File not found".getBytes(StandardCharsets.UTF_8);
+        
+        private final StaticAssetCache cache;
+        
+        StaticFileHandler(StaticAssetCache cache) {
+            this.cache = cache;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            
+            if (path.equals("/")) {
+                path = "/index.html";
+            }
+            
+            // Remove leading slash
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            
+            StaticAssetCache.Asset asset = cache.get(path);
+            
+            if (asset != null) {
+                Headers requestHeaders = exchange.getRequestHeaders();
+                Headers responseHeaders = exchange.getResponseHeaders();
+                responseHeaders.set("ETag", asset.getEtag());
+                responseHeaders.set("Last-Modified", asset.getLastModified());
+                responseHeaders.set("Cache-Control", "no-cache");
+                if (asset.hasCompressedVariants()) {
+                    responseHeaders.set("Vary", "Accept-Encoding");
+                }
+                
+                if (asset.isNotModified(requestHeaders.getFirst("If-None-Match"),
+                                        requestHeaders.getFirst("If-Modified-Since"))) {
+                    ResponseWriter.sendEmpty(exchange, 304);
+                    return;
+                }
+                
+                String encoding = StaticAssetCache.selectEncoding(asset, requestHeaders.getFirst("Accept-Encoding"));
+                byte[] content = asset.getIdentity();
+                if ("gzip".equals(encoding)) {
+                    content = asset.getGzip();
+                } else if ("deflate".equals(encoding)) {
+                    content = asset.getDeflate();
+                }
+                if (encoding != null) {
+                    responseHeaders.set("Content-Encoding", encoding);
+                }
+                ResponseWriter.send(exchange, 200, asset.getContentType(), content);
+                return;
+            }
+            
+            Path file = cache.resolve(path);
+            if (file != null && Files.isRegularFile(file)) {
+                // Not cached (too large, over the cache budget or mid-write); stream it from disk
+                exchange.getResponseHeaders().set("Content-Type", StaticAssetCache.getContentType(path));
+                long size = Files.size(file);
+                exchange.sendResponseHeaders(200, size);
+                RequestTrace.responseBytes(size);
+                
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    Files.copy(file, outputStream);
+                }
+            } else {
+                ResponseWriter.send(exchange, 404, "text/plain; charset=utf-8", NOT_FOUND);
+            }
+        }
+    }
+    
+    static class CacheStatsHandler implements HttpHandler {
+        private final ResultCache cache;
+        
+        CacheStatsHandler(ResultCache cache) {
+            this.cache = cache;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String response = "capacity " + cache.capacity() + "\n" +
+                              "hits " + cache.getHits() + "\n" +
+                              "misses " + cache.getMisses() + "\n" +
+                              "uncacheable " + cache.getUncacheable() + "\n" +
+                              "evictions " + cache.getEvictions() + "\n";
+            ResponseWriter.sendText(exchange, 200, "text/plain; charset=utf-8", response);
+        }
+    }
+    
+    /**
+     * POST /projection: the /calculate form plus weeks (default 12) and an optional targetWeight
+     * Answers JSON with the daily intake, the projected weight and maintenance calories for every
+     * week from 0 to weeks, and the first week the target is reached (null if it is not).
+     */
+    static class ProjectionHandler implements HttpHandler {
+        private static final String JSON = "application/json";
+        private static final int DEFAULT_WEEKS = 12;
+        private static final String WEEKS_ERROR = "Weeks must be between 1 and " + ProjectionEngine.MAX_WEEKS + ".";
+        private static final String TARGET_ERROR = "Target weight must be between 30 and 300 kg.";
+        private static final ScratchPool<FormParser> FORM_PARSER = new ScratchPool<>(FormParser::new);
+        
+        private final ProjectionCache cache;
+        
+        ProjectionHandler(ProjectionCache cache) {
+            this.cache = cache;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                ResponseWriter.sendEmpty(exchange, 405);
+                return;
+            }
+            FormParser form = FORM_PARSER.acquire();
+            try {
+                respond(exchange, form);
+            } finally {
+                FORM_PARSER.release(form);
+            }
+        }
+        
+        private void respond(HttpExchange exchange, FormParser form) throws IOException {
+            FormParser.Status status = form.parse(exchange.getRequestBody());
+            String error = status.message();
+            if (error == null) {
+                InputError invalid = CalorieEngine.validate(form.getHeight(), form.getWeight(), form.getAge(),
+                    form.getDays(), form.getHours());
+                error = invalid != null ? invalid.message() : null;
+            }
+            // Absent fields take their defaults; an explicit weeks=0 or targetWeight=0 is out of range
+            int weeks = form.hasWeeks() ? form.getWeeks() : DEFAULT_WEEKS;
+            double target = form.getTargetWeight();
+            if (error == null && (weeks < 1 || weeks > ProjectionEngine.MAX_WEEKS)) {
+                error = WEEKS_ERROR;
+            }
+            if (error == null && form.hasTargetWeight() && !(target >= 30 && target <= 300)) {
+                error = TARGET_ERROR;
+            }
+            ResponseBuffer body = ResponseWriter.buffer();
+            if (error != null) {
+                ResultJson.writeError(error, body);
+                ResponseWriter.send(exchange, 400, JSON, body);
+                return;
+            }
+            
+            Projection projection = cache != null
+                ? cache.get(form.getHeight(), form.getWeight(), form.getAge(), form.getGender(),
+                            form.getActivityLevel(), form.getGoal(), target)
+                : new Projection(form.getHeight(), form.getWeight(), form.getAge(), form.getGender(),
+                                 form.getActivityLevel(), form.getGoal(), target);
+            double[] weights = projection.extendTo(weeks);
+            int reached = projection.getReachedWeek();
+            
+            body.writeAscii("{\"weeks\":");
+            body.writeInt(weeks);
+            body.writeAscii(",\"intake\":");
+            body.writeInt(projection.getIntake());
+            body.writeAscii(",\"reachedWeek\":");
+            if (reached >= 0 && reached <= weeks) {
+                body.writeInt(reached);
+            } else {
+                body.writeAscii("null");
+            }
+            body.writeAscii(",\"weight\":[");
+            for (int week = 0; week <= weeks; week++) {
+                if (week > 0) body.writeByte(',');
+                body.writeDecimal1(weights[week]);
+            }
+            body.writeAscii("],\"maintenanceCalories\":[");
+            for (int week = 0; week <= weeks; week++) {
+                if (week > 0) body.writeByte(',');
+                body.writeInt(projection.maintenanceAt(week));
+            }
+            body.writeAscii("]}");
+            ResponseWriter.send(exchange, 200, JSON, body);
+        }
+    }
+    
+    /**
+     * POST /meal-plan: the /calculate form; answers with foods and servings matching the
+     * profile's protein, carb and fat targets as JSON
+     * Targets are rounded to MealPlanCache buckets and each search is bounded by the budget; a
+     * plan cut short by it reports "complete":false and is cached like any other.
+     */
+    static class MealPlanHandler implements HttpHandler {
+        private static final String JSON = "application/json";
+        private static final ScratchPool<FormParser> FORM_PARSER = new ScratchPool<>(FormParser::new);
+        private static final ScratchPool<CalculationResult> RESULT = new ScratchPool<>(CalculationResult::new);
+        
+        private final FoodIndex index;
+        private final MealPlanCache cache;
+        private final long budgetNanos;
+        private final ScratchPool<MealPlanner> planner;
+        private final LongAdder solves = new LongAdder();
+        private final LongAdder incomplete = new LongAdder();
+        
+        MealPlanHandler(FoodIndex index, MealPlanCache cache, long budgetNanos) {
+            this.index = index;
+            this.cache = cache;
+            this.budgetNanos = budgetNanos;
+            this.planner = new ScratchPool<>(() -> new MealPlanner(index));
+        }
+        
+        long getSolves() { return solves.sum(); }
+        long getIncomplete() { return incomplete.sum(); }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                ResponseWriter.sendEmpty(exchange, 405);
+                return;
+            }
+            FormParser form = FORM_PARSER.acquire();
+            CalculationResult result = RESULT.acquire();
+            try {
+                respond(exchange, form, result);
+            } finally {
+                RESULT.release(result);
+                FORM_PARSER.release(form);
+            }
+        }
+        
+        private void respond(HttpExchange exchange, FormParser form, CalculationResult result) throws IOException {
+            FormParser.Status status = form.parse(exchange.getRequestBody());
+            String error = status.message();
+            if (error == null) {
+                InputError invalid = CalorieEngine.validate(form.getHeight(), form.getWeight(), form.getAge(),
+                    form.getDays(), form.getHours());
+                error = invalid != null ? invalid.message() : null;
+            }
+            ResponseBuffer body = ResponseWriter.buffer();
+            if (error != null) {
+                ResultJson.writeError(error, body);
+                ResponseWriter.send(exchange, 400, JSON, body);
+                return;
+            }
+            
+            CalorieEngine.calculate(form.getHeight(), form.getWeight(), form.getAge(), form.getGender(),
+                form.getActivityLevel(), form.getDays(), form.getHours(), form.getGoal(), result);
+            MealPlan plan = plan(result.getProteinGrams(), result.getCarbGrams(), result.getFatGrams());
+            
+            body.writeAscii("{\"targets\":{\"calories\":");
+            body.writeInt(result.getTargetCalories());
+            body.writeAscii(",\"protein\":");
+            body.writeInt(result.getProteinGrams());
+            body.writeAscii(",\"carbs\":");
+            body.writeInt(result.getCarbGrams());
+            body.writeAscii(",\"fat\":");
+            body.writeInt(result.getFatGrams());
+            body.writeAscii("},\"complete\":");
+            body.writeAscii(plan.isComplete() ? "true" : "false");
+            body.writeAscii(",\"calories\":");
+            body.writeInt(plan.getCalories());
+            body.writeAscii(",\"protein\":");
+            body.writeDecimal1(plan.getProtein());
+            body.writeAscii(",\"carbs\":");
+            body.writeDecimal1(plan.getCarbs());
+            body.writeAscii(",\"fat\":");
+            body.writeDecimal1(plan.getFat());
+            body.writeAscii(",\"items\":[");
+            FoodTable foods = index.foods();
+            for (int i = 0; i < plan.getItems(); i++) {
+                int food = plan.getFood(i);
+                int servings = plan.getServings(i);
+                if (i > 0) body.writeByte(',');
+                body.writeAscii("{\"food\":\"");
+                body.writeText(foods.name(food), false);
+                body.writeAscii("\",\"serving\":\"");
+                body.writeText(foods.serving(food), false);
+                body.writeAscii("\",\"servings\":");
+                body.writeInt(servings);
+                body.writeAscii(",\"calories\":");
+                body.writeInt((int) Math.round(foods.calories(food) * servings));
+                body.writeAscii(",\"protein\":");
+                body.writeDecimal1(foods.protein(food) * servings);
+                body.writeAscii(",\"carbs\":");
+                body.writeDecimal1(foods.carbs(food) * servings);
+                body.writeAscii(",\"fat\":");
+                body.writeDecimal1(foods.fat(food) * servings);
+                body.writeByte('}');
+            }
+            body.writeAscii("]}");
+            ResponseWriter.send(exchange, 200, JSON, body);
+        }
+        
+        private MealPlan plan(int protein, int carbs, int fat) {
+            protein = MealPlanCache.bucket(protein);
+            carbs = MealPlanCache.bucket(carbs);
+            fat = MealPlanCache.bucket(fat);
+            long key = cache != null ? MealPlanCache.key(protein, carbs, fat) : MealPlanCache.UNCACHEABLE;
+            MealPlan plan = key != MealPlanCache.UNCACHEABLE ? cache.get(key) : null;
+            if (plan == null) {
+                MealPlanner solver = planner.acquire();
+                try {
+                    plan = solver.solve(protein, carbs, fat, budgetNanos);
+                } finally {
+                    planner.release(solver);
+                }
+                solves.increment();
+                if (!plan.isComplete()) {
+                    incomplete.increment();
+                }
+                if (key != MealPlanCache.UNCACHEABLE) {
+                    cache.put(key, plan);
+                }
+            }
+            return plan;
+        }
+    }
+    
+    /**
+     * GET /history?user=N[&from=ms][&to=ms][&limit=n]: the user's calculations as JSON, oldest first
+     * DELETE /history?user=N removes them. Timestamps are milliseconds since the epoch; limit
+     * (default 100, at most 10000) keeps the newest records in the range.
+     */
+    static class HistoryHandler implements HttpHandler {
+        private static final String JSON = "application/json";
+        private static final int DEFAULT_LIMIT = 100;
+        private static final int MAX_LIMIT = 10_000;
+        
+        private final HistoryStore history;
+        
+        HistoryHandler(HistoryStore history) {
+            this.history = history;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean delete = "DELETE".equals(method);
+            if (!delete && !"GET".equals(method) && !"HEAD".equals(method)) {
+                ResponseWriter.sendEmpty(exchange, 405);
+                return;
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            long user = queryLong(query, "user", 0);
+            long from = queryLong(query, "from", 0);
+            long to = queryLong(query, "to", Long.MAX_VALUE);
+            long limit = queryLong(query, "limit", DEFAULT_LIMIT);
+            if (user <= 0 || from < 0 || to < 0 || limit <= 0) {
+                ResponseBuffer body = ResponseWriter.buffer();
+                ResultJson.writeError("A positive user id is required; from, to and limit must not be negative.", body);
+                ResponseWriter.send(exchange, 400, JSON, body);
+                return;
+            }
+            
+            ResponseBuffer body = ResponseWriter.buffer();
+            if (delete) {
+                body.writeAscii("{\"deleted\":");
+                body.writeAscii(Boolean.toString(history.delete(user)));
+                body.writeByte('}');
+                ResponseWriter.send(exchange, 200, JSON, body);
+                return;
+            }
+            List<HistoryRecord> records = history.read(user, from, to, (int) Math.min(limit, MAX_LIMIT));
+            body.writeAscii("{\"user\":");
+            body.writeAscii(Long.toString(user));
+            body.writeAscii(",\"records\":[");
+            for (int i = 0; i < records.size(); i++) {
+                HistoryRecord record = records.get(i);
+                if (i > 0) body.writeByte(',');
+                body.writeAscii("{\"timestamp\":");
+                body.writeAscii(Long.toString(record.getTimestamp()));
+                body.writeAscii(",\"height\":");
+                body.writeDecimal1(record.getHeight());
+                body.writeAscii(",\"weight\":");
+                body.writeDecimal1(record.getWeight());
+                body.writeAscii(",\"age\":");
+                body.writeInt(record.getAge());
+                body.writeAscii(",\"goal\":\"");
+                body.writeAscii(record.getGoal().key());
+                body.writeAscii("\",\"bmr\":");
+                body.writeInt(record.getBmr());
+                body.writeAscii(",\"maintenanceCalories\":");
+                body.writeInt(record.getMaintenanceCalories());
+                body.writeAscii(",\"targetCalories\":");
+                body.writeInt(record.getTargetCalories());
+                body.writeAscii(",\"bmi\":");
+                body.writeDecimal1(record.getBmi());
+                body.writeByte('}');
+            }
+            body.writeAscii("]}");
+            ResponseWriter.send(exchange, 200, JSON, body);
+        }
+        
+        /**
+         * A non-negative decimal query parameter; the fallback when absent, -1 when malformed
+         */
+        static long queryLong(String query, String name, long fallback) {
+            if (query == null) return fallback;
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals == name.length() && pair.startsWith(name)) {
+                    try {
+                        return Long.parseLong(pair.substring(equals + 1));
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+            }
+            return fallback;
+        }
+    }
+    
+    static class CalculatorHandler implements HttpHandler {
+        private static final String HTML = "text/html; charset=utf-8";
+        private static final ScratchPool<FormParser> FORM_PARSER = new ScratchPool<>(FormParser::new);
+        private static final ScratchPool<Reply> REPLY = new ScratchPool<>(Reply::new);
+        
+        // Error pages are fixed per failure, so they are rendered once up front
+        private static final byte[][] FORM_ERROR_PAGES = new byte[FormParser.Status.values().length][];
+        private static final byte[][] INPUT_ERROR_PAGES = new byte[InputError.values().length][];
+        private static final byte[] UNEXPECTED_ERROR_PAGE =
+            generateErrorPage("An unexpected error occurred. Please try again.").getBytes(StandardCharsets.UTF_8);
+        
+        static {
+            for (FormParser.Status status : FormParser.Status.values()) {
+                if (status.message() != null) {
+                    FORM_ERROR_PAGES[status.ordinal()] = generateErrorPage(status.message()).getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            for (InputError error : InputError.values()) {
+                INPUT_ERROR_PAGES[error.ordinal()] = generateErrorPage(error.message()).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        
+        private final ResultTemplate resultsTemplate;
+        private final ResultCache resultCache;
+        private final HistoryStore history;
+        
+        CalculatorHandler() throws IOException {
+            this(null, null);
+        }
+        
+        CalculatorHandler(ResultCache resultCache) throws IOException {
+            this(resultCache, null);
+        }
+        
+        CalculatorHandler(ResultCache resultCache, HistoryStore history) throws IOException {
+            this.resultsTemplate = ResultTemplate.watching(Paths.get("result_template.html"), FALLBACK_TEMPLATE);
+            this.resultCache = resultCache;
+            this.history = history;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                ResponseWriter.sendEmpty(exchange, 405);
+                return;
+            }
+            
+            Metrics metrics = Metrics.global();
+            long mark = System.nanoTime();
+            PipelineEvents.Request request = PipelineEvents.beginRequest();
+            Reply reply = REPLY.acquire();
+            FormParser form = FORM_PARSER.acquire();
+            try {
+                // Parse form data straight from the request bytes
+                PipelineEvents.Parse parse = PipelineEvents.beginParse();
+                FormParser.Status status = form.parse(exchange.getRequestBody());
+                PipelineEvents.endParse(parse, PipelineEvents.JDK, status.name());
+                mark = metrics.stage(Metrics.Stage.PARSE, mark);
+                respond(form, status, reply);
+            } catch (RuntimeException e) {
+                reply.set(500, UNEXPECTED_ERROR_PAGE);
+            } finally {
+                FORM_PARSER.release(form);
+            }
+            mark = System.nanoTime();
+            PipelineEvents.Write write = PipelineEvents.beginWrite();
+            int status = reply.status;
+            try {
+                ResponseWriter.send(exchange, status, HTML, reply.body, reply.length);
+            } finally {
+                PipelineEvents.endWrite(write, PipelineEvents.JDK, status, reply.length);
+                PipelineEvents.endRequest(request, PipelineEvents.JDK, status);
+                REPLY.release(reply);
+            }
+            if (status == 200) {
+                metrics.stage(Metrics.Stage.WRITE, mark);
+            }
+        }
+        
+        /**
+         * Page to send for a /calculate request: a status and the first length bytes of body
+         * The body is a shared error page, a cached page, or the reply's own render buffer, so it
+         * is only valid until the reply is reused. A reply also carries the working objects for
+         * computing and rendering the page, so respond() needs nothing per thread.
+         */
+        static final class Reply {
+            // Render buffers that grew past this (a huge custom template) are not kept
+            private static final int MAX_PAGE_CAPACITY = 1024 * 1024;
+            
+            int status;
+            byte[] body;
+            int length;
+            final CalculationResult result = new CalculationResult();
+            final ResultTemplate.Values values = new ResultTemplate.Values();
+            private ResponseBuffer page = new ResponseBuffer(16384);
+            
+            /**
+             * The render buffer, emptied
+             */
+            ResponseBuffer page() {
+                if (page.capacity() > MAX_PAGE_CAPACITY) {
+                    page = new ResponseBuffer(16384);
+                }
+                page.reset();
+                return page;
+            }
+            
+            void set(int status, byte[] body) {
+                set(status, body, body.length);
+            }
+            
+            void set(int status, byte[] body, int length) {
+                this.status = status;
+                this.body = body;
+                this.length = length;
+            }
+        }
+        
+        /**
+         * Validates a parsed form and computes, renders or looks up its page, independent of the transport
+         * Records the COMPUTE and RENDER stages; a RuntimeException becomes a 500 page.
+         */
+        void respond(FormParser form, FormParser.Status status, Reply reply) {
+            if (status != FormParser.Status.OK) {
+                reply.set(400, FORM_ERROR_PAGES[status.ordinal()]);
+                return;
+            }
+            PipelineEvents.Compute compute = PipelineEvents.beginCompute();
+            try {
+                
+                double height = form.getHeight();
+                double weight = form.getWeight();
+                int age = form.getAge();
+                int gender = form.getGender();
+                double activityLevel = form.getActivityLevel();
+                int days = form.getDays();
+                double hours = form.getHours();
+                int goal = form.getGoal();
+                
+                // Validate ranges
+                InputError error = CalorieEngine.validate(height, weight, age, days, hours);
+                if (error != null) {
+                    PipelineEvents.endCompute(compute, error.name());
+                    reply.set(400, INPUT_ERROR_PAGES[error.ordinal()]);
+                    return;
+                }
+                
+                // One rules snapshot for the lookup, the calculation and the page, even if the rules
+                // are reloaded meanwhile; repeat profiles are answered straight from the cache
+                Rules rules = Rules.current();
+                int templateVersion = resultsTemplate.version();
+                int rulesVersion = rules.version();
+                long cacheKey = ResultCache.UNCACHEABLE;
+                if (resultCache != null) {
+                    cacheKey = ResultCache.key(height, weight, age, gender, activityLevel, days, hours, goal);
+                    ResultCache.Entry cached = resultCache.get(cacheKey, templateVersion, rulesVersion);
+                    if (cached != null) {
+                        record(form, cached.getResult());
+                        PipelineEvents.endCompute(compute, PipelineEvents.CACHED, cached.getResult());
+                        reply.set(200, cached.getPage());
+                        return;
+                    }
+                }
+                
+                // Perform calculations
+                Metrics metrics = Metrics.global();
+                long mark = System.nanoTime();
+                CalculationResult result = reply.result;
+                CalorieEngine.calculate(rules, height, weight, age, gender, activityLevel, days, hours, goal, result);
+                mark = metrics.stage(Metrics.Stage.COMPUTE, mark);
+                record(form, result);
+                PipelineEvents.endCompute(compute, PipelineEvents.OK, result);
+                compute = null;
+                
+                // Generate JSP-like response
+                PipelineEvents.Render render = PipelineEvents.beginRender();
+                ResponseBuffer response = reply.page();
+                generateResultsPage(result, rules, reply.values, response);
+                metrics.stage(Metrics.Stage.RENDER, mark);
+                PipelineEvents.endRender(render, "template", templateVersion, response.size());
+                
+                if (resultCache != null) {
+                    resultCache.put(cacheKey, templateVersion, rulesVersion, result, response.array(), response.size());
+                }
+                reply.set(200, response.array(), response.size());
+            } catch (RuntimeException e) {
+                PipelineEvents.endCompute(compute, PipelineEvents.ERROR);
+                reply.set(500, UNEXPECTED_ERROR_PAGE);
+            }
+        }
+        
+        /**
+         * Adds the result to the population statistics, and to the user's history when the form
+         * named a user
+         * The store never blocks on the disk here; if it fails, the page is still served and the
+         * failure is counted in calculator_history_append_failures_total.
+         */
+        private void record(FormParser form, CalculationResult result) {
+            PopulationStats.global().record(result);
+            if (history == null || form.getUser() == 0) {
+                return;
+            }
+            history.tryAppend(form.getUser(), result);
+        }
+        
+        /**
+         * Renders the results page; labels, plans and goal adjustments come from rules, which must be
+         * the snapshot the result was calculated under
+         */
+        void generateResultsPage(CalculationResult result, Rules rules, ResultTemplate.Values values, ResponseBuffer out) {
+            String goalColor = "success";
+            String goalIcon = "equals";
+            String goalText = "Weight Maintenance";
+            
+            if (result.getGoal() == Goal.LOSE) {
+                goalColor = "danger";
+                goalIcon = "arrow-down";
+                goalText = "Weight Loss Goal";
+            } else if (result.getGoal() == Goal.GAIN) {
+                goalColor = "info";
+                goalIcon = "arrow-up";
+                goalText = "Weight Gain Goal";
+            }
+            
+            int maintenanceCalories = result.getMaintenanceCalories();
+            int workoutPlan = result.getWorkoutPlan().ordinal();
+            values
+                .set(ResultTemplate.Slot.GOAL_COLOR, goalColor)
+                .set(ResultTemplate.Slot.GOAL_ICON, goalIcon)
+                .set(ResultTemplate.Slot.GOAL_TEXT, goalText)
+                .set(ResultTemplate.Slot.BMR, result.getBmr())
+                .set(ResultTemplate.Slot.MAINTENANCE_CALORIES, maintenanceCalories)
+                .set(ResultTemplate.Slot.TARGET_CALORIES, result.getTargetCalories())
+                .set(ResultTemplate.Slot.LOSE_CALORIES, maintenanceCalories + rules.calorieAdjustment(Goal.LOSE.ordinal()))
+                .set(ResultTemplate.Slot.GAIN_CALORIES, maintenanceCalories + rules.calorieAdjustment(Goal.GAIN.ordinal()))
+                .set(ResultTemplate.Slot.ACTIVITY_CALORIES, maintenanceCalories - result.getBmr())
+                .set(ResultTemplate.Slot.BMI, result.getBmi())
+                .set(ResultTemplate.Slot.BMI_CATEGORY, rules.bmiLabel(result.getBmiCategory().ordinal()))
+                .set(ResultTemplate.Slot.WORKOUT_NAME, rules.workoutName(workoutPlan))
+                .set(ResultTemplate.Slot.WORKOUT_DESCRIPTION, rules.workoutDescription(workoutPlan))
+                .set(ResultTemplate.Slot.PROTEIN_GRAMS, result.getProteinGrams())
+                .set(ResultTemplate.Slot.CARB_GRAMS, result.getCarbGrams())
+                .set(ResultTemplate.Slot.FAT_GRAMS, result.getFatGrams())
+                .set(ResultTemplate.Slot.GENDER, result.getGender().key())
+                .set(ResultTemplate.Slot.HEIGHT, result.getHeight())
+                .set(ResultTemplate.Slot.WEIGHT, result.getWeight())
+                .set(ResultTemplate.Slot.AGE, result.getAge());
+            
+            resultsTemplate.render(values, out);
+        }
+        
+        private static String generateErrorPage(String errorMessage) {
+            return "<!DOCTYPE html><html><head><title>Error</title><link href=\"https://cdn.jsdelivr.net/npm/bootstrap@5.3.0/dist/css/bootstrap.min.css\" rel=\"stylesheet\"></head>" +
+                   "<body><div class=\"container mt-5\"><div class=\"alert alert-danger\"><h3>Error</h3><p>" + errorMessage + "</p>" +
+                   "<a href=\"/\" class=\"btn btn-primary\">Go Back</a></div></div></body></html>";
+        }
+        
+        // Built-in results page, used when result_template.html is not present
+        private static final String FALLBACK_TEMPLATE =
+            "<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Results</title><link href=\"https://cdn.jsdelivr.net/npm/bootstrap@5.3.0/dist/css/bootstrap.min.css\" rel=\"stylesheet\"><link rel=\"stylesheet\" href=\"style.css\"></head>" +
+            "<body><nav class=\"navbar navbar-expand-lg navbar-dark bg-gradient-primary fixed-top\"><div class=\"container\"><a class=\"navbar-brand\" href=\"/\">Maintenance Calories Calculator</a></div></nav>" +
+            "<section class=\"hero-section\"><div class=\"container hero-content\"><h1 class=\"display-4 text-white text-center\">Your Personalized Results</h1></div></section>" +
+            "<section class=\"py-5\"><div class=\"container\"><div class=\"row\"><div class=\"col-lg-6\"><div class=\"card\"><div class=\"card-header bg-{{goalColor}} text-white\"><h5>Calorie Breakdown</h5></div>" +
+            "<div class=\"card-body\"><div class=\"alert alert-{{goalColor}}\"><i class=\"fas fa-{{goalIcon}}\"></i> {{goalText}}</div>" +
+            "<p><strong>BMR:</strong> {{bmr}} calories</p><p><strong>Maintenance:</strong> {{maintenanceCalories}} calories</p><p><strong>Target:</strong> {{targetCalories}} calories</p>" +
+            "<p><strong>BMI:</strong> {{bmi}} ({{bmiCategory}})</p></div></div></div>" +
+            "<div class=\"col-lg-6\"><div class=\"card\"><div class=\"card-header bg-success text-white\"><h5>Workout Plan</h5></div>" +
+            "<div class=\"card-body\"><h4>{{workoutName}}</h4><p>{{workoutDescription}}</p></div></div></div></div>" +
+            "<div class=\"row mt-4\"><div class=\"col-12\"><div class=\"card\"><div class=\"card-header bg-info text-white\"><h5>Macronutrients</h5></div>" +
+            "<div class=\"card-body\"><div class=\"row\"><div class=\"col-md-4 text-center\"><h6>Protein</h6><p>{{proteinGrams}}g</p></div>" +
+            "<div class=\"col-md-4 text-center\"><h6>Carbs</h6><p>{{carbGrams}}g</p></div><div class=\"col-md-4 text-center\"><h6>Fat</h6><p>{{fatGrams}}g</p></div></div></div></div></div></div>" +
+            "<div class=\"text-center mt-4\"><a href=\"/\" class=\"btn btn-primary btn-lg\">Calculate Again</a></div></div></section></body></html>";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Computes the calorie, BMI and macro columns of a CohortColumns batch
+ * Every implementation must produce exactly what CalorieEngine.calculate produces per row.
+ */
+public interface BatchEngine {
+
+    /**
+     * Computes the output columns for rows [from, to)
+     */
+    void compute(CohortColumns columns, int from, int to);
+
+    /**
+     * Short name for logs and benchmark output
+     */
+    String name();
+
+    /**
+     * The scalar engine, available everywhere
+     */
+    static BatchEngine scalar() {
+        return ScalarBatchEngine.INSTANCE;
+    }
+
+    /**
+     * The SIMD engine when the JVM runs with --add-modules jdk.incubator.vector, else the scalar one
+     * The vector implementation is loaded reflectively so this class links without the incubator module.
+     */
+    static BatchEngine best() {
+        return BatchEngineLoader.BEST;
+    }
+}
@@ -0,0 +1,27 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Picks the BatchEngine once per JVM
+ * The vector implementation is only linked when the incubator module is present, so the rest of
+ * the engine runs on any Java 17 runtime. -Dcalculator.scalar=true forces the scalar engine.
+ */
+final class BatchEngineLoader {
+
+    static final BatchEngine BEST = load();
+
+    private BatchEngineLoader() {
+    }
+
+    private static BatchEngine load() {
+        if (Boolean.getBoolean("calculator.scalar")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ScalarBatchEngine.INSTANCE;
+        }
+        try {
+            return (BatchEngine) Class.forName("com.maintenance.calculator.engine.VectorBatchEngine")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarBatchEngine.INSTANCE;
+        }
+    }
+}
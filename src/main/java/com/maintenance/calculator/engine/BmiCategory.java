@@ -0,0 +1,26 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * BMI categories used on the results page, in increasing BMI order
+ * Labels and bounds come from the Rules in force.
+ */
+public enum BmiCategory {
+    UNDERWEIGHT,
+    NORMAL,
+    OVERWEIGHT,
+    OBESE;
+
+    private static final BmiCategory[] VALUES = values();
+
+    public String label() {
+        return Rules.current().bmiLabel(ordinal());
+    }
+
+    public static BmiCategory fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public static BmiCategory of(double bmi) {
+        return VALUES[Rules.current().bmiCategory(bmi)];
+    }
+}
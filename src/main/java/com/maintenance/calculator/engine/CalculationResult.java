@@ -0,0 +1,78 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Mutable holder for one calculation's inputs and outputs
+ * CalorieEngine writes into a caller-supplied instance so the hot path allocates nothing;
+ * front ends keep one per thread and reuse it.
+ */
+public final class CalculationResult {
+
+    // Inputs
+    double height;
+    double weight;
+    int age;
+    int gender;
+    double activityLevel;
+    int daysAvailable;
+    double hoursPerDay;
+    int goal;
+
+    // Outputs
+    double exactBmr;
+    int bmr;
+    int maintenanceCalories;
+    int targetCalories;
+    double bmi;
+    int bmiCategory;
+    int workoutPlan;
+    int proteinGrams;
+    int carbGrams;
+    int fatGrams;
+
+    public double getHeight() { return height; }
+    public double getWeight() { return weight; }
+    public int getAge() { return age; }
+    public Gender getGender() { return Gender.fromOrdinal(gender); }
+    public int getGenderOrdinal() { return gender; }
+    public double getActivityLevel() { return activityLevel; }
+    public int getDaysAvailable() { return daysAvailable; }
+    public double getHoursPerDay() { return hoursPerDay; }
+    public Goal getGoal() { return Goal.fromOrdinal(goal); }
+    public int getGoalOrdinal() { return goal; }
+
+    /** BMR before rounding, as returned by the Mifflin-St Jeor equation */
+    public double getExactBmr() { return exactBmr; }
+    public int getBmr() { return bmr; }
+    public int getMaintenanceCalories() { return maintenanceCalories; }
+    public int getTargetCalories() { return targetCalories; }
+    public double getBmi() { return bmi; }
+    public BmiCategory getBmiCategory() { return BmiCategory.fromOrdinal(bmiCategory); }
+    public WorkoutPlan getWorkoutPlan() { return WorkoutPlan.fromOrdinal(workoutPlan); }
+    public int getProteinGrams() { return proteinGrams; }
+    public int getCarbGrams() { return carbGrams; }
+    public int getFatGrams() { return fatGrams; }
+
+    /**
+     * Copies every field from another result
+     */
+    public void copyFrom(CalculationResult other) {
+        height = other.height;
+        weight = other.weight;
+        age = other.age;
+        gender = other.gender;
+        activityLevel = other.activityLevel;
+        daysAvailable = other.daysAvailable;
+        hoursPerDay = other.hoursPerDay;
+        goal = other.goal;
+        exactBmr = other.exactBmr;
+        bmr = other.bmr;
+        maintenanceCalories = other.maintenanceCalories;
+        targetCalories = other.targetCalories;
+        bmi = other.bmi;
+        bmiCategory = other.bmiCategory;
+        workoutPlan = other.workoutPlan;
+        proteinGrams = other.proteinGrams;
+        carbGrams = other.carbGrams;
+        fatGrams = other.fatGrams;
+    }
+}
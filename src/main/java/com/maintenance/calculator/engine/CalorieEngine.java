@@ -0,0 +1,111 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Calorie calculation engine shared by WebServer and CalculatorServlet
+ * Calculates BMR, maintenance calories, target calories, BMI, macronutrients and the workout plan,
+ * the last four under the Rules in force.
+ * Takes primitives and enum ordinals and writes into a caller-supplied CalculationResult,
+ * so a calculation allocates nothing.
+ */
+public final class CalorieEngine {
+
+    private CalorieEngine() {
+    }
+
+    /**
+     * Checks the input ranges accepted by the calculators
+     * Returns null when the inputs are valid; NaN is rejected like any out-of-range value
+     */
+    public static InputError validate(double height, double weight, int age,
+                                      int daysAvailable, double hoursPerDay) {
+        if (!(height >= 100 && height <= 250)) return InputError.HEIGHT;
+        if (!(weight >= 30 && weight <= 300)) return InputError.WEIGHT;
+        if (age < 15 || age > 100) return InputError.AGE;
+        if (daysAvailable < 1 || daysAvailable > 7) return InputError.DAYS;
+        if (!(hoursPerDay >= 0.5 && hoursPerDay <= 4)) return InputError.HOURS;
+        return null;
+    }
+
+    /**
+     * Runs the full calculation into out
+     *
+     * @param gender Gender ordinal
+     * @param goal   Goal ordinal
+     */
+    public static void calculate(double height, double weight, int age, int gender, double activityLevel,
+                                 int daysAvailable, double hoursPerDay, int goal, CalculationResult out) {
+        // One snapshot for the whole calculation, even if the rules are reloaded meanwhile
+        calculate(Rules.current(), height, weight, age, gender, activityLevel, daysAvailable, hoursPerDay, goal, out);
+    }
+
+    /**
+     * Runs the full calculation into out under the given rules, for callers that go on to render the
+     * result's labels and plan from the same snapshot
+     */
+    public static void calculate(Rules rules, double height, double weight, int age, int gender, double activityLevel,
+                                 int daysAvailable, double hoursPerDay, int goal, CalculationResult out) {
+        out.height = height;
+        out.weight = weight;
+        out.age = age;
+        out.gender = gender;
+        out.activityLevel = activityLevel;
+        out.daysAvailable = daysAvailable;
+        out.hoursPerDay = hoursPerDay;
+        out.goal = goal;
+
+        double bmr = calculateBMR(height, weight, age, gender);
+        int maintenanceCalories = (int) Math.round(bmr * activityLevel);
+        int targetCalories = maintenanceCalories + rules.calorieAdjustment(goal);
+        double bmi = calculateBMI(height, weight);
+
+        out.exactBmr = bmr;
+        out.bmr = (int) Math.round(bmr);
+        out.maintenanceCalories = maintenanceCalories;
+        out.targetCalories = targetCalories;
+        out.bmi = bmi;
+        out.bmiCategory = rules.bmiCategory(bmi);
+        out.workoutPlan = rules.workoutPlan(daysAvailable);
+        out.proteinGrams = rules.proteinGrams(targetCalories);
+        out.carbGrams = rules.carbGrams(targetCalories);
+        out.fatGrams = rules.fatGrams(targetCalories);
+    }
+
+    /**
+     * Calculates BMR using Mifflin-St Jeor equation
+     * More accurate than Harris-Benedict, especially for overweight individuals
+     */
+    public static double calculateBMR(double height, double weight, int age, int gender) {
+        // Base calculation: (10 × weight in kg) + (6.25 × height in cm) - (5 × age in years)
+        double baseBMR = (10 * weight) + (6.25 * height) - (5 * age);
+        return gender == Gender.MALE.ordinal() ? baseBMR + 5 : baseBMR - 161;
+    }
+
+    /**
+     * Calculates BMI (Body Mass Index)
+     */
+    public static double calculateBMI(double height, double weight) {
+        double heightInMeters = height / 100.0;
+        return weight / (heightInMeters * heightInMeters);
+    }
+
+    /**
+     * Calculates target calories based on fitness goal, under the current rules
+     */
+    public static int calculateTargetCalories(int maintenanceCalories, int goal) {
+        return maintenanceCalories + Rules.current().calorieAdjustment(goal);
+    }
+
+    // Macronutrients follow the current rules' split (30% protein, 35% carbs, 35% fat by default)
+
+    public static int proteinGrams(int targetCalories) {
+        return Rules.current().proteinGrams(targetCalories);
+    }
+
+    public static int carbGrams(int targetCalories) {
+        return Rules.current().carbGrams(targetCalories);
+    }
+
+    public static int fatGrams(int targetCalories) {
+        return Rules.current().fatGrams(targetCalories);
+    }
+}
@@ -0,0 +1,69 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Struct-of-arrays batch of profiles for BatchEngine
+ * Inputs and outputs are parallel columns indexed by row, so an engine can work on several
+ * rows per instruction. A batch is filled, computed and read back, then reused.
+ */
+public final class CohortColumns {
+
+    // Inputs
+    public final double[] height;
+    public final double[] weight;
+    public final int[] age;
+    /** Gender mask: true for male */
+    public final boolean[] male;
+    public final double[] activityLevel;
+    /** Goal ordinals */
+    public final int[] goal;
+
+    // Outputs, rounded and truncated exactly like CalorieEngine.calculate
+    public final int[] bmr;
+    public final int[] maintenanceCalories;
+    public final int[] targetCalories;
+    public final double[] bmi;
+    public final int[] proteinGrams;
+    public final int[] carbGrams;
+    public final int[] fatGrams;
+
+    /** Rows per pass of a blocked engine */
+    static final int WORK_BLOCK = 256;
+    /** Working space for BatchEngine implementations: WORK_COLUMNS blocks of intermediate doubles */
+    static final int WORK_COLUMNS = 3;
+    final double[] work = new double[WORK_COLUMNS * WORK_BLOCK];
+
+    public CohortColumns(int capacity) {
+        height = new double[capacity];
+        weight = new double[capacity];
+        age = new int[capacity];
+        male = new boolean[capacity];
+        activityLevel = new double[capacity];
+        goal = new int[capacity];
+        bmr = new int[capacity];
+        maintenanceCalories = new int[capacity];
+        targetCalories = new int[capacity];
+        bmi = new double[capacity];
+        proteinGrams = new int[capacity];
+        carbGrams = new int[capacity];
+        fatGrams = new int[capacity];
+    }
+
+    public int capacity() {
+        return height.length;
+    }
+
+    /**
+     * Stores the inputs of one row
+     *
+     * @param gender Gender ordinal
+     * @param goal   Goal ordinal
+     */
+    public void set(int row, double height, double weight, int age, int gender, double activityLevel, int goal) {
+        this.height[row] = height;
+        this.weight[row] = weight;
+        this.age[row] = age;
+        this.male[row] = gender == Gender.MALE.ordinal();
+        this.activityLevel[row] = activityLevel;
+        this.goal[row] = goal;
+    }
+}
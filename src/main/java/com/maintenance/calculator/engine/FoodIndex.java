@@ -0,0 +1,144 @@
+package com.maintenance.calculator.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Precomputed lookups over a FoodTable that pick the foods worth searching for a target
+ *
+ * Foods are split at the median calorie density into a light and a dense class, and within each
+ * class listed by their share of calories from protein, carbs and fat. A grid over the
+ * (protein share, fat share) plane holds the foods whose own ratio falls in each cell. For a
+ * target, candidates() takes the strongest source of each macronutrient from both density
+ * classes, so the search can both fill a large target and fine-tune a small one, plus the foods
+ * whose ratio is nearest the target's. Built once; read-only afterwards, so it is shared freely.
+ */
+public final class FoodIndex {
+
+    /** Most candidates returned */
+    public static final int MAX_CANDIDATES = 16;
+
+    static final int PROTEIN = 0, CARBS = 1, FAT = 2;
+    private static final int PER_CLASS = 2;
+    private static final int NEAREST = 3;
+    private static final int BINS = 10;
+
+    private final FoodTable foods;
+    // [class][macro] food ids, highest share first; class 0 is light, 1 is dense
+    private final int[][][] byShare = new int[2][3][];
+    // [proteinBin * BINS + fatBin] food ids, least dense first
+    private final int[][] cells = new int[BINS * BINS][];
+
+    public FoodIndex(FoodTable foods) {
+        this.foods = foods;
+        int n = foods.size();
+        double[] densities = new double[n];
+        for (int i = 0; i < n; i++) densities[i] = foods.density(i);
+        double[] sorted = densities.clone();
+        Arrays.sort(sorted);
+        double median = sorted[n / 2];
+
+        for (int cls = 0; cls < 2; cls++) {
+            List<Integer> members = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if ((densities[i] >= median ? 1 : 0) == cls) members.add(i);
+            }
+            for (int macro = PROTEIN; macro <= FAT; macro++) {
+                int m = macro;
+                byShare[cls][macro] = members.stream()
+                    .sorted(Comparator.comparingDouble((Integer i) -> -share(i, m)).thenComparingDouble(i -> densities[i]))
+                    .mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        List<List<Integer>> grid = new ArrayList<>();
+        for (int c = 0; c < BINS * BINS; c++) grid.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            grid.get(cell(share(i, PROTEIN), share(i, FAT))).add(i);
+        }
+        for (int c = 0; c < BINS * BINS; c++) {
+            cells[c] = grid.get(c).stream()
+                .sorted(Comparator.comparingDouble(i -> densities[i]))
+                .mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public FoodTable foods() { return foods; }
+
+    private double share(int food, int macro) {
+        double grams = macro == PROTEIN ? foods.protein(food) : macro == CARBS ? foods.carbs(food) : foods.fat(food);
+        return grams * (macro == FAT ? 9 : 4) / foods.calories(food);
+    }
+
+    private static int bin(double share) {
+        return Math.min(BINS - 1, (int) (share * BINS));
+    }
+
+    private static int cell(double proteinShare, double fatShare) {
+        return bin(proteinShare) * BINS + bin(fatShare);
+    }
+
+    /**
+     * Writes the candidate foods for a macronutrient target (grams) into out and returns how many
+     * there are; the largest contributors (calories at their maximum servings) come first
+     */
+    public int candidates(double protein, double carbs, double fat, int[] out) {
+        int count = 0;
+        for (int cls = 0; cls < 2; cls++) {
+            for (int macro = PROTEIN; macro <= FAT; macro++) {
+                int[] list = byShare[cls][macro];
+                for (int k = 0, taken = 0; k < list.length && taken < PER_CLASS; k++) {
+                    int before = count;
+                    count = addDistinct(out, count, list[k]);
+                    if (count > before) taken++;
+                }
+            }
+        }
+
+        // Rings of grid cells around the target's own ratio
+        double calories = protein * 4 + carbs * 4 + fat * 9;
+        if (calories > 0) {
+            int pb = bin(protein * 4 / calories);
+            int fb = bin(fat * 9 / calories);
+            int nearest = 0;
+            for (int ring = 0; ring < BINS && nearest < NEAREST; ring++) {
+                for (int p = pb - ring; p <= pb + ring && nearest < NEAREST; p++) {
+                    for (int f = fb - ring; f <= fb + ring && nearest < NEAREST; f++) {
+                        if (p < 0 || f < 0 || p >= BINS || f >= BINS) continue;
+                        if (Math.max(Math.abs(p - pb), Math.abs(f - fb)) != ring) continue;
+                        for (int food : cells[p * BINS + f]) {
+                            if (nearest == NEAREST || count == MAX_CANDIDATES) break;
+                            int before = count;
+                            count = addDistinct(out, count, food);
+                            if (count > before) nearest++;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Insertion sort by calories at maximum servings, descending
+        for (int i = 1; i < count; i++) {
+            int food = out[i];
+            double key = foods.calories(food) * foods.maxServings(food);
+            int j = i - 1;
+            while (j >= 0 && foods.calories(out[j]) * foods.maxServings(out[j]) < key) {
+                out[j + 1] = out[j];
+                j--;
+            }
+            out[j + 1] = food;
+        }
+        return count;
+    }
+
+    private static int addDistinct(int[] out, int count, int food) {
+        if (count == MAX_CANDIDATES) return count;
+        for (int i = 0; i < count; i++) {
+            if (out[i] == food) return count;
+        }
+        out[count] = food;
+        return count + 1;
+    }
+}
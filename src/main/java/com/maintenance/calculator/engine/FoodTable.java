@@ -0,0 +1,141 @@
+package com.maintenance.calculator.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable nutrient table for the meal planner, one row per food
+ *
+ * The CSV columns are name, serving, grams, protein, carbs, fat and maxServings, with the
+ * macronutrients in grams per serving; blank lines and lines starting with # are skipped.
+ * Calories are derived from the macronutrients at 4/4/9 cal/g, the same conversion
+ * CalorieEngine uses for the targets, so a plan that hits its macros hits its calories too.
+ * Names and servings may not contain quotes, backslashes or commas, so they can be written
+ * into JSON and CSV as they are.
+ */
+public final class FoodTable {
+
+    /** Bundled table on the classpath */
+    public static final String RESOURCE = "/foods.csv";
+
+    private static final int COLUMNS = 7;
+
+    private final String[] names;
+    private final String[] servings;
+    private final double[] grams;
+    private final double[] protein;
+    private final double[] carbs;
+    private final double[] fat;
+    private final int[] maxServings;
+
+    private FoodTable(List<String[]> rows, String source) throws IOException {
+        int n = rows.size();
+        names = new String[n];
+        servings = new String[n];
+        grams = new double[n];
+        protein = new double[n];
+        carbs = new double[n];
+        fat = new double[n];
+        maxServings = new int[n];
+        for (int i = 0; i < n; i++) {
+            String[] row = rows.get(i);
+            names[i] = row[0];
+            servings[i] = row[1];
+            try {
+                grams[i] = Double.parseDouble(row[2]);
+                protein[i] = Double.parseDouble(row[3]);
+                carbs[i] = Double.parseDouble(row[4]);
+                fat[i] = Double.parseDouble(row[5]);
+                maxServings[i] = Integer.parseInt(row[6]);
+            } catch (NumberFormatException e) {
+                throw new IOException(source + ": invalid number for " + names[i]);
+            }
+            if (!(grams[i] > 0) || !(protein[i] >= 0) || !(carbs[i] >= 0) || !(fat[i] >= 0)
+                    || calories(i) <= 0 || maxServings[i] < 1 || maxServings[i] > 16) {
+                throw new IOException(source + ": out-of-range values for " + names[i]);
+            }
+        }
+    }
+
+    /**
+     * The table bundled with the application
+     */
+    public static FoodTable bundled() throws IOException {
+        InputStream in = FoodTable.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException("Food table " + RESOURCE + " is missing from the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parse(reader, RESOURCE);
+        }
+    }
+
+    public static FoodTable load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader, path.toString());
+        }
+    }
+
+    public static FoodTable parse(Reader reader, String source) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] row = line.split(",", -1);
+            if (row.length != COLUMNS) {
+                throw new IOException(source + " line " + number + ": expected " + COLUMNS + " columns");
+            }
+            for (int i = 0; i < 2; i++) {
+                row[i] = row[i].strip();
+                if (row[i].isEmpty() || !plain(row[i])) {
+                    throw new IOException(source + " line " + number + ": invalid name or serving");
+                }
+            }
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            throw new IOException(source + " has no foods");
+        }
+        return new FoodTable(rows, source);
+    }
+
+    private static boolean plain(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') return false;
+        }
+        return true;
+    }
+
+    public int size() { return names.length; }
+
+    public String name(int food) { return names[food]; }
+    public String serving(int food) { return servings[food]; }
+    public double grams(int food) { return grams[food]; }
+    public double protein(int food) { return protein[food]; }
+    public double carbs(int food) { return carbs[food]; }
+    public double fat(int food) { return fat[food]; }
+    public int maxServings(int food) { return maxServings[food]; }
+
+    /** Calories per serving */
+    public double calories(int food) {
+        return protein[food] * 4 + carbs[food] * 4 + fat[food] * 9;
+    }
+
+    /** Calories per gram */
+    public double density(int food) {
+        return calories(food) / grams[food];
+    }
+}
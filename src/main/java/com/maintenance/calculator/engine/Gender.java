@@ -0,0 +1,34 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Gender as used by the Mifflin-St Jeor equation
+ */
+public enum Gender {
+    MALE("male"),
+    FEMALE("female");
+
+    private static final Gender[] VALUES = values();
+
+    private final String key;
+
+    Gender(String key) {
+        this.key = key;
+    }
+
+    /** Lower-case form value, e.g. "male" */
+    public String key() {
+        return key;
+    }
+
+    public static Gender fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Parses a form value without allocating
+     * Anything other than "male" (ignoring case) is treated as female, as the calculators always have
+     */
+    public static Gender parse(CharSequence value) {
+        return Strings.equalsIgnoreCase(value, "male") ? MALE : FEMALE;
+    }
+}
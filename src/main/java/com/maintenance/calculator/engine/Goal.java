@@ -0,0 +1,40 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Fitness goal; the calorie adjustment applied to maintenance calories comes from the Rules in force
+ */
+public enum Goal {
+    MAINTAIN("maintain"),
+    LOSE("lose"),
+    GAIN("gain");
+
+    private static final Goal[] VALUES = values();
+
+    private final String key;
+
+    Goal(String key) {
+        this.key = key;
+    }
+
+    /** Lower-case form value, e.g. "lose" */
+    public String key() {
+        return key;
+    }
+
+    public int calorieAdjustment() {
+        return Rules.current().calorieAdjustment(ordinal());
+    }
+
+    public static Goal fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Parses a form value without allocating; missing or unknown values mean maintain
+     */
+    public static Goal parse(CharSequence value) {
+        if (Strings.equalsIgnoreCase(value, "lose")) return LOSE;
+        if (Strings.equalsIgnoreCase(value, "gain")) return GAIN;
+        return MAINTAIN;
+    }
+}
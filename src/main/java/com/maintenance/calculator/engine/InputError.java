@@ -0,0 +1,22 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Reasons an input profile is rejected by CalorieEngine.validate
+ */
+public enum InputError {
+    HEIGHT("Height must be between 100 and 250 cm."),
+    WEIGHT("Weight must be between 30 and 300 kg."),
+    AGE("Age must be between 15 and 100 years."),
+    DAYS("Days available must be between 1 and 7."),
+    HOURS("Hours per day must be between 0.5 and 4.");
+
+    private final String message;
+
+    InputError(String message) {
+        this.message = message;
+    }
+
+    public String message() {
+        return message;
+    }
+}
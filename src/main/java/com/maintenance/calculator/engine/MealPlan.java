@@ -0,0 +1,40 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * A day's food choices from MealPlanner: foods from its FoodTable with whole servings of each
+ * Immutable, so plans can be cached and shared.
+ */
+public final class MealPlan {
+
+    private final int[] foods;
+    private final int[] servings;
+    private final double protein;
+    private final double carbs;
+    private final double fat;
+    private final boolean complete;
+
+    MealPlan(int[] foods, int[] servings, double protein, double carbs, double fat, boolean complete) {
+        this.foods = foods;
+        this.servings = servings;
+        this.protein = protein;
+        this.carbs = carbs;
+        this.fat = fat;
+        this.complete = complete;
+    }
+
+    public int getItems() { return foods.length; }
+    /** FoodTable row of the item */
+    public int getFood(int item) { return foods[item]; }
+    public int getServings(int item) { return servings[item]; }
+
+    public double getProtein() { return protein; }
+    public double getCarbs() { return carbs; }
+    public double getFat() { return fat; }
+    public int getCalories() { return (int) Math.round(protein * 4 + carbs * 4 + fat * 9); }
+
+    /**
+     * Whether the search finished inside its budget, making this the best plan over the
+     * candidate foods; false means it is the best found before the deadline
+     */
+    public boolean isComplete() { return complete; }
+}
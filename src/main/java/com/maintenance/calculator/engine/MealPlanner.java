@@ -0,0 +1,175 @@
+package com.maintenance.calculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * Picks whole servings of at most MAX_ITEMS foods to match a protein/carbs/fat target
+ *
+ * The error of a plan is its distance from the target in calories: 4 per gram of protein or
+ * carbs off and 9 per gram of fat off, in either direction. A greedy pass (one serving at a
+ * time, while it helps) gives a first plan; a branch-and-bound search over the FoodIndex
+ * candidates then tries servings from most to fewest. A branch is dropped unless its lower bound
+ * beats the best error so far by more than TOLERANCE of the target's calories: the bound counts
+ * macros already over the target, which can only grow, and macros that even every remaining
+ * candidate at its maximum could not bring up.
+ * The search stops at the deadline and keeps the best plan found, so a solve never takes much
+ * longer than its budget. The FoodTable serving limits are per SERVING_CALORIES of target and
+ * are multiplied up for larger targets.
+ * Holds scratch state: one instance per thread.
+ */
+public final class MealPlanner {
+
+    /** Most distinct foods in a plan */
+    public static final int MAX_ITEMS = 6;
+
+    /** Calories of target each FoodTable maxServings allowance is for; larger targets scale it */
+    public static final int SERVING_CALORIES = 2000;
+
+    // Improvements smaller than this share of the target's calories are not searched for
+    private static final double TOLERANCE = 0.01;
+
+    // Nodes between deadline checks
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final FoodIndex index;
+    private final FoodTable foods;
+
+    private final int[] candidates = new int[FoodIndex.MAX_CANDIDATES];
+    private final double[] protein = new double[FoodIndex.MAX_CANDIDATES];
+    private final double[] carbs = new double[FoodIndex.MAX_CANDIDATES];
+    private final double[] fat = new double[FoodIndex.MAX_CANDIDATES];
+    private final int[] max = new int[FoodIndex.MAX_CANDIDATES];
+    // Totals of candidates i.. at their maximum servings
+    private final double[] restProtein = new double[FoodIndex.MAX_CANDIDATES + 1];
+    private final double[] restCarbs = new double[FoodIndex.MAX_CANDIDATES + 1];
+    private final double[] restFat = new double[FoodIndex.MAX_CANDIDATES + 1];
+    private final int[] current = new int[FoodIndex.MAX_CANDIDATES];
+    private final int[] best = new int[FoodIndex.MAX_CANDIDATES];
+
+    private int count;
+    private double targetProtein, targetCarbs, targetFat;
+    private double bestError;
+    private double tolerance;
+    private long nodes;
+    private long deadline;
+    private boolean timedOut;
+
+    public MealPlanner(FoodIndex index) {
+        this.index = index;
+        this.foods = index.foods();
+    }
+
+    /**
+     * Plans for a target in grams, searching for at most budgetNanos
+     */
+    public MealPlan solve(double targetProtein, double targetCarbs, double targetFat, long budgetNanos) {
+        this.targetProtein = targetProtein;
+        this.targetCarbs = targetCarbs;
+        this.targetFat = targetFat;
+        count = index.candidates(targetProtein, targetCarbs, targetFat, candidates);
+        double calories = targetProtein * 4 + targetCarbs * 4 + targetFat * 9;
+        int scale = Math.max(1, (int) Math.ceil(calories / SERVING_CALORIES));
+        tolerance = calories * TOLERANCE;
+        for (int i = 0; i < count; i++) {
+            int food = candidates[i];
+            protein[i] = foods.protein(food);
+            carbs[i] = foods.carbs(food);
+            fat[i] = foods.fat(food);
+            max[i] = foods.maxServings(food) * scale;
+        }
+        restProtein[count] = restCarbs[count] = restFat[count] = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            restProtein[i] = restProtein[i + 1] + protein[i] * max[i];
+            restCarbs[i] = restCarbs[i + 1] + carbs[i] * max[i];
+            restFat[i] = restFat[i + 1] + fat[i] * max[i];
+        }
+
+        greedy();
+        nodes = 0;
+        timedOut = false;
+        deadline = System.nanoTime() + budgetNanos;
+        Arrays.fill(current, 0);
+        search(0, 0, 0, 0, 0);
+        return plan(!timedOut);
+    }
+
+    /** Nodes visited by the last solve */
+    public long getNodes() { return nodes; }
+
+    private double error(double p, double c, double f) {
+        return Math.abs(p - targetProtein) * 4 + Math.abs(c - targetCarbs) * 4 + Math.abs(f - targetFat) * 9;
+    }
+
+    private static double shortfall(double total, double reachable, double target) {
+        if (total > target) return total - target;
+        return reachable < target ? target - reachable : 0;
+    }
+
+    private void greedy() {
+        Arrays.fill(best, 0);
+        double p = 0, c = 0, f = 0;
+        int items = 0;
+        bestError = error(0, 0, 0);
+        while (true) {
+            int pick = -1;
+            double pickError = bestError;
+            for (int i = 0; i < count; i++) {
+                if (best[i] == max[i] || (best[i] == 0 && items == MAX_ITEMS)) continue;
+                double e = error(p + protein[i], c + carbs[i], f + fat[i]);
+                if (e < pickError) {
+                    pick = i;
+                    pickError = e;
+                }
+            }
+            if (pick < 0) return;
+            if (best[pick]++ == 0) items++;
+            p += protein[pick];
+            c += carbs[pick];
+            f += fat[pick];
+            bestError = pickError;
+        }
+    }
+
+    private void search(int i, int items, double p, double c, double f) {
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline) {
+            timedOut = true;
+        }
+        if (timedOut) return;
+        boolean open = i < count && items < MAX_ITEMS;
+        double bound = open
+            ? shortfall(p, p + restProtein[i], targetProtein) * 4 + shortfall(c, c + restCarbs[i], targetCarbs) * 4
+                + shortfall(f, f + restFat[i], targetFat) * 9
+            : error(p, c, f);
+        if (bound + (open ? tolerance : 0) >= bestError) return;
+        if (!open) {
+            bestError = bound;
+            System.arraycopy(current, 0, best, 0, count);
+            return;
+        }
+        for (int s = max[i]; s >= 1; s--) {
+            current[i] = s;
+            search(i + 1, items + 1, p + protein[i] * s, c + carbs[i] * s, f + fat[i] * s);
+        }
+        current[i] = 0;
+        search(i + 1, items, p, c, f);
+    }
+
+    private MealPlan plan(boolean complete) {
+        int items = 0;
+        for (int i = 0; i < count; i++) {
+            if (best[i] > 0) items++;
+        }
+        int[] planFoods = new int[items];
+        int[] planServings = new int[items];
+        double p = 0, c = 0, f = 0;
+        for (int i = 0, k = 0; i < count; i++) {
+            if (best[i] == 0) continue;
+            planFoods[k] = candidates[i];
+            planServings[k++] = best[i];
+            p += protein[i] * best[i];
+            c += carbs[i] * best[i];
+            f += fat[i] * best[i];
+        }
+        return new MealPlan(planFoods, planServings, p, c, f, complete);
+    }
+}
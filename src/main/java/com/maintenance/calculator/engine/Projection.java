@@ -0,0 +1,98 @@
+package com.maintenance.calculator.engine;
+
+import java.util.Arrays;
+
+/**
+ * The projected weight curve of one starting profile, extended on demand
+ *
+ * Weeks already simulated are kept, so asking for a longer horizon only simulates the weeks
+ * beyond the longest one computed so far. An instance is safe to share between threads: the
+ * weights up to a horizon never change once computed, and extendTo() hands out an array that is
+ * valid up to the requested week.
+ */
+public final class Projection {
+
+    private final double height;
+    private final int age;
+    private final int gender;
+    private final double activityLevel;
+    private final int goal;
+    private final double targetWeight;
+    private final int intake;
+
+    // Guarded by this; weights[0..weeks] are computed
+    private double[] weights;
+    private int weeks;
+    private int reachedWeek = -1;
+
+    /**
+     * @param gender       Gender ordinal
+     * @param goal         Goal ordinal
+     * @param targetWeight weight at which the projection holds; 0 for none
+     */
+    public Projection(double height, double weight, int age, int gender, double activityLevel, int goal,
+                      double targetWeight) {
+        this.height = height;
+        this.age = age;
+        this.gender = gender;
+        this.activityLevel = activityLevel;
+        this.goal = goal;
+        this.targetWeight = targetWeight;
+        this.intake = ProjectionEngine.intake(height, weight, age, gender, activityLevel, goal);
+        this.weights = new double[53];
+        this.weights[0] = weight;
+        if (ProjectionEngine.reached(weight, targetWeight, goal)) {
+            reachedWeek = 0;
+        }
+    }
+
+    /**
+     * Simulates up to the given week (at most MAX_WEEKS) and returns the weights by week;
+     * entries 0 to weeks are valid
+     */
+    public synchronized double[] extendTo(int horizon) {
+        if (horizon < 0 || horizon > ProjectionEngine.MAX_WEEKS) {
+            throw new IllegalArgumentException("Weeks must be between 0 and " + ProjectionEngine.MAX_WEEKS);
+        }
+        if (horizon <= weeks) {
+            return weights;
+        }
+        if (horizon >= weights.length) {
+            weights = Arrays.copyOf(weights, Math.min(ProjectionEngine.MAX_WEEKS + 1,
+                Math.max(horizon + 1, weights.length * 2)));
+        }
+        double weight = weights[weeks];
+        for (int week = weeks; week < horizon; week++) {
+            if (reachedWeek < 0) {
+                weight = ProjectionEngine.step(height, weight, age, gender, activityLevel, intake, week);
+                if (ProjectionEngine.reached(weight, targetWeight, goal)) {
+                    reachedWeek = week + 1;
+                }
+            }
+            weights[week + 1] = weight;
+        }
+        weeks = horizon;
+        return weights;
+    }
+
+    /** Weeks simulated so far */
+    public synchronized int getWeeks() {
+        return weeks;
+    }
+
+    /** First week at or past the target weight within the simulated weeks, or -1 */
+    public synchronized int getReachedWeek() {
+        return reachedWeek;
+    }
+
+    /** Daily calories eaten until the target is reached */
+    public int getIntake() { return intake; }
+
+    public int maintenanceAt(int week) {
+        return ProjectionEngine.maintenanceAt(height, weights()[week], age, gender, activityLevel, week);
+    }
+
+    private synchronized double[] weights() {
+        return weights;
+    }
+}
@@ -0,0 +1,86 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Week-by-week weight projection for a fixed daily intake
+ *
+ * The intake is the target calories of the starting profile. Each week the BMR is recomputed
+ * with calculateBMR for the current weight (and age, which advances with the weeks), the
+ * expenditure is BMR times the activity level, and the weekly energy balance moves the weight by
+ * KCAL_PER_KG per kilogram. A deficit therefore shrinks as weight is lost and the curve
+ * flattens instead of falling in a straight line. Once an optional target weight is reached,
+ * the intake follows maintenance and the weight holds.
+ */
+public final class ProjectionEngine {
+
+    /** Energy in one kilogram of body weight change */
+    public static final double KCAL_PER_KG = 7700;
+    /** Longest horizon accepted: twenty years */
+    public static final int MAX_WEEKS = 52 * 20;
+
+    private static final double MIN_WEIGHT = 30;
+    private static final double MAX_WEIGHT = 300;
+
+    private ProjectionEngine() {
+    }
+
+    /**
+     * Daily intake held throughout the projection: the starting profile's target calories
+     */
+    public static int intake(double height, double weight, int age, int gender, double activityLevel, int goal) {
+        int maintenance = (int) Math.round(CalorieEngine.calculateBMR(height, weight, age, gender) * activityLevel);
+        return CalorieEngine.calculateTargetCalories(maintenance, goal);
+    }
+
+    /**
+     * Age in whole years after the given number of weeks
+     */
+    public static int ageAt(int age, int week) {
+        return age + week * 7 / 365;
+    }
+
+    /**
+     * Maintenance calories for a week's weight, rounded like CalorieEngine.calculate
+     */
+    public static int maintenanceAt(double height, double weight, int age, int gender, double activityLevel, int week) {
+        return (int) Math.round(CalorieEngine.calculateBMR(height, weight, ageAt(age, week), gender) * activityLevel);
+    }
+
+    /**
+     * Weight one week after week, eating intake per day
+     */
+    public static double step(double height, double weight, int age, int gender, double activityLevel,
+                              int intake, int week) {
+        double expenditure = CalorieEngine.calculateBMR(height, weight, ageAt(age, week), gender) * activityLevel;
+        double next = weight + (intake - expenditure) * 7 / KCAL_PER_KG;
+        return Math.max(MIN_WEIGHT, Math.min(MAX_WEIGHT, next));
+    }
+
+    /**
+     * Whether a weight has reached the target in the direction of the goal; a target of 0 never is
+     */
+    public static boolean reached(double weight, double targetWeight, int goal) {
+        if (targetWeight <= 0) return false;
+        if (goal == Goal.LOSE.ordinal()) return weight <= targetWeight;
+        if (goal == Goal.GAIN.ordinal()) return weight >= targetWeight;
+        return false;
+    }
+
+    /**
+     * Projects rows [from, to) of a computed batch for the given number of weeks and stores each
+     * final weight in out; the intake is the row's targetCalories
+     */
+    public static void project(CohortColumns c, int from, int to, int weeks, double[] out) {
+        for (int i = from; i < to; i++) {
+            double height = c.height[i];
+            int age = c.age[i];
+            int gender = c.male[i] ? Gender.MALE.ordinal() : Gender.FEMALE.ordinal();
+            double activityLevel = c.activityLevel[i];
+            int intake = c.targetCalories[i];
+            double weight = c.weight[i];
+            for (int week = 0; week < weeks; week++) {
+                weight = step(height, weight, age, gender, activityLevel, intake, week);
+            }
+            out[i] = weight;
+        }
+    }
+}
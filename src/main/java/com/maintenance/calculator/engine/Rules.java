@@ -0,0 +1,241 @@
+package com.maintenance.calculator.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable snapshot of the calculator rules: the workout plan for each number of training days,
+ * the plans' names and descriptions, the goal calorie offsets, the macro split, and the BMI
+ * category bounds and labels
+ *
+ * Every rule is held in arrays indexed by days or by enum ordinal, so lookups are plain array
+ * reads. The snapshot in force is one volatile reference: install() swaps it in whole, and a
+ * calculation that reads current() once sees one consistent set of rules however often the
+ * rules change meanwhile. The defaults are the bundled rules.properties; a rules file only needs
+ * the keys it overrides. Each snapshot has its own version, so caches can tell results
+ * computed under older rules.
+ */
+public final class Rules {
+
+    /** Bundled rules on the classpath */
+    public static final String RESOURCE = "/rules.properties";
+
+    private static final int MAX_DAYS = 7;
+    private static final int MAX_CALORIE_OFFSET = 1500;
+
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+
+    private static final Properties DEFAULTS = loadDefaults();
+
+    private static volatile Rules current = build(DEFAULTS, RESOURCE);
+
+    private final int version;
+    private final String source;
+    // Indexed by days per week, 0 to MAX_DAYS; 0 repeats 1
+    private final int[] planForDays = new int[MAX_DAYS + 1];
+    private final String[] planNames = new String[WorkoutPlan.values().length];
+    private final String[] planDescriptions = new String[WorkoutPlan.values().length];
+    private final int[] calorieAdjustments = new int[Goal.values().length];
+    private final double proteinShare, carbShare, fatShare;
+    // Exclusive upper bound of every category but the last
+    private final double[] bmiBounds = new double[BmiCategory.values().length - 1];
+    private final String[] bmiLabels = new String[BmiCategory.values().length];
+
+    private Rules(Properties properties, String source) throws IOException {
+        this.version = VERSIONS.incrementAndGet();
+        this.source = source;
+        for (int days = 1; days <= MAX_DAYS; days++) {
+            String key = "workout.days." + days;
+            String plan = required(properties, key, source);
+            try {
+                planForDays[days] = WorkoutPlan.valueOf(plan).ordinal();
+            } catch (IllegalArgumentException e) {
+                throw new IOException(source + ": " + key + " is not a workout plan: " + plan);
+            }
+        }
+        planForDays[0] = planForDays[1];
+        for (WorkoutPlan plan : WorkoutPlan.values()) {
+            planNames[plan.ordinal()] = required(properties, "workout." + plan.name() + ".name", source);
+            planDescriptions[plan.ordinal()] = required(properties, "workout." + plan.name() + ".description", source);
+        }
+        for (Goal goal : Goal.values()) {
+            String key = "goal." + goal.key() + ".calories";
+            double value = number(properties, key, source);
+            int offset = (int) value;
+            if (offset != value || Math.abs(offset) > MAX_CALORIE_OFFSET) {
+                throw new IOException(source + ": " + key + " must be a whole number of calories within "
+                    + MAX_CALORIE_OFFSET + " of maintenance");
+            }
+            calorieAdjustments[goal.ordinal()] = offset;
+        }
+        proteinShare = share(properties, "macros.protein", source);
+        carbShare = share(properties, "macros.carbs", source);
+        fatShare = share(properties, "macros.fat", source);
+        if (Math.abs(proteinShare + carbShare + fatShare - 1) > 1e-6) {
+            throw new IOException(source + ": macros.protein, macros.carbs and macros.fat must add up to 1");
+        }
+        double previous = 0;
+        for (int i = 0; i < bmiBounds.length; i++) {
+            String key = "bmi." + BmiCategory.fromOrdinal(i).name() + ".below";
+            double bound = number(properties, key, source);
+            if (!(bound > previous && bound < 100)) {
+                throw new IOException(source + ": " + key + " must be above the previous bound and below 100");
+            }
+            bmiBounds[i] = previous = bound;
+        }
+        for (BmiCategory category : BmiCategory.values()) {
+            bmiLabels[category.ordinal()] = required(properties, "bmi." + category.name() + ".label", source);
+        }
+    }
+
+    private static String required(Properties properties, String key, String source) throws IOException {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IOException(source + ": missing " + key);
+        }
+        return value.trim();
+    }
+
+    private static double number(Properties properties, String key, String source) throws IOException {
+        String value = required(properties, key, source);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(source + ": " + key + " is not a number: " + value);
+        }
+    }
+
+    private static double share(Properties properties, String key, String source) throws IOException {
+        double share = number(properties, key, source);
+        if (!(share >= 0 && share <= 1)) {
+            throw new IOException(source + ": " + key + " must be between 0 and 1");
+        }
+        return share;
+    }
+
+    private static Properties loadDefaults() {
+        InputStream in = Rules.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("Rules " + RESOURCE + " are missing from the classpath");
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+
+    private static Rules build(Properties properties, String source) {
+        try {
+            return new Rules(properties, source);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid bundled rules: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The rules in force
+     */
+    public static Rules current() {
+        return current;
+    }
+
+    /**
+     * Makes rules the ones in force; calculations already running finish with the previous rules
+     */
+    public static void install(Rules rules) {
+        current = rules;
+    }
+
+    /**
+     * A fresh snapshot of the bundled rules
+     */
+    public static Rules bundled() {
+        return build(DEFAULTS, RESOURCE);
+    }
+
+    /**
+     * Reads a rules file over the bundled defaults, without installing it
+     */
+    public static Rules load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, file.toString());
+        }
+    }
+
+    /**
+     * Parses properties over the bundled defaults; throws IOException naming the bad key
+     */
+    public static Rules parse(Reader reader, String source) throws IOException {
+        Properties properties = new Properties(DEFAULTS);
+        try {
+            properties.load(reader);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(source + ": " + e.getMessage());
+        }
+        return new Rules(properties, source);
+    }
+
+    /** Distinct for every snapshot, increasing in creation order */
+    public int version() { return version; }
+    /** Where the rules were read from */
+    public String source() { return source; }
+
+    /**
+     * WorkoutPlan ordinal for the given training days per week, clamped to 1 to 7
+     */
+    public int workoutPlan(int daysAvailable) {
+        return planForDays[daysAvailable <= 0 ? 0 : Math.min(daysAvailable, MAX_DAYS)];
+    }
+
+    public String workoutName(int plan) { return planNames[plan]; }
+    public String workoutDescription(int plan) { return planDescriptions[plan]; }
+
+    /**
+     * Calories added to maintenance for a Goal ordinal
+     */
+    public int calorieAdjustment(int goal) {
+        return calorieAdjustments[goal];
+    }
+
+    public double proteinShare() { return proteinShare; }
+    public double carbShare() { return carbShare; }
+    public double fatShare() { return fatShare; }
+
+    // Macro grams at 4 cal/g for protein and carbs and 9 cal/g for fat
+
+    public int proteinGrams(int targetCalories) {
+        return (int) (targetCalories * proteinShare) / 4;
+    }
+
+    public int carbGrams(int targetCalories) {
+        return (int) (targetCalories * carbShare) / 4;
+    }
+
+    public int fatGrams(int targetCalories) {
+        return (int) (targetCalories * fatShare) / 9;
+    }
+
+    /**
+     * BmiCategory ordinal for a BMI; NaN falls in the last category
+     */
+    public int bmiCategory(double bmi) {
+        double[] bounds = bmiBounds;
+        for (int i = 0; i < bounds.length; i++) {
+            if (bmi < bounds[i]) return i;
+        }
+        return bounds.length;
+    }
+
+    public String bmiLabel(int category) { return bmiLabels[category]; }
+}
@@ -0,0 +1,39 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * One row at a time with the CalorieEngine formulas; the reference for VectorBatchEngine
+ */
+final class ScalarBatchEngine implements BatchEngine {
+
+    static final ScalarBatchEngine INSTANCE = new ScalarBatchEngine();
+
+    private ScalarBatchEngine() {
+    }
+
+    @Override
+    public void compute(CohortColumns c, int from, int to) {
+        Rules rules = Rules.current();
+        for (int i = from; i < to; i++) {
+            computeRow(c, i, rules);
+        }
+    }
+
+    static void computeRow(CohortColumns c, int i, Rules rules) {
+        int gender = c.male[i] ? Gender.MALE.ordinal() : Gender.FEMALE.ordinal();
+        double bmr = CalorieEngine.calculateBMR(c.height[i], c.weight[i], c.age[i], gender);
+        int maintenanceCalories = (int) Math.round(bmr * c.activityLevel[i]);
+        int targetCalories = maintenanceCalories + rules.calorieAdjustment(c.goal[i]);
+        c.bmr[i] = (int) Math.round(bmr);
+        c.maintenanceCalories[i] = maintenanceCalories;
+        c.targetCalories[i] = targetCalories;
+        c.bmi[i] = CalorieEngine.calculateBMI(c.height[i], c.weight[i]);
+        c.proteinGrams[i] = rules.proteinGrams(targetCalories);
+        c.carbGrams[i] = rules.carbGrams(targetCalories);
+        c.fatGrams[i] = rules.fatGrams(targetCalories);
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,25 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Allocation-free string helpers for the engine's parsers
+ */
+final class Strings {
+
+    private Strings() {
+    }
+
+    /**
+     * ASCII case-insensitive comparison; null never matches
+     */
+    static boolean equalsIgnoreCase(CharSequence value, String expected) {
+        if (value == null || value.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+}
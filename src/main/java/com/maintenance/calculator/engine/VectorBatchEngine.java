@@ -0,0 +1,181 @@
+package com.maintenance.calculator.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD BatchEngine on jdk.incubator.vector, bit-for-bit identical to ScalarBatchEngine
+ *
+ * Rows are processed in blocks of CohortColumns.WORK_BLOCK, one small column pass at a time, with
+ * intermediates in the batch's work area; C2 only keeps vectors in registers when each loop is
+ * small enough to inline completely. All arithmetic runs in double lanes in the scalar operation
+ * order. Java 17 does not compile double-to-int lane conversions to SIMD instructions, so integer
+ * results are rounded and truncated exactly as integral doubles (see round and truncate) and then
+ * narrowed through their bit pattern (see store). That is only exact for BMR and maintenance
+ * calories between 0 and 2^30, so a block holding anything else, which only nonsensical inputs
+ * produce, is redone with the scalar code, as are the rows past the last full vector.
+ * Only loaded via BatchEngineLoader.
+ */
+final class VectorBatchEngine implements BatchEngine {
+
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = D.length();
+    // Ints with the same lane count as D, and ints filling the same register as D
+    private static final VectorSpecies<Integer> I = VectorSpecies.of(int.class, VectorShape.forBitSize(D.vectorBitSize() / 2));
+    private static final VectorSpecies<Integer> I_FULL = VectorSpecies.of(int.class, D.vectorShape());
+    // Moves the low int of every long-sized lane to the front
+    private static final VectorShuffle<Integer> LOW_HALVES = VectorShuffle.fromOp(I_FULL, lane -> (2 * lane) % I_FULL.length());
+
+    // Below this magnitude every int intermediate is exact in a double and cannot overflow
+    private static final double INT_SAFE = 0x1p30;
+    // Adding 1.5 * 2^52 to a double below 2^51 in magnitude rounds it to an integer, held in the
+    // low 32 bits of the sum as two's complement when it fits in an int
+    private static final double INT_MAGIC = 0x1.8p52;
+
+    private static final double LOSE = Goal.LOSE.ordinal(), GAIN = Goal.GAIN.ordinal();
+
+    // Work area columns
+    private static final int BMR = 0, MAINTENANCE = CohortColumns.WORK_BLOCK, TARGET = 2 * CohortColumns.WORK_BLOCK;
+
+    VectorBatchEngine() {
+        if (I.length() != LANES) {
+            throw new UnsupportedOperationException("No int species matching " + D);
+        }
+    }
+
+    @Override
+    public void compute(CohortColumns c, int from, int to) {
+        double[] work = c.work;
+        Rules rules = Rules.current();
+        int i = from;
+        int vectorEnd = from + D.loopBound(to - from);
+        while (i < vectorEnd) {
+            int n = Math.min(CohortColumns.WORK_BLOCK, vectorEnd - i);
+            if (exactCalories(c, i, n, work)) {
+                round(work, BMR, c.bmr, i, n);
+                round(work, MAINTENANCE, c.maintenanceCalories, i, n);
+                target(c, i, n, work, rules);
+                macro(work, rules.proteinShare(), 4, c.proteinGrams, i, n);
+                macro(work, rules.carbShare(), 4, c.carbGrams, i, n);
+                macro(work, rules.fatShare(), 9, c.fatGrams, i, n);
+                bmi(c, i, n);
+            } else {
+                for (int row = i; row < i + n; row++) {
+                    ScalarBatchEngine.computeRow(c, row, rules);
+                }
+            }
+            i += n;
+        }
+        for (; i < to; i++) {
+            ScalarBatchEngine.computeRow(c, i, rules);
+        }
+    }
+
+    /**
+     * Mifflin-St Jeor BMR and BMR * activity level into the work area
+     * Returns false when any value is negative, NaN or too large for the exact integer passes.
+     */
+    private static boolean exactCalories(CohortColumns c, int from, int n, double[] work) {
+        boolean safe = true;
+        for (int k = 0; k < n; k += LANES) {
+            int row = from + k;
+            DoubleVector height = DoubleVector.fromArray(D, c.height, row);
+            DoubleVector weight = DoubleVector.fromArray(D, c.weight, row);
+            VectorMask<Double> male = VectorMask.fromArray(D, c.male, row);
+            // 5 * age is an int product, as in CalorieEngine.calculateBMR
+            DoubleVector age5 = (DoubleVector) IntVector.fromArray(I, c.age, row).mul(5)
+                .convertShape(VectorOperators.I2D, D, 0);
+            DoubleVector base = weight.mul(10).add(height.mul(6.25)).sub(age5);
+            DoubleVector bmr = base.add(DoubleVector.broadcast(D, -161).blend(5, male));
+            DoubleVector maintenance = bmr.mul(DoubleVector.fromArray(D, c.activityLevel, row));
+            bmr.intoArray(work, BMR + k);
+            maintenance.intoArray(work, MAINTENANCE + k);
+            // Written so that NaN is unsafe too
+            safe &= bmr.compare(VectorOperators.GE, 0).and(bmr.compare(VectorOperators.LT, INT_SAFE))
+                .and(maintenance.compare(VectorOperators.GE, 0)).and(maintenance.compare(VectorOperators.LT, INT_SAFE))
+                .allTrue();
+        }
+        return safe;
+    }
+
+    /**
+     * Math.round of a non-negative work column, in place and into an int column
+     * Adding and subtracting 1.5 * 2^52 rounds to nearest with ties to even; ties, where
+     * x - rint(x) is exactly 0.5, then go up as Math.round does.
+     */
+    private static void round(double[] work, int offset, int[] column, int from, int n) {
+        for (int k = 0; k < n; k += LANES) {
+            DoubleVector x = DoubleVector.fromArray(D, work, offset + k);
+            DoubleVector nearest = x.add(INT_MAGIC).sub(INT_MAGIC);
+            DoubleVector rounded = nearest.add(1, x.sub(nearest).compare(VectorOperators.EQ, 0.5));
+            rounded.intoArray(work, offset + k);
+            store(rounded, column, from + k);
+        }
+    }
+
+    /**
+     * Rounded maintenance calories plus the goal's adjustment
+     */
+    private static void target(CohortColumns c, int from, int n, double[] work, Rules rules) {
+        double maintainAdjustment = rules.calorieAdjustment(Goal.MAINTAIN.ordinal());
+        double loseAdjustment = rules.calorieAdjustment(Goal.LOSE.ordinal());
+        double gainAdjustment = rules.calorieAdjustment(Goal.GAIN.ordinal());
+        for (int k = 0; k < n; k += LANES) {
+            DoubleVector goal = (DoubleVector) IntVector.fromArray(I, c.goal, from + k)
+                .convertShape(VectorOperators.I2D, D, 0);
+            DoubleVector adjustment = DoubleVector.broadcast(D, maintainAdjustment)
+                .blend(loseAdjustment, goal.compare(VectorOperators.EQ, LOSE))
+                .blend(gainAdjustment, goal.compare(VectorOperators.EQ, GAIN));
+            DoubleVector target = DoubleVector.fromArray(D, work, MAINTENANCE + k).add(adjustment);
+            target.intoArray(work, TARGET + k);
+            store(target, c.targetCalories, from + k);
+        }
+    }
+
+    /**
+     * (int) (target * share) / divisor; the int division is exact in doubles at this size
+     */
+    private static void macro(double[] work, double share, double divisor, int[] column, int from, int n) {
+        for (int k = 0; k < n; k += LANES) {
+            DoubleVector target = DoubleVector.fromArray(D, work, TARGET + k);
+            store(truncate(truncate(target.mul(share)).div(divisor)), column, from + k);
+        }
+    }
+
+    private static void bmi(CohortColumns c, int from, int n) {
+        for (int k = 0; k < n; k += LANES) {
+            DoubleVector height = DoubleVector.fromArray(D, c.height, from + k);
+            DoubleVector weight = DoubleVector.fromArray(D, c.weight, from + k);
+            DoubleVector heightInMeters = height.div(100.0);
+            weight.div(heightInMeters.mul(heightInMeters)).intoArray(c.bmi, from + k);
+        }
+    }
+
+    /**
+     * Rounds toward zero, like an (int) cast, for magnitudes below 2^51
+     */
+    private static DoubleVector truncate(DoubleVector x) {
+        DoubleVector magnitude = x.abs();
+        DoubleVector nearest = magnitude.add(INT_MAGIC).sub(INT_MAGIC);
+        DoubleVector floor = nearest.sub(1, nearest.compare(VectorOperators.GT, magnitude));
+        return floor.blend(floor.neg(), x.compare(VectorOperators.LT, 0));
+    }
+
+    /**
+     * Writes integral doubles below 2^31 in magnitude to an int column
+     */
+    private static void store(DoubleVector integral, int[] column, int offset) {
+        IntVector bits = integral.add(INT_MAGIC).reinterpretAsInts().rearrange(LOW_HALVES);
+        ((IntVector) bits.reinterpretShape(I, 0)).intoArray(column, offset);
+    }
+
+    @Override
+    public String name() {
+        return "vector" + D.vectorBitSize();
+    }
+}
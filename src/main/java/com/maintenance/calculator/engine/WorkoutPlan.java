@@ -0,0 +1,35 @@
+package com.maintenance.calculator.engine;
+
+/**
+ * Workout plans recommended for the number of training days available
+ * Names, descriptions and the days each plan is for come from the Rules in force.
+ */
+public enum WorkoutPlan {
+    FULL_BODY,
+    PUSH_PULL,
+    PUSH_PULL_LEGS,
+    UPPER_LOWER,
+    ARNOLD,
+    BRO_SPLIT;
+
+    private static final WorkoutPlan[] VALUES = values();
+
+    public String displayName() {
+        return Rules.current().workoutName(ordinal());
+    }
+
+    public String description() {
+        return Rules.current().workoutDescription(ordinal());
+    }
+
+    public static WorkoutPlan fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Plan for the given days per week under the current rules
+     */
+    public static WorkoutPlan forDays(int daysAvailable) {
+        return VALUES[Rules.current().workoutPlan(daysAvailable)];
+    }
+}